@@ -0,0 +1,44 @@
+package ProjectTwo;
+
+import java.util.Collection;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line, always with the GC
+ * profiler, and ends with a summary of every run in MB/s of corpus next to
+ * its allocation rate.
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class)
+				.build();
+		Collection<RunResult> results = new Runner(options).run();
+
+		System.out.println();
+		System.out.printf("%-40s %-8s %10s %12s %14s %14s%n", "Benchmark", "Corpus", "Size", "MB/s",
+				"Alloc MB/s", "Alloc B/op");
+		for (RunResult result : results) {
+			String benchmark = result.getParams().getBenchmark();
+			String corpus = result.getParams().getParam("corpus");
+			int size = Integer.parseInt(result.getParams().getParam("size"));
+			double opsPerSecond = result.getPrimaryResult().getScore();
+			System.out.printf("%-40s %-8s %10d %12.1f %14.1f %14.0f%n",
+					benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1), corpus, size,
+					opsPerSecond * size / 1e6, secondary(result, "gc.alloc.rate"),
+					secondary(result, "gc.alloc.rate.norm"));
+		}
+	}
+
+	private static double secondary(RunResult result, String label) {
+		Result<?> secondary = result.getSecondaryResults().get(label);
+		return secondary == null ? Double.NaN : secondary.getScore();
+	}
+}
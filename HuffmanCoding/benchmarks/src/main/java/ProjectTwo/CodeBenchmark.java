@@ -0,0 +1,24 @@
+package ProjectTwo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Turning code lengths into codes, and codes into decoder tables.
+ */
+public class CodeBenchmark extends CodecBenchmark {
+
+	@Benchmark
+	public Object canonical(CorpusState state) {
+		return CodeTable.canonical(state.lengths);
+	}
+
+	@Benchmark
+	public Object treeCodes(CorpusState state) {
+		return CodeTable.of(state.tree);
+	}
+
+	@Benchmark
+	public Object decodeTable(CorpusState state) {
+		return DecodeTable.of(state.codes);
+	}
+}
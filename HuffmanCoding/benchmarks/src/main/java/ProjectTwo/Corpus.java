@@ -0,0 +1,99 @@
+package ProjectTwo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The generated inputs every benchmark runs over. Each is made from a fixed
+ * seed, so runs and forks see the same bytes.
+ */
+public enum Corpus {
+
+	/**
+	 * Every byte value equally likely: 8 bit codes, nothing to gain.
+	 */
+	UNIFORM {
+		@Override
+		byte[] generate(int size) {
+			byte[] data = new byte[size];
+			new Random(1).nextBytes(data);
+			return data;
+		}
+	},
+
+	/**
+	 * Byte values drawn with Zipf distributed probabilities (exponent 1.1), as
+	 * in binary formats with a few dominant values.
+	 */
+	ZIPF {
+		@Override
+		byte[] generate(int size) {
+			Random random = new Random(2);
+			double[] cumulative = new double[256];
+			double sum = 0;
+			for (int rank = 0; rank < 256; rank++)
+				cumulative[rank] = sum += 1 / Math.pow(rank + 1, 1.1);
+
+			// Ranks are mapped to shuffled byte values so that the frequent ones
+			// are not all small
+			byte[] symbols = new byte[256];
+			for (int i = 0; i < 256; i++)
+				symbols[i] = (byte) i;
+			for (int i = 255; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				byte swap = symbols[i];
+				symbols[i] = symbols[j];
+				symbols[j] = swap;
+			}
+
+			byte[] data = new byte[size];
+			for (int i = 0; i < size; i++) {
+				int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+				data[i] = symbols[Math.min(255, rank < 0 ? -rank - 1 : rank)];
+			}
+			return data;
+		}
+	},
+
+	/**
+	 * English-like text drawn from a small vocabulary with skewed word
+	 * frequencies.
+	 */
+	TEXT {
+		@Override
+		byte[] generate(int size) {
+			String[] words = ("the of and to in is that it was for on are as with his they at be this from have or "
+					+ "by one had not but what all were when we there can an your which their said if do will each "
+					+ "about how up out them then she many some so these would other into has more her two like him "
+					+ "see time could no make than first been its who now people my made over did down only way find "
+					+ "use may water long little very after words called just where most know huffman compression "
+					+ "decoder table symbol frequency").split(" ");
+			Random random = new Random(3);
+			StringBuilder builder = new StringBuilder(size + 16);
+			while (builder.length() < size) {
+				builder.append(words[(int) (words.length * Math.pow(random.nextDouble(), 2.5))]);
+				builder.append(random.nextInt(12) == 0 ? ".\n" : " ");
+			}
+			return builder.substring(0, size).getBytes(StandardCharsets.ISO_8859_1);
+		}
+	},
+
+	/**
+	 * One byte value repeated: a single one bit code.
+	 */
+	SINGLE {
+		@Override
+		byte[] generate(int size) {
+			byte[] data = new byte[size];
+			Arrays.fill(data, (byte) 'a');
+			return data;
+		}
+	};
+
+	/**
+	 * @param size Length of the corpus in bytes.
+	 * @return A new array holding the corpus.
+	 */
+	abstract byte[] generate(int size);
+}
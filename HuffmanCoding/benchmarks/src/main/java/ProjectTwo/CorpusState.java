@@ -0,0 +1,77 @@
+package ProjectTwo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One corpus and everything the stages after the one being measured need: its
+ * histogram, tree, code, header and encoded form. Built once per trial, so
+ * each benchmark times only its own stage.
+ */
+@State(Scope.Benchmark)
+public class CorpusState {
+
+	@Param({ "UNIFORM", "ZIPF", "TEXT", "SINGLE" })
+	public Corpus corpus;
+
+	@Param({ "65536", "1048576", "16777216" })
+	public int size;
+
+	byte[] data; // The corpus
+	long[] freq; // Its histogram
+	FlatTree tree; // Its Huffman tree
+	FlatTree canonicalTree; // The tree of the canonical code, for the tree walk decoder
+	FlatTree scratch = new FlatTree(256); // Rebuilt by the tree benchmarks
+	long[] scratchCodes = new long[256]; // Filled by the tree benchmarks
+	int[] scratchLengths = new int[256];
+	int[] lengths; // Code lengths from the tree
+	CodeTable codes; // The canonical code
+	DecodeTable decoder; // Tables decoding the canonical code
+	HuffHeader header; // Version 3 header of the compressed corpus
+	byte[] headerBytes; // The header as written
+	byte[] payload; // The encoded data, padded to whole bytes
+	long payloadBits; // Length of the encoded data in bits
+	byte[] compressed; // The whole .huff file
+	byte[] interleaved; // The whole .huff file with four streams per block
+	byte[] out; // Output buffer of the decoders
+
+	@Setup
+	public void setUp() throws IOException {
+		data = corpus.generate(size);
+		freq = new long[256];
+		for (byte b : data)
+			freq[b & 0xFF]++;
+		tree = HuffmanTree.build(freq);
+		lengths = new int[256];
+		tree.lengths(lengths);
+		codes = CodeTable.canonical(lengths);
+		decoder = DecodeTable.of(codes);
+		canonicalTree = new FlatTree(256);
+		canonicalTree.read(codes);
+
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream(size);
+		BitWriter writer = new BitWriter(encoded, 64 * 1024);
+		codes.encode(data, 0, data.length, writer);
+		payloadBits = writer.bitsWritten();
+		writer.finish();
+		payload = encoded.toByteArray();
+
+		header = HuffHeader.of("txt", size, payloadBits, codes);
+		ByteArrayOutputStream headerOut = new ByteArrayOutputStream();
+		DataOutputStream dataOut = new DataOutputStream(headerOut);
+		header.write(dataOut);
+		dataOut.flush();
+		headerBytes = headerOut.toByteArray();
+
+		compressed = new HuffmanCodec(CodecOptions.DEFAULT.withThreads(1)).compress(data, "txt");
+		interleaved = new HuffmanCodec(CodecOptions.DEFAULT.withThreads(1).withInterleavedStreams(true)).compress(data,
+				"txt");
+		out = new byte[size];
+	}
+}
@@ -0,0 +1,60 @@
+package ProjectTwo;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Decoding the payload with the table driven decoder, with the bit by bit tree
+ * walk the application used before, and as part of a whole single thread
+ * decompression, with one stream per block or four interleaved ones.
+ */
+public class DecodeBenchmark extends CodecBenchmark {
+
+	private static final HuffmanCodec CODEC = new HuffmanCodec(CodecOptions.DEFAULT.withThreads(1));
+
+	@Benchmark
+	public byte[] table(CorpusState state) throws IOException {
+		BitReader reader = new BitReader(state.payload, 0, state.payload.length, state.payloadBits);
+		byte[] out = state.out;
+		int n = 0;
+		while (reader.available > 0)
+			n += state.decoder.decode(reader, out, n, out.length);
+		return out;
+	}
+
+	/**
+	 * The previous decoder: expand the payload into a '0'/'1' string and follow
+	 * the tree one character at a time.
+	 */
+	@Benchmark
+	public byte[] treeWalk(CorpusState state) {
+		StringBuilder serialData = new StringBuilder(state.payload.length * 8);
+		for (byte b : state.payload)
+			serialData.append(HuffmanTree.toBinaryString(b));
+		serialData.setLength((int) state.payloadBits);
+
+		FlatTree tree = state.canonicalTree;
+		byte[] out = state.out;
+		int counter = 0, p = 0;
+		while (counter < serialData.length()) {
+			int node = 0;
+			if (tree.symbol[node] >= 0)
+				counter++; // A single symbol tree has a one bit code
+			while (tree.symbol[node] < 0)
+				node = serialData.charAt(counter++) == '0' ? tree.left[node] : tree.right[node];
+			out[p++] = (byte) tree.symbol[node];
+		}
+		return out;
+	}
+
+	@Benchmark
+	public byte[] decompress(CorpusState state) {
+		return CODEC.decompress(state.compressed);
+	}
+
+	@Benchmark
+	public byte[] decompressInterleaved(CorpusState state) {
+		return CODEC.decompress(state.interleaved);
+	}
+}
@@ -0,0 +1,29 @@
+package ProjectTwo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Writing the codes of the corpus, alone and as part of a whole single thread
+ * compression.
+ */
+public class EncodeBenchmark extends CodecBenchmark {
+
+	private static final HuffmanCodec CODEC = new HuffmanCodec(CodecOptions.DEFAULT.withThreads(1));
+
+	@Benchmark
+	public long encode(CorpusState state) throws IOException {
+		BitWriter writer = new BitWriter(OutputStream.nullOutputStream(), 64 * 1024);
+		state.codes.encode(state.data, 0, state.data.length, writer);
+		long bits = writer.bitsWritten();
+		writer.finish();
+		return bits;
+	}
+
+	@Benchmark
+	public byte[] compress(CorpusState state) {
+		return CODEC.compress(state.data, "txt");
+	}
+}
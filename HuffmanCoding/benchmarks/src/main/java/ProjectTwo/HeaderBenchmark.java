@@ -0,0 +1,29 @@
+package ProjectTwo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Serializing the code lengths into a version 3 header and reading them back.
+ */
+public class HeaderBenchmark extends CodecBenchmark {
+
+	@Benchmark
+	public byte[] write(CorpusState state) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(state.headerBytes.length);
+		DataOutputStream out = new DataOutputStream(bytes);
+		HuffHeader.of("txt", state.size, state.payloadBits, state.codes).write(out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	@Benchmark
+	public Object read(CorpusState state) throws IOException {
+		return HuffHeader.read(new DataInputStream(new ByteArrayInputStream(state.headerBytes)));
+	}
+}
@@ -0,0 +1,21 @@
+package ProjectTwo;
+
+import java.nio.ByteBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Counting byte frequencies, the first pass of every compression.
+ */
+public class HistogramBenchmark extends CodecBenchmark {
+
+	@Benchmark
+	public long[] count(CorpusState state) {
+		return Histogram.count(ByteBuffer.wrap(state.data), 1);
+	}
+
+	@Benchmark
+	public long[] countParallel(CorpusState state) {
+		return Histogram.count(ByteBuffer.wrap(state.data), Runtime.getRuntime().availableProcessors());
+	}
+}
@@ -0,0 +1,67 @@
+package ProjectTwo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Turning a histogram into code lengths: the two queue build of a
+ * {@link FlatTree} in place, reading its codes, code lengths over the 65,536
+ * symbols of {@link Alphabet#PAIRS}, and package-merge for a length limit the
+ * tree exceeds on skewed inputs.
+ */
+public class TreeBenchmark extends CodecBenchmark {
+
+	@Benchmark
+	public FlatTree build(CorpusState state) {
+		state.scratch.build(state.freq);
+		return state.scratch;
+	}
+
+	@Benchmark
+	public int[] codes(CorpusState state) {
+		state.scratch.build(state.freq);
+		state.scratch.codes(state.scratchCodes, state.scratchLengths);
+		return state.scratchLengths;
+	}
+
+	@Benchmark
+	public int[] codeLengths(CorpusState state) {
+		return HuffmanTree.codeLengths(state.freq, BitWriter.MAX_CODE_LENGTH);
+	}
+
+	@Benchmark
+	public int[] limitedCodeLengths(CorpusState state) {
+		return HuffmanTree.limitedCodeLengths(state.freq, 12);
+	}
+
+	@Benchmark
+	public int[] pairCodeLengths(PairState state) {
+		return HuffmanTree.codeLengths(state.freq, CanonicalDecoder.MAX_CODE_LENGTH);
+	}
+
+	/**
+	 * The histogram of the byte pairs of a corpus, up to 65,536 symbols.
+	 */
+	@State(Scope.Benchmark)
+	public static class PairState {
+
+		@Param({ "UNIFORM", "ZIPF", "TEXT", "SINGLE" })
+		public Corpus corpus;
+
+		@Param({ "65536", "1048576", "16777216" })
+		public int size;
+
+		long[] freq;
+
+		@Setup
+		public void setUp() {
+			byte[] data = corpus.generate(size);
+			freq = new long[Alphabet.PAIRS.size];
+			for (int i = 0; i + 1 < data.length; i += 2)
+				freq[(data[i] & 0xFF) << 8 | data[i + 1] & 0xFF]++;
+		}
+	}
+}
@@ -0,0 +1,1010 @@
+package ProjectTwo;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * The adaptive mode: version 4 .huff files, written in one pass over the
+ * input, whose blocks each carry a code table built from their own bytes or
+ * reuse the table of the block before. A block gets a new table only when the
+ * bits it saves on the block outweigh the bits it takes to store.
+ * <p>
+ * After the {@link HuffHeader} come the blocks, each byte aligned:
+ * <ol>
+ * <li>the number of bytes it decodes to (4 bytes, more than 0),</li>
+ * <li>a flags byte, 1 if a code table follows and 0 if the table of the block
+ * before is used,</li>
+ * <li>the table, if any: its length in bits (4 bytes) and the code lengths
+ * serialized by {@link CodeLengths}, padded to whole bytes,</li>
+ * <li>the length of the encoded data in bits (8 bytes),</li>
+ * <li>in files with checksums, the CRC32C of the decoded bytes (4 bytes),</li>
+ * <li>the encoded data, padded to whole bytes.</li>
+ * </ol>
+ * A decoded length of 0 ends the blocks. The index follows: the number of
+ * blocks (4 bytes) and for each block its offset in the file (8 bytes), the
+ * offset of the block holding its table (8 bytes) and its decoded length (4
+ * bytes). The footer, the offset of the index (8 bytes), follows the index and
+ * ends the file.
+ * <p>
+ * Streams are decoded block after block; files and arrays are decoded on
+ * several threads through the index.
+ * <p>
+ * New blocks can be appended to a file in place. They go behind its footer,
+ * followed by an end marker, an index of all blocks and a footer of their
+ * own, and the old end marker then becomes -1: a decoded length of -1 is
+ * followed by an index and footer that a later append replaced, after which
+ * the blocks go on. The old index stays valid until the new footer is
+ * written, so a file whose append was cut short reads as it did before; only
+ * a stream of it fails, on the blocks the append left behind the index. An
+ * append killed between its footer and the old end marker leaves a marker of
+ * 0 with blocks after its index; streams read on past it, and the next append
+ * turns it into -1.
+ */
+final class AdaptiveBlocks {
+
+	private static final int MAX_BATCH = 64 << 20; // Most input bytes held at once by the encoder
+	private static final int ENTRY_SIZE = 20; // Bytes per index entry
+	private static final int FOOTER_SIZE = 8; // Bytes after the index
+	private static final int REPLACED = -1; // End marker of an index that an append replaced
+
+	private AdaptiveBlocks() {
+	}
+
+	/**
+	 * Encodes a source in one pass.
+	 *
+	 * @param source     The input; it is not closed.
+	 * @param extension  The extension to store in the header, may be empty.
+	 * @param target     Receives the .huff file; it is flushed but not closed.
+	 * @param options    The block size, thread count and code length limit.
+	 * @param bufferSize Size of the output buffer.
+	 * @param metrics    Times the phases of every batch.
+	 * @return Statistics of the run; the header and codes shown are those of
+	 *         the first block.
+	 * @throws IOException If reading or writing fails.
+	 */
+	static CodecStats encode(ByteSource source, String extension, OutputStream target, CodecOptions options,
+			int bufferSize, Metrics metrics) throws IOException {
+		HuffmanCodec.CountingOutputStream counting = new HuffmanCodec.CountingOutputStream(
+				new BufferedOutputStream(target, bufferSize));
+		DataOutputStream out = new DataOutputStream(counting);
+		try (Metrics.Span span = metrics.begin(Phase.HEADER)) {
+			HuffHeader.adaptive(extension, options.isChecksums()).write(out);
+			span.out(counting.count);
+		}
+
+		Encoder encoder = new Encoder(out, counting, options, metrics);
+		encoder.encodeAll(source, options.getThreads());
+		try (Metrics.Span span = metrics.begin(Phase.INDEX)) {
+			long indexStart = counting.count;
+			encoder.finish();
+			out.flush();
+			span.out(counting.count - indexStart);
+		}
+
+		Table first = encoder.first;
+		return new CodecStats(encoder.lengthBefore, counting.count, extension, first == null ? 0 : first.bitLength,
+				first == null ? "" : first.bits, first == null ? new Node[256] : first.codes.toNodes(encoder.freq),
+				metrics.finish("compress", encoder.lengthBefore, counting.count));
+	}
+
+	/**
+	 * Appends a source to a file in place. The new blocks, the index of all
+	 * blocks and a new footer are written behind the old footer, so only the
+	 * new data is read and coded. The first new block may reuse the table of
+	 * the last block, as any block may reuse the one before.
+	 * <p>
+	 * The old index and footer are left as they are until the new ones are
+	 * complete, and a copy of the old footer is kept at the end of the file as
+	 * it grows, so that the file reads as it did before wherever writing stops,
+ * though not as a stream.
+	 * The new footer is written last, over that copy. If appending fails, the
+	 * file is cut back to its old length; bytes left behind by an append that
+	 * was killed are dropped by the next one.
+	 *
+	 * @param header  The header of the file, of version 4.
+	 * @param file    The file, open for reading and writing.
+	 * @param source  The data to append; it is not closed.
+	 * @param options The block size, thread count and code length limit; the
+	 *                new blocks hold checksums if the file does.
+	 * @param metrics Times the index and the phases of every batch.
+	 * @return Statistics of the run: the bytes appended, how much the file grew
+	 *         and the first new table.
+	 * @throws IOException If the file cannot be accessed or is corrupt, or
+	 *                     reading the source fails.
+	 */
+	static CodecStats append(HuffHeader header, FileChannel file, ByteSource source, CodecOptions options,
+			int bufferSize, Metrics metrics) throws IOException {
+		Input input = input(file);
+		Index index;
+		Table last = null;
+		try (Metrics.Span span = metrics.begin(Phase.INDEX)) {
+			index = Index.read(header, input);
+			if (index.size > 0)
+				last = Table.read(input, index.tableOffsets[index.size - 1]);
+			span.in(index.tail - index.end);
+		}
+
+		markReplaced(header, file, input, index);
+
+		long sizeBefore = index.tail;
+		file.truncate(sizeBefore);
+		byte[] oldFooter = ByteBuffer.allocate(FOOTER_SIZE).putLong(index.end + 4).array();
+		HuffmanCodec.CountingOutputStream counting = new HuffmanCodec.CountingOutputStream(
+				new BufferedOutputStream(new FooterKeeping(file, sizeBefore, oldFooter), bufferSize));
+		counting.count = sizeBefore;
+		DataOutputStream out = new DataOutputStream(counting);
+		Encoder encoder = new Encoder(out, counting, options.withChecksums(header.checksummed), metrics);
+		encoder.resume(index, last);
+		long sizeAfter;
+		try {
+			encoder.encodeAll(source, options.getThreads());
+			if (encoder.lengthBefore == 0)
+				return stats(header, encoder, 0, metrics); // Nothing to append, the file stays as it is
+			try (Metrics.Span span = metrics.begin(Phase.INDEX)) {
+				long indexStart = counting.count;
+				long indexOffset = encoder.writeIndex();
+				out.flush();
+
+				// The new blocks and index must be on disk before the footer
+				// points to them
+				file.force(false);
+				sizeAfter = counting.count + FOOTER_SIZE;
+				writeFully(file, ByteBuffer.allocate(FOOTER_SIZE).putLong(0, indexOffset), counting.count);
+				file.force(false);
+				span.out(sizeAfter - indexStart);
+			}
+		} catch (IOException | RuntimeException e) {
+			try {
+				file.truncate(sizeBefore);
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		}
+		// Until now streams read the blocks before the append and stop at the old
+		// index, as a file that could not be appended to
+		writeFully(file, ByteBuffer.allocate(4).putInt(0, REPLACED), index.end);
+		file.force(false);
+		return stats(header, encoder, sizeAfter - sizeBefore, metrics);
+	}
+
+	/**
+	 * Marks the indexes of a file that appends replaced whose end marker is
+	 * still 0, as an append leaves it when it is killed after writing its
+	 * footer. An index lies before a block if the 8 bytes before the block
+	 * are a footer pointing to an index that counts the blocks before it.
+	 *
+	 * @param index The index of the file, which the marked indexes came before.
+	 * @throws IOException If the file cannot be accessed.
+	 */
+	private static void markReplaced(HuffHeader header, FileChannel file, Input input, Index index)
+			throws IOException {
+		byte[] bytes = new byte[FOOTER_SIZE];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		boolean marked = false;
+		for (int i = 0; i < index.size; i++) {
+			long indexOffset = index.offsets[i] - FOOTER_SIZE - (long) i * ENTRY_SIZE - 4;
+			if (indexOffset - 4 < (i == 0 ? header.size() : index.offsets[i - 1] + 13))
+				continue;
+			input.read(index.offsets[i] - FOOTER_SIZE, bytes, FOOTER_SIZE);
+			if (buffer.getLong(0) != indexOffset)
+				continue;
+			input.read(indexOffset - 4, bytes, 8);
+			if (buffer.getInt(4) == i && buffer.getInt(0) == 0) {
+				writeFully(file, ByteBuffer.allocate(4).putInt(0, REPLACED), indexOffset - 4);
+				marked = true;
+			}
+		}
+		if (marked)
+			file.force(false);
+	}
+
+	/**
+	 * @param grown How much the file grew.
+	 * @return Statistics of an append.
+	 */
+	private static CodecStats stats(HuffHeader header, Encoder encoder, long grown, Metrics metrics) {
+		Table first = encoder.first;
+		return new CodecStats(encoder.lengthBefore, grown, header.extension, first == null ? 0 : first.bitLength,
+				first == null ? "" : first.bits, first == null ? new Node[256] : first.codes.toNodes(encoder.freq),
+				metrics.finish("compress", encoder.lengthBefore, grown));
+	}
+
+	/**
+	 * Decodes the blocks of a stream positioned after the header. The stream
+	 * must support marks.
+	 *
+	 * @throws IOException If reading or writing fails or the input is corrupt.
+	 */
+	static CodecStats decode(HuffHeader header, DataInputStream in, OutputStream target, int bufferSize,
+			Metrics metrics) throws IOException {
+		byte[] buffer = new byte[bufferSize];
+		long lengthBefore = header.size();
+		long lengthAfter = 0;
+		Table table = null;
+		Table first = null;
+
+		// Tables are read between the blocks, so they are timed as decoding
+		CRC32C crc = header.checksummed ? new CRC32C() : null;
+		int blocks = 0;
+		try (Metrics.Span span = metrics.begin(Phase.DECODE)) {
+			for (;;) {
+				int length = in.readInt();
+				if (length == 0 || length == REPLACED) {
+					// An index, which the blocks of an append follow if the file
+					// goes on. An end marker of 0 with blocks after it is one that
+					// an append was killed before it could mark as replaced
+					lengthBefore += 4 + skipIndex(in, blocks, lengthBefore + 4);
+					if (length == 0 && atEnd(in))
+						break;
+					continue;
+				}
+				if (length < 0)
+					throw new IOException("Corrupt block length: " + length);
+				int flags = in.readUnsignedByte();
+				if (flags > 1)
+					throw new IOException("Corrupt block flags: " + flags);
+				if (flags == 1) {
+					table = Table.read(in);
+					lengthBefore += 4 + table.bits.length() / 8;
+					if (first == null)
+						first = table;
+				} else if (table == null)
+					throw new IOException("Block without a code table");
+
+				long bits = in.readLong();
+				if (bits < 0)
+					throw new IOException("Corrupt data length");
+				int checksum = header.checksummed ? in.readInt() : 0;
+				BitReader reader = new BitReader(in, bufferSize, bits);
+				if (crc != null)
+					crc.reset();
+				for (int done = 0, n; done < length; done += n) {
+					n = table.decoder.decode(reader, buffer, 0, Math.min(buffer.length, length - done));
+					if (n == 0)
+						throw new IOException("Truncated payload");
+					target.write(buffer, 0, n);
+					if (crc != null)
+						crc.update(buffer, 0, n);
+				}
+				if (reader.available != 0)
+					throw new IOException("Corrupt block");
+				if (crc != null && (int) crc.getValue() != checksum)
+					throw new IOException("Checksum mismatch in block " + blocks);
+				lengthBefore += 4 + 1 + 8 + (crc != null ? 4 : 0) + reader.bytesRead();
+				lengthAfter += length;
+				blocks++;
+			}
+			target.flush();
+			span.in(lengthBefore - header.size()).out(lengthAfter);
+		}
+
+		return new CodecStats(lengthBefore, lengthAfter, header.extension, first == null ? 0 : first.bitLength,
+				first == null ? "" : first.bits, first == null ? new Node[256] : first.codes.toNodes(null),
+				metrics.finish("decompress", lengthBefore, lengthAfter));
+	}
+
+	/**
+	 * Reads past an index and its footer in a stream.
+	 *
+	 * @param blocks      The number of blocks before it.
+	 * @param indexOffset Its offset in the file.
+	 * @return The length of the index and footer in bytes.
+	 * @throws IOException If the stream cannot be read, the index does not
+	 *                     count the blocks or the footer does not point to it.
+	 */
+	private static long skipIndex(DataInputStream in, int blocks, long indexOffset) throws IOException {
+		if (in.readInt() != blocks)
+			throw new IOException("Corrupt block index");
+		in.readFully(new byte[blocks * ENTRY_SIZE]);
+		if (in.readLong() != indexOffset)
+			throw new IOException("Corrupt block index");
+		return 4 + (long) blocks * ENTRY_SIZE + FOOTER_SIZE;
+	}
+
+	/**
+	 * @return Whether a stream, which must support marks, has no more bytes.
+	 */
+	private static boolean atEnd(DataInputStream in) throws IOException {
+		in.mark(1);
+		if (in.read() < 0)
+			return true;
+		in.reset();
+		return false;
+	}
+
+	/**
+	 * Decodes a file on several threads into a file that is first sized to the
+	 * original length.
+	 *
+	 * @param progress Receives the bytes decoded so far.
+	 * @param metrics  Times the index and the decoding.
+	 * @throws IOException If either file cannot be accessed, the input is
+	 *                     corrupt or the progress cancels the call.
+	 */
+	static CodecStats decode(HuffHeader header, FileChannel in, RandomAccessFile out, int threads,
+			Progress progress, Metrics metrics) throws IOException {
+		Input input = input(in);
+		Index index;
+		try (Metrics.Span span = metrics.begin(Phase.INDEX)) {
+			index = Index.read(header, input);
+			span.in(in.size() - index.end);
+		}
+
+		out.setLength(0);
+		out.setLength(index.total);
+		FileChannel target = out.getChannel();
+		ProgressMeter meter = new ProgressMeter(progress, index.total);
+		Table first;
+		try (Metrics.Span span = metrics.begin(Phase.DECODE)) {
+			first = decode(input, index, threads, (position, data, length) -> {
+				ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+				while (buffer.hasRemaining())
+					position += target.write(buffer, position);
+				meter.add(length);
+			});
+			span.in(index.end - header.size()).out(index.total);
+		}
+
+		return new CodecStats(in.size(), index.total, header.extension, first == null ? 0 : first.bitLength,
+				first == null ? "" : first.bits, first == null ? new Node[256] : first.codes.toNodes(null),
+				metrics.finish("decompress", in.size(), index.total));
+	}
+
+	/**
+	 * Decodes a file held in memory on several threads.
+	 *
+	 * @return The original data.
+	 * @throws IOException If the data is corrupt.
+	 */
+	static byte[] decode(HuffHeader header, byte[] data, int threads) throws IOException {
+		Input input = new Input() {
+			@Override
+			public long size() {
+				return data.length;
+			}
+
+			@Override
+			public void read(long position, byte[] dst, int length) throws IOException {
+				if (position + length > data.length)
+					throw new IOException("Truncated file");
+				System.arraycopy(data, (int) position, dst, 0, length);
+			}
+		};
+		Index index = Index.read(header, input);
+		if (index.total > Integer.MAX_VALUE - 8)
+			throw new IOException("Original data too large for an array: " + index.total);
+
+		byte[] out = new byte[(int) index.total];
+		decode(input, index, threads,
+				(position, decoded, length) -> System.arraycopy(decoded, 0, out, (int) position, length));
+		return out;
+	}
+
+	/**
+	 * Reads the index of a file, to decode any part of its blocks.
+	 *
+	 * @throws IOException If the file cannot be read or its index is corrupt.
+	 */
+	static HuffReader.Blocks blocks(HuffHeader header, FileChannel file) throws IOException {
+		Input input = input(file);
+		Index index = Index.read(header, input);
+		return new HuffReader.Blocks() {
+			private Table table; // The table read last, guarded by this
+			private long tableOffset = -1; // Offset of the block holding it
+
+			@Override
+			public int size() {
+				return index.size;
+			}
+
+			@Override
+			public long position(int block) {
+				return index.positions[block];
+			}
+
+			@Override
+			public int length(int block) {
+				return index.lengths[block];
+			}
+
+			@Override
+			public void decode(int block, int from, int to, byte[] out, int offset) throws IOException {
+				long end = block + 1 < index.size ? index.offsets[block + 1] : index.end;
+				byte[] packed = new byte[(int) (end - index.offsets[block])];
+				input.read(index.offsets[block], packed, packed.length);
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(packed));
+				int length = index.lengths[block];
+				if (in.readInt() != length)
+					throw new IOException("Corrupt block index");
+				int flags = in.readUnsignedByte();
+				if ((flags == 1) != (index.tableOffsets[block] == index.offsets[block]) || flags > 1)
+					throw new IOException("Corrupt block index");
+				if (flags == 1)
+					in.skipBytes(in.readInt() + 7 >>> 3);
+				Table table = table(index.tableOffsets[block]);
+
+				long bits = in.readLong();
+				int checksum = index.checksummed ? in.readInt() : 0;
+				int payload = packed.length - in.available();
+				checkPayload(bits, packed, payload, packed.length, block);
+				BitReader reader = new BitReader(packed, payload, (int) ((bits + 7) >>> 3), bits);
+				byte[] decoded = from == 0 ? out : new byte[to];
+				int base = from == 0 ? offset : 0;
+				for (int done = base, n; done < base + to; done += n) {
+					n = table.decoder.decode(reader, decoded, done, base + to);
+					if (n == 0)
+						throw new IOException("Truncated payload");
+				}
+				if (to == length) {
+					if (reader.available != 0)
+						throw new IOException("Corrupt block");
+					if (index.checksummed && from == 0) {
+						CRC32C crc = new CRC32C();
+						crc.update(decoded, base, length);
+						if ((int) crc.getValue() != checksum)
+							throw new IOException("Checksum mismatch in block " + block);
+					}
+				}
+				if (decoded != out)
+					System.arraycopy(decoded, from, out, offset, to - from);
+			}
+
+			/**
+			 * Blocks that share a table are often read one after the other, so
+			 * the last table is kept.
+			 */
+			private Table table(long offset) throws IOException {
+				synchronized (this) {
+					if (offset == tableOffset)
+						return table;
+				}
+				Table read = Table.read(input, offset);
+				synchronized (this) {
+					table = read;
+					tableOffset = offset;
+				}
+				return read;
+			}
+		};
+	}
+
+	/**
+	 * Checks that the payload of a block fills its bytes up to the next block,
+	 * or up to the index it ended before an append, with its end marker and
+	 * footer.
+	 *
+	 * @param bits    Length of the payload in bits, as the block says.
+	 * @param packed  The bytes of the block.
+	 * @param payload Index of packed of the first payload byte.
+	 * @param end     Index of packed after the last byte of the block.
+	 * @param block   Index of the block in the file.
+	 * @throws IOException If it does not.
+	 */
+	private static void checkPayload(long bits, byte[] packed, int payload, int end, int block)
+			throws IOException {
+		if (bits < 0 || (bits + 7) >>> 3 > end - payload)
+			throw new IOException("Corrupt block");
+		int rest = (int) (end - payload - ((bits + 7) >>> 3));
+		if (rest == 0)
+			return;
+		if (rest != 4 + 4 + (long) (block + 1) * ENTRY_SIZE + FOOTER_SIZE)
+			throw new IOException("Corrupt block");
+		int marker = ByteBuffer.wrap(packed).getInt(end - rest);
+		if (marker != 0 && marker != REPLACED)
+			throw new IOException("Corrupt block");
+	}
+
+	/**
+	 * Writes a whole buffer at a position of a file.
+	 */
+	private static void writeFully(FileChannel file, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining())
+			position += file.write(buffer, position);
+	}
+
+	/**
+	 * @return Positional reads from a file.
+	 */
+	private static Input input(FileChannel in) {
+		return new Input() {
+			@Override
+			public long size() throws IOException {
+				return in.size();
+			}
+
+			@Override
+			public void read(long position, byte[] dst, int length) throws IOException {
+				ByteBuffer buffer = ByteBuffer.wrap(dst, 0, length);
+				ParallelDecoder.readFully(in, buffer, position);
+				if (buffer.hasRemaining())
+					throw new IOException("Truncated file");
+			}
+		};
+	}
+
+	/**
+	 * Decodes every block to its place in the output, one task per thread.
+	 *
+	 * @return The table of the first block, null if there are no blocks.
+	 */
+	private static Table decode(Input input, Index index, int threads, Output output) throws IOException {
+		ParallelDecoder.run(index.size, threads, (tasks, first) -> {
+			byte[] packed = new byte[0];
+			byte[] decoded = new byte[0];
+			Table table = null;
+			long tableOffset = -1;
+			for (int i = first; i < index.size; i += tasks) {
+				long end = i + 1 < index.size ? index.offsets[i + 1] : index.end;
+				int bytes = (int) (end - index.offsets[i]);
+				if (packed.length < bytes)
+					packed = new byte[bytes];
+				if (decoded.length < index.lengths[i])
+					decoded = new byte[index.lengths[i]];
+				input.read(index.offsets[i], packed, bytes);
+
+				DataInputStream block = new DataInputStream(new ByteArrayInputStream(packed, 0, bytes));
+				if (block.readInt() != index.lengths[i])
+					throw new IOException("Corrupt block index");
+				int flags = block.readUnsignedByte();
+				if ((flags == 1) != (index.tableOffsets[i] == index.offsets[i]) || flags > 1)
+					throw new IOException("Corrupt block index");
+				if (flags == 1) {
+					table = Table.read(block);
+					tableOffset = index.offsets[i];
+				} else if (tableOffset != index.tableOffsets[i]) {
+					table = Table.read(input, index.tableOffsets[i]);
+					tableOffset = index.tableOffsets[i];
+				}
+
+				long bits = block.readLong();
+				int checksum = index.checksummed ? block.readInt() : 0;
+				int payload = bytes - block.available();
+				checkPayload(bits, packed, payload, bytes, i);
+				BitReader reader = new BitReader(packed, payload, (int) ((bits + 7) >>> 3), bits);
+				for (int done = 0, n; done < index.lengths[i]; done += n) {
+					n = table.decoder.decode(reader, decoded, done, index.lengths[i]);
+					if (n == 0)
+						throw new IOException("Truncated payload");
+				}
+				if (reader.available != 0)
+					throw new IOException("Corrupt block");
+				if (index.checksummed) {
+					CRC32C crc = new CRC32C();
+					crc.update(decoded, 0, index.lengths[i]);
+					if ((int) crc.getValue() != checksum)
+						throw new IOException("Checksum mismatch in block " + i);
+				}
+				output.write(index.positions[i], decoded, index.lengths[i]);
+			}
+		});
+		return index.size == 0 ? null : Table.read(input, index.tableOffsets[0]);
+	}
+
+	/**
+	 * Splits the input into blocks, picks their tables and writes them.
+	 */
+	private static final class Encoder {
+		private final DataOutputStream out;
+		private final HuffmanCodec.CountingOutputStream counting;
+		private final int blockSize;
+		private final int maxCodeLength;
+		private final boolean checksummed;
+		private final Metrics metrics;
+
+		final long[] freq = new long[256]; // Frequencies of the whole input
+		long lengthBefore; // Input bytes so far
+		Table first; // Table of the first block
+		private CodeTable current; // Table of the last block written
+		private long currentOffset; // Offset of the block holding it
+
+		private long[] offsets = new long[16];
+		private long[] tableOffsets = new long[16];
+		private int[] lengths = new int[16];
+		private int blocks;
+
+		Encoder(DataOutputStream out, HuffmanCodec.CountingOutputStream counting, CodecOptions options,
+				Metrics metrics) {
+			this.out = out;
+			this.counting = counting;
+			this.blockSize = options.getAdaptiveBlockSize();
+			this.maxCodeLength = options.getMaxCodeLength();
+			this.checksummed = options.isChecksums();
+			this.metrics = metrics;
+		}
+
+		/**
+		 * Continues the blocks of a file, after its last block.
+		 *
+		 * @param last The table of the last block, null if there are none.
+		 */
+		void resume(Index index, Table last) {
+			int capacity = Math.max(16, index.size);
+			offsets = Arrays.copyOf(index.offsets, capacity);
+			tableOffsets = Arrays.copyOf(index.tableOffsets, capacity);
+			lengths = Arrays.copyOf(index.lengths, capacity);
+			blocks = index.size;
+			if (last != null) {
+				current = last.codes;
+				currentOffset = index.tableOffsets[index.size - 1];
+			}
+		}
+
+		/**
+		 * Encodes a source in batches of as many blocks as there are threads.
+		 */
+		void encodeAll(ByteSource source, int threads) throws IOException {
+			byte[] batch = new byte[Math.max(1, Math.min(threads, MAX_BATCH / blockSize)) * blockSize];
+			int filled = 0;
+			ByteBuffer chunk;
+			while ((chunk = source.next()) != null) {
+				while (chunk.hasRemaining()) {
+					int n = Math.min(chunk.remaining(), batch.length - filled);
+					chunk.get(batch, filled, n);
+					filled += n;
+					if (filled == batch.length) {
+						encodeBatch(batch, filled);
+						filled = 0;
+					}
+				}
+			}
+			encodeBatch(batch, filled);
+		}
+
+		void encodeBatch(byte[] batch, int length) throws IOException {
+			int count = (length + blockSize - 1) / blockSize;
+			long[][] histograms = new long[count][];
+			try (Metrics.Span span = metrics.begin(Phase.HISTOGRAM)) {
+				invoke(count, i -> histograms[i] = Histogram.count(slice(batch, length, i), 1));
+				span.in(length);
+			}
+
+			// Every block gets its code lengths, whether or not its table is kept
+			int[][] lengths = new int[count][];
+			try (Metrics.Span span = metrics.begin(Phase.TREE)) {
+				invoke(count, i -> lengths[i] = HuffmanTree.codeLengths(histograms[i], maxCodeLength));
+				span.in(length);
+			}
+
+			// Tables are picked in order, since each choice depends on the one before
+			Table[] tables = new Table[count];
+			CodeTable[] codes = new CodeTable[count];
+			try (Metrics.Span span = metrics.begin(Phase.CODES)) {
+				for (int i = 0; i < count; i++) {
+					tables[i] = choose(histograms[i], lengths[i]);
+					if (tables[i] != null)
+						current = tables[i].codes;
+					codes[i] = current;
+					for (int s = 0; s < 256; s++)
+						freq[s] += histograms[i][s];
+				}
+				span.in(length);
+			}
+
+			try (Metrics.Span span = metrics.begin(Phase.ENCODE)) {
+				long payloadStart = counting.count;
+				byte[][] encoded = new byte[count][];
+				long[] bits = new long[count];
+				int[] checksums = new int[count];
+				invoke(count, i -> {
+					ByteBuffer block = slice(batch, length, i);
+					ByteArrayOutputStream data = new ByteArrayOutputStream(block.remaining() / 2 + 16);
+					BitWriter writer = new BitWriter(data, 64 * 1024);
+					try {
+						codes[i].encode(batch, block.position(), block.remaining(), writer);
+						bits[i] = writer.bitsWritten();
+						writer.finish();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					encoded[i] = data.toByteArray();
+					if (checksummed) {
+						CRC32C crc = new CRC32C();
+						crc.update(block);
+						checksums[i] = (int) crc.getValue();
+					}
+				});
+
+				for (int i = 0; i < count; i++) {
+					int blockLength = slice(batch, length, i).remaining();
+					long offset = counting.count;
+					if (tables[i] != null) {
+						currentOffset = offset;
+						if (first == null)
+							first = tables[i];
+					}
+					add(offset, currentOffset, blockLength);
+
+					out.writeInt(blockLength);
+					out.writeByte(tables[i] != null ? 1 : 0);
+					if (tables[i] != null)
+						tables[i].write(out);
+					out.writeLong(bits[i]);
+					if (checksummed)
+						out.writeInt(checksums[i]);
+					out.write(encoded[i]);
+					lengthBefore += blockLength;
+				}
+				span.in(length).out(counting.count - payloadStart);
+			}
+		}
+
+		/**
+		 * Compares the cost of a block with the current table to its cost with a
+		 * table of its own, that table included.
+		 *
+		 * @param lengths The code lengths of a table of its own.
+		 * @return The new table, or null to keep the current one.
+		 */
+		private Table choose(long[] histogram, int[] lengths) {
+			long reuse = current == null ? Long.MAX_VALUE : 0;
+			for (int s = 0; s < 256 && reuse != Long.MAX_VALUE; s++) {
+				if (histogram[s] != 0)
+					reuse = current.lengths[s] == 0 ? Long.MAX_VALUE : reuse + histogram[s] * current.lengths[s];
+			}
+
+			Table table = Table.of(lengths);
+			long fresh = 32 + table.bits.length();
+			for (int s = 0; s < 256; s++)
+				fresh += histogram[s] * table.codes.lengths[s];
+			return fresh < reuse ? table : null;
+		}
+
+		private void add(long offset, long tableOffset, int length) {
+			if (blocks == lengths.length) {
+				offsets = Arrays.copyOf(offsets, blocks * 2);
+				tableOffsets = Arrays.copyOf(tableOffsets, blocks * 2);
+				lengths = Arrays.copyOf(lengths, blocks * 2);
+			}
+			offsets[blocks] = offset;
+			tableOffsets[blocks] = tableOffset;
+			lengths[blocks] = length;
+			blocks++;
+		}
+
+		/**
+		 * Writes the end marker, the index and the footer.
+		 */
+		void finish() throws IOException {
+			out.writeLong(writeIndex());
+		}
+
+		/**
+		 * Writes the end marker and the index.
+		 *
+		 * @return The offset of the index, which the footer holds.
+		 */
+		long writeIndex() throws IOException {
+			out.writeInt(0);
+			long indexOffset = counting.count;
+			out.writeInt(blocks);
+			for (int i = 0; i < blocks; i++) {
+				out.writeLong(offsets[i]);
+				out.writeLong(tableOffsets[i]);
+				out.writeInt(lengths[i]);
+			}
+			return indexOffset;
+		}
+
+		private ByteBuffer slice(byte[] batch, int length, int block) {
+			int from = block * blockSize;
+			return ByteBuffer.wrap(batch, from, Math.min(blockSize, length - from));
+		}
+	}
+
+	/**
+	 * Runs a task for every block of a batch on the common fork-join pool.
+	 */
+	private static void invoke(int count, IntConsumer task) throws IOException {
+		List<ForkJoinTask<?>> tasks = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int block = i;
+			tasks.add(ForkJoinTask.adapt(Metrics.charged(() -> task.accept(block))));
+		}
+		try {
+			ForkJoinTask.invokeAll(tasks);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * A code table as stored in a block.
+	 */
+	private static final class Table {
+		final CodeTable codes;
+		final DecodeTable decoder;
+		final int bitLength; // Length of the serialized code lengths in bits
+		final String bits; // Serialized code lengths, padded to whole bytes
+
+		private Table(CodeTable codes, int bitLength, String bits) {
+			this.codes = codes;
+			this.decoder = DecodeTable.of(codes);
+			this.bitLength = bitLength;
+			this.bits = bits;
+		}
+
+		static Table of(int[] lengths) {
+			StringBuilder bits = new StringBuilder(CodeLengths.serialize(lengths));
+			int bitLength = bits.length();
+			while (bits.length() % 8 != 0)
+				bits.append('0');
+			return new Table(CodeTable.canonical(lengths), bitLength, bits.toString());
+		}
+
+		static Table read(DataInputStream in) throws IOException {
+			int bitLength = in.readInt();
+			if (bitLength < 0 || bitLength > 256 * 80)
+				throw new IOException("Corrupt Huffman header");
+			byte[] bytes = new byte[(bitLength + 7) / 8];
+			in.readFully(bytes);
+			StringBuilder bits = new StringBuilder(bytes.length * 8);
+			for (byte b : bytes)
+				bits.append(HuffmanTree.toBinaryString(b));
+			try {
+				CodeTable codes = CodeTable.canonical(CodeLengths.parse(bits, bitLength));
+				if (codes.maxLength() == 0)
+					throw new IOException("Corrupt Huffman header");
+				return new Table(codes, bitLength, bits.toString());
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage(), e);
+			}
+		}
+
+		/**
+		 * Reads the table of the block at an offset of the input.
+		 */
+		static Table read(Input input, long offset) throws IOException {
+			byte[] head = new byte[9];
+			input.read(offset, head, head.length);
+			if (head[4] != 1)
+				throw new IOException("Corrupt block index");
+			int bitLength = ByteBuffer.wrap(head, 5, 4).getInt();
+			if (bitLength < 0 || bitLength > 256 * 80)
+				throw new IOException("Corrupt Huffman header");
+			byte[] table = new byte[4 + (bitLength + 7) / 8];
+			input.read(offset + 5, table, table.length);
+			return read(new DataInputStream(new ByteArrayInputStream(table)));
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeInt(bitLength);
+			for (int i = 0; i < bits.length(); i += 8)
+				out.write(Integer.parseInt(bits.substring(i, i + 8), 2));
+		}
+	}
+
+	/**
+	 * The index of a file, checked against the file.
+	 */
+	private static final class Index {
+		int size;
+		long[] offsets;
+		long[] tableOffsets;
+		int[] lengths;
+		long[] positions; // Offset of each block in the original data
+		long total; // Length of the original data
+		long end; // Offset of the end marker
+		long tail; // Offset after the footer that follows the index, where appended blocks go
+		boolean checksummed; // Whether every block holds the checksum of its bytes
+
+		static Index read(HuffHeader header, Input input) throws IOException {
+			long size = input.size();
+			if (size < header.size() + 4 + 4 + FOOTER_SIZE)
+				throw new IOException("Truncated file");
+			byte[] footer = new byte[FOOTER_SIZE];
+			input.read(size - FOOTER_SIZE, footer, FOOTER_SIZE);
+			long indexOffset = ByteBuffer.wrap(footer).getLong();
+			if (indexOffset < header.size() + 4 || indexOffset > size - FOOTER_SIZE - 4)
+				throw new IOException("Corrupt block index");
+
+			// The footer follows the index; an append that was cut short leaves
+			// a copy of it at the end of the file, behind what it wrote
+			byte[] count = new byte[4];
+			input.read(indexOffset, count, count.length);
+			int blocks = ByteBuffer.wrap(count).getInt();
+			if (blocks < 0 || blocks > (size - FOOTER_SIZE - indexOffset - 4) / ENTRY_SIZE)
+				throw new IOException("Corrupt block index");
+			byte[] bytes = new byte[4 + blocks * ENTRY_SIZE + FOOTER_SIZE];
+			input.read(indexOffset, bytes, bytes.length);
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			Index index = new Index();
+			index.size = buffer.getInt();
+			if (buffer.getLong(bytes.length - FOOTER_SIZE) != indexOffset)
+				throw new IOException("Corrupt block index");
+			index.offsets = new long[index.size];
+			index.tableOffsets = new long[index.size];
+			index.lengths = new int[index.size];
+			index.positions = new long[index.size];
+			index.end = indexOffset - 4;
+			index.tail = indexOffset + bytes.length;
+			index.checksummed = header.checksummed;
+
+			long previous = header.size() - 1;
+			for (int i = 0; i < index.size; i++) {
+				index.offsets[i] = buffer.getLong();
+				index.tableOffsets[i] = buffer.getLong();
+				index.lengths[i] = buffer.getInt();
+				index.positions[i] = index.total;
+				index.total += index.lengths[i];
+				if (index.offsets[i] <= previous || index.offsets[i] + 13 > index.end || index.lengths[i] <= 0
+						|| index.tableOffsets[i] < header.size() || index.tableOffsets[i] > index.offsets[i])
+					throw new IOException("Corrupt block index");
+				previous = index.offsets[i];
+			}
+
+			// Every code takes at least one bit, which bounds the decoded length of
+			// a block by the bits it spans. The first block follows the header, or
+			// the index of a file that was empty before an append
+			for (int i = 0; i < index.size; i++) {
+				long end = i + 1 < index.size ? index.offsets[i + 1] : index.end;
+				if (index.lengths[i] > (end - index.offsets[i]) * 8 || i == 0 && index.offsets[0] != header.size()
+						&& index.offsets[0] != header.size() + 4 + 4 + FOOTER_SIZE)
+					throw new IOException("Corrupt block index");
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Writes to a file from a position on, keeping a footer behind the bytes
+	 * written: every write first puts the footer after its bytes, so that the
+	 * file ends with it whenever writing stops.
+	 */
+	private static final class FooterKeeping extends OutputStream {
+		private final FileChannel file;
+		private final byte[] footer;
+		private long position;
+
+		FooterKeeping(FileChannel file, long position, byte[] footer) {
+			this.file = file;
+			this.position = position;
+			this.footer = footer;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			writeFully(file, ByteBuffer.wrap(footer), position + len);
+			writeFully(file, ByteBuffer.wrap(b, off, len), position);
+			position += len;
+		}
+	}
+
+	/**
+	 * Positional reads from a compressed file.
+	 */
+	private interface Input {
+		long size() throws IOException;
+
+		void read(long position, byte[] dst, int length) throws IOException;
+	}
+
+	/**
+	 * Positional writes of decoded blocks.
+	 */
+	private interface Output {
+		void write(long position, byte[] data, int length) throws IOException;
+	}
+}
@@ -0,0 +1,44 @@
+package ProjectTwo;
+
+/**
+ * The symbols a Huffman code is built over. Bytes are the classic choice and
+ * the only one of file versions 1 to 4; the larger alphabets are written in
+ * the version 5 layout of {@link TokenCoder}, single threaded.
+ */
+public enum Alphabet {
+	/** Every byte value is a symbol: 256 symbols. */
+	BYTES(0, 256),
+	/**
+	 * Every pair of bytes is a symbol: 65,536 symbols. A trailing odd byte is
+	 * paired with a zero that the decoder drops. Suits data whose bytes depend
+	 * on their neighbour, such as 16-bit samples or UTF-16 text.
+	 */
+	PAIRS(1, 1 << 16),
+	/**
+	 * The 256 byte values plus up to 65,280 frequent words of the input, each
+	 * word a run of 2 to {@link TokenCoder#MAX_WORD} letters, digits or non
+	 * ASCII bytes. Other words are spelled out byte by byte. The words are
+	 * stored with the code, so this pays off for text of some length.
+	 */
+	WORDS(2, 1 << 16);
+
+	final int id; // Stored in version 5 headers
+	final int size; // Number of symbols, a power of two
+
+	Alphabet(int id, int size) {
+		this.id = id;
+		this.size = size;
+	}
+
+	/**
+	 * @return The alphabet stored under an id.
+	 * @throws IllegalArgumentException If no alphabet has that id.
+	 */
+	static Alphabet of(int id) {
+		for (Alphabet alphabet : values()) {
+			if (alphabet.id == id)
+				return alphabet;
+		}
+		throw new IllegalArgumentException("Unknown alphabet: " + id);
+	}
+}
@@ -0,0 +1,199 @@
+package ProjectTwo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Reads a bit stream, most significant bit first, through a 64-bit window.
+ * Decoders peek at the top of {@link #bitBuffer} and consume bits with
+ * {@link #skip(int)}; the window is refilled eight bytes at a time.
+ * <p>
+ * A reader either covers a byte array whose number of data bits is known, or
+ * streams a .huff payload through a fixed buffer. A version 1 payload ends
+ * with its last data byte and the number of padding bits in it, so a streaming
+ * reader holds back the last two bytes it has read and only counts them once
+ * the stream ends. A version 2 payload has a known number of bits, and the
+ * reader stops reading right after its last byte. Memory use does not depend
+ * on the length of the payload.
+ */
+final class BitReader {
+
+	private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.BIG_ENDIAN);
+
+	long bitBuffer; // Next bits of the stream, left aligned
+	int bitCount; // Number of loaded bits in bitBuffer, padding included
+	long available; // Number of data bits not consumed yet, loaded or not
+
+	private final byte[] data; // Source bytes
+	private int position; // Next byte of data to load
+	private int limit; // End of the bytes known to be data
+	private int end; // End of the bytes read into data
+	private final InputStream source; // Stream to read the payload from, null for an array
+	private boolean eof; // Whether the end of the source has been seen
+	private long remaining = -1; // Payload bytes not read from the source yet, -1 if a padding byte ends it
+	private long bytesRead; // Bytes read from the source so far
+
+	/**
+	 * @param data      Source bytes.
+	 * @param offset    Index of the first byte of the stream.
+	 * @param length    Number of bytes of the stream.
+	 * @param validBits Number of data bits in those bytes; the rest is padding.
+	 */
+	BitReader(byte[] data, int offset, int length, long validBits) {
+		this.data = data;
+		this.position = offset;
+		this.limit = offset + length;
+		this.end = limit;
+		this.available = validBits;
+		this.source = null;
+		this.eof = true;
+	}
+
+	/**
+	 * Streams a payload made of data bytes followed by one byte holding the
+	 * number of padding bits in the last data byte (0 is read as 8).
+	 *
+	 * @param source     The payload stream, positioned at its first byte.
+	 * @param bufferSize Size of the read buffer, at least 16 bytes.
+	 * @throws IOException If the stream cannot be read or the payload is
+	 *                     truncated.
+	 */
+	BitReader(InputStream source, int bufferSize) throws IOException {
+		this.data = new byte[Math.max(16, bufferSize)];
+		this.source = source;
+		fill();
+	}
+
+	/**
+	 * Streams a payload of a known number of bits, leaving the source positioned
+	 * after its last byte.
+	 *
+	 * @param source     The payload stream, positioned at its first byte.
+	 * @param bufferSize Size of the read buffer, at least 16 bytes.
+	 * @param validBits  Number of data bits in the payload.
+	 * @throws IOException If the stream cannot be read or ends too early.
+	 */
+	BitReader(InputStream source, int bufferSize, long validBits) throws IOException {
+		this.data = new byte[Math.max(16, bufferSize)];
+		this.source = source;
+		this.remaining = (validBits + 7) >>> 3;
+		this.available = validBits;
+		fill();
+	}
+
+	/**
+	 * Loads bytes into the window until it holds at least 56 bits or the source
+	 * is exhausted. Bits past the end of the source read as zeros. Until a
+	 * streaming source ends, at least 64 more data bits than the window holds
+	 * are counted in {@link #available} afterwards.
+	 *
+	 * @throws IOException If the stream cannot be read or the payload is
+	 *                     corrupt.
+	 */
+	void refill() throws IOException {
+		if (!eof && limit - position < 8)
+			fill();
+		load();
+		if (!eof && limit - position < 8)
+			fill();
+	}
+
+	private void load() {
+		if (position + 8 <= limit) {
+			// The bytes that do not fit are loaded again on the next refill, and
+			// OR-ing the same bits into the same places twice is harmless
+			bitBuffer |= (long) LONG_BE.get(data, position) >>> bitCount;
+			int bytes = (63 - bitCount) >>> 3;
+			position += bytes;
+			bitCount += bytes << 3;
+		} else {
+			while (bitCount <= 56 && position < limit) {
+				bitBuffer |= (long) (data[position++] & 0xFF) << (56 - bitCount);
+				bitCount += 8;
+			}
+		}
+	}
+
+	/**
+	 * Moves the unread bytes to the front of the buffer and reads the stream
+	 * until the buffer is full or the stream ends.
+	 */
+	private void fill() throws IOException {
+		int unread = end - position;
+		System.arraycopy(data, position, data, 0, unread);
+		int known = limit - position;
+		position = 0;
+		end = unread;
+
+		while (end < data.length) {
+			if (remaining == 0) {
+				eof = true;
+				break;
+			}
+			int want = data.length - end;
+			if (remaining > 0)
+				want = (int) Math.min(want, remaining);
+			int n = source.read(data, end, want);
+			if (n < 0) {
+				if (remaining > 0)
+					throw new IOException("Truncated payload");
+				eof = true;
+				break;
+			}
+			end += n;
+			bytesRead += n;
+			if (remaining > 0)
+				remaining -= n;
+		}
+
+		if (remaining >= 0)
+			limit = end; // available was set up front
+		else if (eof) {
+			if (bytesRead < 2)
+				throw new IOException("Truncated payload");
+			int padding = data[end - 1];
+			if (padding == 0) // written by old versions when no bits were left over
+				padding = 8;
+			if (padding < 0 || padding > 8)
+				throw new IOException("Corrupt padding byte: " + padding);
+			limit = end - 1;
+			available += 8L * (limit - known) - padding;
+		} else {
+			limit = end - 2;
+			available += 8L * (limit - known);
+		}
+	}
+
+	/**
+	 * @return The number of bytes read from a streaming source so far.
+	 */
+	long bytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Consumes bits from the window.
+	 *
+	 * @param n Number of bits, at most {@link #bitCount}.
+	 */
+	void skip(int n) {
+		bitBuffer <<= n;
+		bitCount -= n;
+		available -= n;
+	}
+
+	/**
+	 * @return The next bit, refilling the window if needed.
+	 */
+	int readBit() throws IOException {
+		if (bitCount == 0)
+			refill();
+		int bit = (int) (bitBuffer >>> 63);
+		skip(1);
+		return bit;
+	}
+}
@@ -0,0 +1,130 @@
+package ProjectTwo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Packs variable length codes, most significant bit first, into a 64-bit
+ * accumulator and stores it into a byte buffer one whole word at a time. No
+ * objects are allocated per code.
+ */
+final class BitWriter {
+
+	static final int MAX_CODE_LENGTH = 63; // Longest code write() accepts
+
+	private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.BIG_ENDIAN);
+
+	private final OutputStream out; // Receives the full buffers
+	private final byte[] buffer; // Packed bytes not yet handed to out
+	private int position; // Number of bytes used in buffer
+
+	private long bitBuffer; // Pending bits, right aligned
+	private int bitCount; // Number of pending bits (0-63)
+	private long bytesFlushed; // Bytes handed to out so far
+
+	/**
+	 * @param out        Receives the packed bytes.
+	 * @param bufferSize Size of the internal buffer, at least 8 bytes.
+	 */
+	BitWriter(OutputStream out, int bufferSize) {
+		this.out = out;
+		this.buffer = new byte[Math.max(8, bufferSize & ~7)];
+	}
+
+	/**
+	 * Appends the low bits of a code.
+	 *
+	 * @param code   The code, with no bits set above its length.
+	 * @param length Number of bits to write (1-63).
+	 * @throws IOException If the underlying stream fails.
+	 */
+	void write(long code, int length) throws IOException {
+		int free = 64 - bitCount;
+		if (length < free) {
+			bitBuffer = (bitBuffer << length) | code;
+			bitCount += length;
+			return;
+		}
+
+		// Fill the word with the top bits of the code; the bits that do not fit
+		// stay in the accumulator and the already written ones are shifted out later
+		int rest = length - free;
+		putLong((bitBuffer << free) | (code >>> rest));
+		bitBuffer = code;
+		bitCount = rest;
+	}
+
+	/**
+	 * Appends a bit string produced by another writer, whatever the bit
+	 * alignment of this one.
+	 *
+	 * @param data The bits, most significant bit of the first byte first.
+	 * @param bits Number of bits of data to append.
+	 * @throws IOException If the underlying stream fails.
+	 */
+	void append(byte[] data, long bits) throws IOException {
+		int i = 0;
+		for (; bits >= 56 && i + 8 <= data.length; i += 7, bits -= 56)
+			write((long) LONG_BE.get(data, i) >>> 8, 56);
+		while (bits > 0) {
+			int n = (int) Math.min(8, bits);
+			write((data[i++] & 0xFF) >>> (8 - n), n);
+			bits -= n;
+		}
+	}
+
+	/**
+	 * Writes the pending bits padded with zeros to a whole byte and hands every
+	 * buffered byte to the stream.
+	 *
+	 * @return The number of padding bits added (0-7).
+	 * @throws IOException If the underlying stream fails.
+	 */
+	int finish() throws IOException {
+		int padding = (8 - (bitCount & 7)) & 7;
+		if (bitCount != 0) {
+			if (position + 8 > buffer.length)
+				flushBuffer();
+			long aligned = bitBuffer << (64 - bitCount);
+			for (int i = 0, bytes = (bitCount + 7) >>> 3; i < bytes; i++)
+				buffer[position++] = (byte) (aligned >>> (56 - 8 * i));
+			bitBuffer = 0;
+			bitCount = 0;
+		}
+		flushBuffer();
+		return padding;
+	}
+
+	/**
+	 * @return The number of bits written so far, including pending ones.
+	 */
+	long bitsWritten() {
+		return (bytesFlushed + position) * 8 + bitCount;
+	}
+
+	private void putLong(long word) throws IOException {
+		if (position + 8 > buffer.length)
+			flushBuffer();
+		byte[] b = buffer;
+		int p = position;
+		b[p] = (byte) (word >>> 56);
+		b[p + 1] = (byte) (word >>> 48);
+		b[p + 2] = (byte) (word >>> 40);
+		b[p + 3] = (byte) (word >>> 32);
+		b[p + 4] = (byte) (word >>> 24);
+		b[p + 5] = (byte) (word >>> 16);
+		b[p + 6] = (byte) (word >>> 8);
+		b[p + 7] = (byte) word;
+		position = p + 8;
+	}
+
+	private void flushBuffer() throws IOException {
+		out.write(buffer, 0, position);
+		bytesFlushed += position;
+		position = 0;
+	}
+}
@@ -0,0 +1,245 @@
+package ProjectTwo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Where each block of a version 2, 3 or 6 .huff file starts. The input is
+ * encoded in blocks of {@link #BLOCK_SIZE} bytes with one code table; the
+ * codes of all blocks form one bit stream, and the index records the bit
+ * offset of each block in it together with the number of bytes the block
+ * decodes to. Any block can then be decoded on its own.
+ * <p>
+ * Files of version 6 also split every block into {@link #STREAMS} streams, one
+ * per quarter of its bytes, and record the bit offset of each stream. The
+ * streams follow each other in the payload, so it reads the same as without
+ * them; the offsets only let a decoder start on all of them at once.
+ * <p>
+ * On disk the index is the number of blocks (4 bytes) followed by one entry per
+ * block: the bit offset (8 bytes), in version 6 the offsets of the streams
+ * after the first relative to it (4 bytes each), the decoded length (4 bytes)
+ * and, in files with checksums, the CRC32C of the decoded bytes (4 bytes).
+ * <p>
+ * The index of a version 7 file of one block is implied by its header: it is
+ * only the checksum of the block, in files with checksums that have a block.
+ */
+final class BlockIndex {
+
+	static final int BLOCK_SIZE = 1 << 20; // Input bytes per block
+	static final int STREAMS = 4; // Streams per block of an interleaved index
+
+	private final int streams; // Streams per block, 1 if they are not indexed
+	private final boolean checksummed; // Whether the checksum of every block is stored
+	private final boolean implied; // Whether the header implies the one block, so only its checksum is stored
+
+	private long[] bitOffsets = new long[16]; // Offset of each block in the payload, in bits
+	private long[] positions = new long[16]; // Offset of each block in the original data
+	private int[] lengths = new int[16]; // Decoded length of each block
+	private int[] streamOffsets; // Offset of the later streams of each block from its start, in bits
+	private int[] checksums = new int[16]; // CRC32C of the decoded bytes of each block
+	private int size; // Number of blocks
+
+	/**
+	 * Creates an index without streams or checksums.
+	 */
+	BlockIndex() {
+		this(1, false);
+	}
+
+	/**
+	 * @param streams     Streams per block, 1 or {@link #STREAMS}.
+	 * @param checksummed Whether the checksum of every block is stored.
+	 */
+	BlockIndex(int streams, boolean checksummed) {
+		this(streams, checksummed, false);
+	}
+
+	private BlockIndex(int streams, boolean checksummed, boolean implied) {
+		this.streams = streams;
+		this.checksummed = checksummed;
+		this.implied = implied;
+		streamOffsets = new int[16 * (streams - 1)];
+	}
+
+	/**
+	 * Creates the index of a version 7 file of at most one block, which its
+	 * header implies.
+	 *
+	 * @param checksummed Whether the checksum of the block is stored.
+	 */
+	static BlockIndex implied(boolean checksummed) {
+		return new BlockIndex(1, checksummed, true);
+	}
+
+	/**
+	 * Appends a block of an index without streams or checksums.
+	 *
+	 * @param bitOffset Offset of its first code in the payload, in bits.
+	 * @param length    Number of bytes it decodes to.
+	 */
+	void add(long bitOffset, int length) {
+		add(bitOffset, length, null, 0);
+	}
+
+	/**
+	 * Appends a block.
+	 *
+	 * @param bitOffset     Offset of its first code in the payload, in bits.
+	 * @param length        Number of bytes it decodes to.
+	 * @param streamOffsets Offset of each stream from the first code of the
+	 *                      block, in bits, the first being 0; ignored, and may be
+	 *                      null, without streams.
+	 * @param checksum      CRC32C of the bytes it decodes to; ignored without
+	 *                      checksums.
+	 */
+	void add(long bitOffset, int length, int[] streamOffsets, int checksum) {
+		if (size == lengths.length) {
+			bitOffsets = Arrays.copyOf(bitOffsets, size * 2);
+			positions = Arrays.copyOf(positions, size * 2);
+			lengths = Arrays.copyOf(lengths, size * 2);
+			checksums = Arrays.copyOf(checksums, size * 2);
+			this.streamOffsets = Arrays.copyOf(this.streamOffsets, size * 2 * (streams - 1));
+		}
+		bitOffsets[size] = bitOffset;
+		positions[size] = size == 0 ? 0 : positions[size - 1] + lengths[size - 1];
+		lengths[size] = length;
+		checksums[size] = checksum;
+		if (streams > 1)
+			System.arraycopy(streamOffsets, 1, this.streamOffsets, size * (streams - 1), streams - 1);
+		size++;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int streams() {
+		return streams;
+	}
+
+	boolean checksummed() {
+		return checksummed;
+	}
+
+	long bitOffset(int block) {
+		return bitOffsets[block];
+	}
+
+	/**
+	 * @return The offset of a stream of a block in the payload, in bits.
+	 */
+	long bitOffset(int block, int stream) {
+		return stream == 0 ? bitOffsets[block] : bitOffsets[block] + streamOffsets[block * (streams - 1) + stream - 1];
+	}
+
+	/**
+	 * @return Where a stream starts within a block of the given length: each
+	 *         stream but the last holds the length divided by the number of
+	 *         streams, rounded up. A stream index equal to the number of streams
+	 *         gives the end of the block.
+	 */
+	static int streamStart(int length, int stream, int streams) {
+		return (int) Math.min(length, (long) stream * ((length + streams - 1) / streams));
+	}
+
+	long position(int block) {
+		return positions[block];
+	}
+
+	int length(int block) {
+		return lengths[block];
+	}
+
+	/**
+	 * @return The CRC32C of the bytes a block decodes to, if the index has
+	 *         checksums.
+	 */
+	int checksum(int block) {
+		return checksums[block];
+	}
+
+	/**
+	 * Compares the checksum of a block with the bytes it decoded to, if the
+	 * index has checksums.
+	 *
+	 * @param crc The checksum of the decoded bytes.
+	 * @throws IOException If they differ.
+	 */
+	void check(int block, int crc) throws IOException {
+		if (checksummed && crc != checksums[block])
+			throw new IOException("Checksum mismatch in block " + block);
+	}
+
+	/**
+	 * @return The length of the index on disk in bytes.
+	 */
+	long bytes() {
+		if (implied)
+			return checksummed && size > 0 ? 4 : 0;
+		return 4 + (12L + 4 * (streams - 1) + (checksummed ? 4 : 0)) * size;
+	}
+
+	void write(DataOutput out) throws IOException {
+		if (implied) {
+			if (size > 1)
+				throw new IOException("More than one block in a file whose header implies its index");
+			if (checksummed && size > 0)
+				out.writeInt(checksums[0]);
+			return;
+		}
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			out.writeLong(bitOffsets[i]);
+			for (int s = 0; s < streams - 1; s++)
+				out.writeInt(streamOffsets[i * (streams - 1) + s]);
+			out.writeInt(lengths[i]);
+			if (checksummed)
+				out.writeInt(checksums[i]);
+		}
+	}
+
+	/**
+	 * Reads an index and checks it against the header of its file.
+	 *
+	 * @throws IOException If the index cannot be read or does not describe the
+	 *                     payload.
+	 */
+	static BlockIndex read(DataInput in, HuffHeader header) throws IOException {
+		if (header.singleBlock) {
+			BlockIndex index = implied(header.checksummed);
+			if (header.originalLength > 0)
+				index.add(0, (int) header.originalLength, null, header.checksummed ? in.readInt() : 0);
+			return index;
+		}
+		int count = in.readInt();
+		if (count < 0)
+			throw new IOException("Corrupt block index");
+
+		int streams = header.version == HuffHeader.INTERLEAVED_VERSION ? STREAMS : 1;
+		BlockIndex index = new BlockIndex(streams, header.checksummed);
+		int[] streamOffsets = new int[streams];
+		long previous = 0;
+		for (int i = 0; i < count; i++) {
+			long bitOffset = in.readLong();
+			if (bitOffset < previous || bitOffset > header.payloadBits || (i == 0 && bitOffset != 0))
+				throw new IOException("Corrupt block index");
+			for (int s = 1; s < streams; s++) {
+				streamOffsets[s] = in.readInt();
+				if (streamOffsets[s] < streamOffsets[s - 1] || bitOffset + streamOffsets[s] > header.payloadBits)
+					throw new IOException("Corrupt block index");
+			}
+			int length = in.readInt();
+			if (length <= 0)
+				throw new IOException("Corrupt block index");
+			index.add(bitOffset, length, streamOffsets, header.checksummed ? in.readInt() : 0);
+			previous = bitOffset + streamOffsets[streams - 1];
+		}
+
+		long total = count == 0 ? 0 : index.position(count - 1) + index.length(count - 1);
+		if (total != header.originalLength)
+			throw new IOException("Corrupt block index");
+		return index;
+	}
+}
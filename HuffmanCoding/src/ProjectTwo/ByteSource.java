@@ -0,0 +1,100 @@
+package ProjectTwo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Hands out the input of one pass as a sequence of byte buffers. A buffer is
+ * only valid until the next call to {@link #next()}.
+ */
+interface ByteSource extends Closeable {
+
+	/**
+	 * @return The next chunk of the input, positioned at its first byte, or null
+	 *         at the end of the input.
+	 * @throws IOException If the input cannot be read.
+	 */
+	ByteBuffer next() throws IOException;
+
+	/**
+	 * @param data The whole input; its position and limit are left untouched.
+	 * @return A source handing out the input as a single chunk.
+	 */
+	static ByteSource of(ByteBuffer data) {
+		return new ByteSource() {
+			private boolean done;
+
+			@Override
+			public ByteBuffer next() {
+				if (done)
+					return null;
+				done = true;
+				return data.duplicate();
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	/**
+	 * @param in         The input, read once to its end; it is not closed.
+	 * @param bufferSize Largest chunk handed out.
+	 * @return A source handing out what the stream reads, chunk by chunk
+	 *         through one buffer.
+	 */
+	static ByteSource of(InputStream in, int bufferSize) {
+		byte[] buffer = new byte[bufferSize];
+		return new ByteSource() {
+			@Override
+			public ByteBuffer next() throws IOException {
+				int n = in.read(buffer);
+				return n < 0 ? null : ByteBuffer.wrap(buffer, 0, n);
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	/**
+	 * @return An input stream over the remaining chunks; closing it closes the
+	 *         source.
+	 */
+	default InputStream asInputStream() {
+		return new InputStream() {
+			private ByteBuffer chunk = ByteBuffer.allocate(0);
+
+			@Override
+			public int read() throws IOException {
+				return ensureChunk() ? chunk.get() & 0xFF : -1;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (len == 0)
+					return 0;
+				if (!ensureChunk())
+					return -1;
+				int n = Math.min(len, chunk.remaining());
+				chunk.get(b, off, n);
+				return n;
+			}
+
+			private boolean ensureChunk() throws IOException {
+				while (chunk != null && !chunk.hasRemaining())
+					chunk = next();
+				return chunk != null;
+			}
+
+			@Override
+			public void close() throws IOException {
+				ByteSource.this.close();
+			}
+		};
+	}
+}
@@ -0,0 +1,103 @@
+package ProjectTwo;
+
+import java.io.IOException;
+
+/**
+ * Decoder for canonical codes over alphabets of up to 65,536 symbols, where
+ * the symbol packing of {@link DecodeTable} does not reach. The next
+ * {@link #PRIMARY_BITS} bits of the stream index a table that resolves every
+ * code up to that length (symbol in bits 0-15, code length from bit 16, 0 for
+ * a longer code). Longer codes are found length by length: the canonical
+ * codes of one length are consecutive numbers, and every code of a longer
+ * length lies above them, so the first length whose range holds the next bits
+ * is the length of the code.
+ */
+final class CanonicalDecoder {
+
+	static final int PRIMARY_BITS = 11; // Bits resolved by the primary table
+	static final int MAX_CODE_LENGTH = 32; // Longest code, so that one refill covers it
+
+	private final int[] primary = new int[1 << PRIMARY_BITS];
+	private final long[] limit = new long[MAX_CODE_LENGTH + 1]; // End of the codes of each length
+	private final long[] first = new long[MAX_CODE_LENGTH + 1]; // First code of each length
+	private final int[] offset = new int[MAX_CODE_LENGTH + 1]; // Index in sorted of that code
+	private final int[] sorted; // Symbols ordered by code length and value
+	private final int maxLength;
+
+	/**
+	 * @param codes A canonical code of at most {@link #MAX_CODE_LENGTH} bits
+	 *              with at least one symbol.
+	 * @throws IllegalArgumentException If a code is too long.
+	 */
+	CanonicalDecoder(CodeTable codes) {
+		int[] count = new int[MAX_CODE_LENGTH + 1];
+		int symbols = 0;
+		for (int length : codes.lengths) {
+			if (length > MAX_CODE_LENGTH)
+				throw new IllegalArgumentException("Code longer than " + MAX_CODE_LENGTH + " bits");
+			if (length > 0) {
+				count[length]++;
+				symbols++;
+			}
+		}
+		maxLength = codes.maxLength();
+
+		sorted = new int[symbols];
+		for (int length = 1, index = 0; length <= MAX_CODE_LENGTH; length++) {
+			offset[length] = index;
+			index += count[length];
+		}
+		int[] next = offset.clone();
+		for (int symbol = 0; symbol < codes.lengths.length; symbol++) {
+			int length = codes.lengths[symbol];
+			if (length > 0)
+				sorted[next[length]++] = symbol;
+		}
+		for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+			if (count[length] > 0)
+				first[length] = codes.codes[sorted[offset[length]]];
+			limit[length] = first[length] + count[length];
+		}
+
+		for (int symbol = 0; symbol < codes.lengths.length; symbol++) {
+			int length = codes.lengths[symbol];
+			if (length == 0 || length > PRIMARY_BITS)
+				continue;
+			int from = (int) (codes.codes[symbol] << (PRIMARY_BITS - length));
+			int to = from + (1 << (PRIMARY_BITS - length));
+			for (int i = from; i < to; i++)
+				primary[i] = symbol | length << 16;
+		}
+	}
+
+	/**
+	 * Decodes symbols until the output range is full or the data ends.
+	 *
+	 * @return The number of symbols decoded.
+	 * @throws IOException If the data holds no valid code.
+	 */
+	int decode(BitReader in, int[] out, int from, int to) throws IOException {
+		int p = from;
+		while (p < to && in.available > 0) {
+			if (in.bitCount < MAX_CODE_LENGTH)
+				in.refill();
+			int entry = primary[(int) (in.bitBuffer >>> (64 - PRIMARY_BITS))];
+			int length = entry >>> 16;
+			int symbol = entry & 0xFFFF;
+			if (length == 0) {
+				for (length = PRIMARY_BITS + 1; length <= maxLength; length++) {
+					long code = in.bitBuffer >>> (64 - length);
+					if (code < limit[length]) {
+						symbol = sorted[offset[length] + (int) (code - first[length])];
+						break;
+					}
+				}
+			}
+			if (length > in.available || length > maxLength)
+				throw new IOException("Corrupt payload");
+			in.skip(length);
+			out[p++] = symbol;
+		}
+		return p - from;
+	}
+}
@@ -0,0 +1,140 @@
+package ProjectTwo;
+
+/**
+ * Serializes the code lengths of a canonical code, which is all a version 3
+ * header stores about the code. An empty code takes no bits; any other is the
+ * number of symbols in 9 bits (17 for an alphabet of 65,536 symbols), the
+ * width w of a length field in 6 bits, and then for every symbol in ascending
+ * order of value the distance to the symbol before (to -1 for the first) as an
+ * Elias gamma code, followed by its code length in w bits.
+ * <p>
+ * The symbols of text mostly lie next to each other, so a symbol typically
+ * costs 5 or 6 bits, where a serialized tree costs 10.
+ */
+final class CodeLengths {
+
+	private CodeLengths() {
+	}
+
+	/**
+	 * @param lengths Code length of each symbol of the alphabet, 0 for symbols
+	 *                that do not occur.
+	 * @return The serialized lengths as a binary string.
+	 */
+	static String serialize(int[] lengths) {
+		int symbols = 0;
+		int maxLength = 0;
+		for (int length : lengths) {
+			if (length > 0)
+				symbols++;
+			maxLength = Math.max(maxLength, length);
+		}
+
+		if (symbols == 0)
+			return "";
+		StringBuilder bits = new StringBuilder();
+		append(bits, symbols, countWidth(lengths.length));
+
+		int width = 32 - Integer.numberOfLeadingZeros(maxLength);
+		append(bits, width, 6);
+		for (int symbol = 0, previous = -1; symbol < lengths.length; symbol++) {
+			if (lengths[symbol] == 0)
+				continue;
+			int gap = symbol - previous;
+			int size = 31 - Integer.numberOfLeadingZeros(gap);
+			for (int i = 0; i < size; i++)
+				bits.append('0');
+			append(bits, gap, size + 1);
+			append(bits, lengths[symbol], width);
+			previous = symbol;
+		}
+		return bits.toString();
+	}
+
+	/**
+	 * Reads serialized code lengths of the byte alphabet back.
+	 *
+	 * @param bits   The serialized lengths, possibly followed by padding bits.
+	 * @param length Number of meaningful bits.
+	 * @return The code length of each unsigned byte value.
+	 * @throws IllegalArgumentException If the bits are not serialized lengths.
+	 */
+	static int[] parse(CharSequence bits, int length) {
+		return parse(bits, length, 256);
+	}
+
+	/**
+	 * Reads serialized code lengths back.
+	 *
+	 * @param bits         The serialized lengths, possibly followed by padding
+	 *                     bits.
+	 * @param length       Number of meaningful bits.
+	 * @param alphabetSize Number of symbols of the alphabet, a power of two.
+	 * @return The code length of each symbol.
+	 * @throws IllegalArgumentException If the bits are not serialized lengths.
+	 */
+	static int[] parse(CharSequence bits, int length, int alphabetSize) {
+		Reader in = new Reader(bits, length);
+		int[] lengths = new int[alphabetSize];
+		if (length == 0)
+			return lengths;
+
+		int symbols = in.read(countWidth(alphabetSize));
+		if (symbols == 0 || symbols > alphabetSize)
+			throw new IllegalArgumentException("Corrupt Huffman header");
+		int width = in.read(6);
+		int maxGap = Integer.numberOfTrailingZeros(alphabetSize);
+		for (int i = 0, symbol = -1; i < symbols; i++) {
+			int size = 0;
+			while (in.read(1) == 0)
+				size++;
+			if (size > maxGap)
+				throw new IllegalArgumentException("Corrupt Huffman header");
+			symbol += 1 << size | in.read(size);
+			if (symbol >= alphabetSize)
+				throw new IllegalArgumentException("Corrupt Huffman header");
+			lengths[symbol] = in.read(width);
+			if (lengths[symbol] == 0)
+				throw new IllegalArgumentException("Corrupt Huffman header");
+		}
+		if (in.position != length)
+			throw new IllegalArgumentException("Corrupt Huffman header");
+		return lengths;
+	}
+
+	/**
+	 * @return The width of the symbol count, enough to hold the size of the
+	 *         alphabet itself.
+	 */
+	private static int countWidth(int alphabetSize) {
+		return 32 - Integer.numberOfLeadingZeros(alphabetSize);
+	}
+
+	private static void append(StringBuilder bits, int value, int width) {
+		for (int i = width - 1; i >= 0; i--)
+			bits.append((value >>> i) & 1);
+	}
+
+	/**
+	 * Reads fixed width numbers off a binary string.
+	 */
+	private static final class Reader {
+		private final CharSequence bits;
+		private final int length;
+		int position;
+
+		Reader(CharSequence bits, int length) {
+			this.bits = bits;
+			this.length = length;
+		}
+
+		int read(int width) {
+			if (position + width > length)
+				throw new IllegalArgumentException("Corrupt Huffman header");
+			int value = 0;
+			for (int i = 0; i < width; i++)
+				value = value << 1 | (bits.charAt(position++) == '1' ? 1 : 0);
+			return value;
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package ProjectTwo;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Primitive encode table: the code of every symbol as a right aligned long
+ * plus its length in bits. A length of 0 marks a symbol that does not occur.
+ * Symbols are byte values unless the table was built for a larger
+ * {@link Alphabet}.
+ */
+final class CodeTable {
+
+	final long[] codes; // Code of each symbol
+	final int[] lengths; // Code length of each symbol
+
+	private CodeTable(int alphabetSize) {
+		codes = new long[alphabetSize];
+		lengths = new int[alphabetSize];
+	}
+
+	/**
+	 * Reads the codes off a Huffman tree of the byte alphabet as files of
+	 * version 1 and 2 label it: a left edge is a 0 bit, a right edge a 1 bit,
+	 * and a tree made of a single leaf gets the one bit code 1.
+	 *
+	 * @param tree The tree, may be empty.
+	 * @return The code table.
+	 * @throws IllegalArgumentException If a code is longer than
+	 *                                  {@link BitWriter#MAX_CODE_LENGTH} bits.
+	 */
+	static CodeTable of(FlatTree tree) {
+		CodeTable table = new CodeTable(256);
+		tree.codes(table.codes, table.lengths);
+		if (table.maxLength() > BitWriter.MAX_CODE_LENGTH)
+			throw new IllegalArgumentException("Huffman code longer than " + BitWriter.MAX_CODE_LENGTH + " bits");
+		return table;
+	}
+
+	/**
+	 * Assigns canonical codes: symbols are ordered by code length and then by
+	 * value, and each gets the code following the one of the symbol before,
+	 * shifted left to its own length. The lengths alone therefore describe the
+	 * code.
+	 *
+	 * @param lengths Code length of each symbol, 0 for symbols that do not occur;
+	 *                the table covers as many symbols.
+	 * @return The code table.
+	 * @throws IllegalArgumentException If the lengths do not describe a complete
+	 *                                  prefix code of at most
+	 *                                  {@link BitWriter#MAX_CODE_LENGTH} bits, or a
+	 *                                  single symbol with a one bit code.
+	 */
+	static CodeTable canonical(int[] lengths) {
+		int[] count = new int[BitWriter.MAX_CODE_LENGTH + 1];
+		int symbols = 0;
+		for (int length : lengths) {
+			if (length < 0 || length > BitWriter.MAX_CODE_LENGTH)
+				throw new IllegalArgumentException("Invalid code length: " + length);
+			if (length > 0) {
+				count[length]++;
+				symbols++;
+			}
+		}
+
+		// Every level doubles the unused codes; a complete code uses them all
+		long left = 1;
+		for (int length = 1; length < count.length && symbols > 1; length++) {
+			left = (left << 1) - count[length];
+			if (left < 0 || left > lengths.length)
+				throw new IllegalArgumentException("Code lengths do not form a complete prefix code");
+		}
+		if (symbols > 1 ? left != 0 : symbols == 1 && count[1] != 1)
+			throw new IllegalArgumentException("Code lengths do not form a complete prefix code");
+
+		long[] next = new long[count.length];
+		for (int length = 1; length < count.length; length++)
+			next[length] = (next[length - 1] + count[length - 1]) << 1;
+
+		CodeTable table = new CodeTable(lengths.length);
+		for (int symbol = 0; symbol < lengths.length; symbol++) {
+			int length = lengths[symbol];
+			if (length > 0) {
+				table.codes[symbol] = next[length]++;
+				table.lengths[symbol] = length;
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * @return The length of the longest code, 0 if no byte has one.
+	 */
+	int maxLength() {
+		return Arrays.stream(lengths).max().orElse(0);
+	}
+
+	/**
+	 * Describes the codes of the first 256 symbols, the byte values, as leaf
+	 * {@link Node}s for display.
+	 *
+	 * @param freq Frequency of each symbol, or null if not known.
+	 * @return The leaves indexed by their unsigned byte value, null for bytes
+	 *         without a code.
+	 */
+	Node[] toNodes(long[] freq) {
+		Node[] nodes = new Node[256];
+		for (int symbol = 0; symbol < 256; symbol++) {
+			int length = lengths[symbol];
+			if (length == 0)
+				continue;
+			StringBuilder code = new StringBuilder(length);
+			for (int i = length - 1; i >= 0; i--)
+				code.append((codes[symbol] >>> i) & 1);
+			Node node = new Node((byte) symbol, freq == null ? 0 : freq[symbol]);
+			node.setHuffCode(code.toString());
+			node.setHuffLength((byte) length);
+			nodes[symbol] = node;
+		}
+		return nodes;
+	}
+
+	/**
+	 * Appends the codes of a run of bytes to a bit writer.
+	 *
+	 * @throws IOException If a byte has no code or the writer fails.
+	 */
+	void encode(byte[] data, int offset, int length, BitWriter writer) throws IOException {
+		long[] codes = this.codes;
+		int[] lengths = this.lengths;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			int symbol = data[i] & 0xFF;
+			int codeLength = lengths[symbol];
+			if (codeLength == 0)
+				throw new IOException("Input changed between the two passes");
+			writer.write(codes[symbol], codeLength);
+		}
+	}
+
+	/**
+	 * Appends the codes of a run of symbols to a bit writer.
+	 *
+	 * @throws IOException If a symbol has no code or the writer fails.
+	 */
+	void encode(int[] symbols, int offset, int length, BitWriter writer) throws IOException {
+		long[] codes = this.codes;
+		int[] lengths = this.lengths;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			int codeLength = lengths[symbols[i]];
+			if (codeLength == 0)
+				throw new IOException("Input changed between the two passes");
+			writer.write(codes[symbols[i]], codeLength);
+		}
+	}
+}
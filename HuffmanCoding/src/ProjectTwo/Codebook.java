@@ -0,0 +1,173 @@
+package ProjectTwo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+/**
+ * A code table trained once on a sample of the data and stored on its own, so
+ * that many small inputs of the same kind can be coded with it: see
+ * {@link CodecOptions#withCodebook(Codebook)}. Every byte value has a code,
+ * also those the sample lacks, so any input can be coded with any codebook;
+ * inputs unlike the sample only compress worse.
+ * <p>
+ * A codebook is known by its id, the CRC32C of its code lengths, which files
+ * coded with it store in place of a table. A codebook file holds the magic
+ * bytes 0x89 'H' 'C' 'B', the version (1 byte) and the code lengths as in a
+ * version 3 .huff header: their length in bits (4 bytes) and the lengths
+ * serialized by {@link CodeLengths}, padded to whole bytes.
+ * <p>
+ * Codebooks are immutable.
+ */
+public final class Codebook {
+
+	static final int MAGIC = 0x89484342; // 0x89 'H' 'C' 'B'
+	static final int VERSION = 1; // Version written by this release
+
+	final CodeTable codes; // The code of every byte value
+	final DecodeTable decoder; // Built once for every file decoded with it
+	final int tableLength; // Length of the serialized code lengths in bits
+	final String table; // The serialized code lengths, padded with zeros to whole bytes
+	private final int id;
+
+	private Codebook(int[] lengths) {
+		this.codes = CodeTable.canonical(lengths);
+		this.decoder = DecodeTable.of(codes);
+		String bits = CodeLengths.serialize(lengths);
+		this.tableLength = bits.length();
+		StringBuilder padded = new StringBuilder(bits);
+		while (padded.length() % 8 != 0)
+			padded.append('0');
+		this.table = padded.toString();
+		CRC32C crc = new CRC32C();
+		for (int length : lengths)
+			crc.update(length);
+		this.id = (int) crc.getValue();
+	}
+
+	/**
+	 * Trains a codebook on sample files.
+	 *
+	 * @param samples       Files like those the codebook will code.
+	 * @param maxCodeLength Longest code in bits, from
+	 *                      {@link CodecOptions#MIN_CODE_LENGTH_LIMIT} to 63.
+	 * @return The codebook.
+	 * @throws IOException If a sample cannot be read.
+	 */
+	public static Codebook train(Iterable<Path> samples, int maxCodeLength) throws IOException {
+		long[] freq = new long[256];
+		for (Path sample : samples) {
+			long size = Files.size(sample);
+			long[] counts = Histogram.count(sample, IoMode.forSize(size), 1, new ProgressMeter(Progress.NONE, size));
+			for (int i = 0; i < 256; i++)
+				freq[i] += counts[i];
+		}
+		return train(freq, maxCodeLength);
+	}
+
+	/**
+	 * Trains a codebook on samples held in memory.
+	 *
+	 * @param samples       Inputs like those the codebook will code.
+	 * @param maxCodeLength Longest code in bits, from
+	 *                      {@link CodecOptions#MIN_CODE_LENGTH_LIMIT} to 63.
+	 * @return The codebook.
+	 */
+	public static Codebook fromSamples(Iterable<byte[]> samples, int maxCodeLength) {
+		long[] freq = new long[256];
+		for (byte[] sample : samples) {
+			for (byte b : sample)
+				freq[b & 0xFF]++;
+		}
+		return train(freq, maxCodeLength);
+	}
+
+	/**
+	 * Builds the code of the frequencies, counting every byte value at least
+	 * once so that each gets a code.
+	 */
+	static Codebook train(long[] freq, int maxCodeLength) {
+		if (maxCodeLength < CodecOptions.MIN_CODE_LENGTH_LIMIT || maxCodeLength > BitWriter.MAX_CODE_LENGTH)
+			throw new IllegalArgumentException("maxCodeLength must be between "
+					+ CodecOptions.MIN_CODE_LENGTH_LIMIT + " and " + BitWriter.MAX_CODE_LENGTH + ": " + maxCodeLength);
+		long[] counts = new long[256];
+		for (int i = 0; i < 256; i++)
+			counts[i] = Math.max(1, freq[i]);
+		return new Codebook(HuffmanTree.codeLengths(counts, maxCodeLength));
+	}
+
+	/**
+	 * Reads a codebook file.
+	 *
+	 * @param file The file written by {@link #write(Path)}.
+	 * @return The codebook.
+	 * @throws IOException If the file cannot be read or is not a codebook.
+	 */
+	public static Codebook read(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a codebook");
+			int version = in.readUnsignedByte();
+			if (version != VERSION)
+				throw new IOException("Unsupported codebook version: " + version);
+			int tableLength = in.readInt();
+			if (tableLength < 0 || tableLength > 256 * 80)
+				throw new IOException("Corrupt codebook");
+			byte[] bytes = new byte[(tableLength + 7) / 8];
+			in.readFully(bytes);
+			if (in.read() >= 0)
+				throw new IOException("Corrupt codebook");
+			StringBuilder bits = new StringBuilder(bytes.length * 8);
+			for (byte b : bytes)
+				bits.append(HuffmanTree.toBinaryString(b));
+			int[] lengths;
+			try {
+				lengths = CodeLengths.parse(bits, tableLength);
+				CodeTable.canonical(lengths);
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage(), e);
+			}
+			for (int length : lengths) {
+				if (length == 0)
+					throw new IOException("Codebook without a code for every byte");
+			}
+			return new Codebook(lengths);
+		}
+	}
+
+	/**
+	 * Writes the codebook to a file.
+	 *
+	 * @param file The file to create or overwrite.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void write(Path file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeInt(tableLength);
+			for (int i = 0; i < table.length(); i += 8)
+				out.write(Integer.parseInt(table.substring(i, i + 8), 2));
+		}
+	}
+
+	/**
+	 * @return The id that files coded with this codebook store.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return The id as eight hexadecimal digits, as messages show it.
+	 */
+	@Override
+	public String toString() {
+		return String.format("%08x", id);
+	}
+}
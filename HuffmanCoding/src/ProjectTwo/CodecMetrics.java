@@ -0,0 +1,103 @@
+package ProjectTwo;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable timing of one compression or decompression run, phase by phase:
+ * wall time, CPU time and allocated bytes, and the bytes each phase read and
+ * wrote. CPU time and allocations include the worker threads of parallel
+ * phases; they are 0 where the JVM does not measure them per thread.
+ */
+public final class CodecMetrics {
+
+	private final List<Phase> phases; // Phases that ran, in the order they started
+	private final long[] wallNanos; // Wall time per phase
+	private final long[] cpuNanos; // CPU time per phase, of all threads
+	private final long[] allocatedBytes; // Heap allocated per phase, by all threads
+	private final long[] bytesIn; // Bytes read per phase
+	private final long[] bytesOut; // Bytes written per phase
+	private final long totalNanos; // Wall time of the whole run
+
+	CodecMetrics(List<Phase> phases, long[] wallNanos, long[] cpuNanos, long[] allocatedBytes, long[] bytesIn,
+			long[] bytesOut, long totalNanos) {
+		this.phases = Collections.unmodifiableList(phases);
+		this.wallNanos = wallNanos;
+		this.cpuNanos = cpuNanos;
+		this.allocatedBytes = allocatedBytes;
+		this.bytesIn = bytesIn;
+		this.bytesOut = bytesOut;
+		this.totalNanos = totalNanos;
+	}
+
+	/**
+	 * @return The phases that ran, in the order they first started.
+	 */
+	public List<Phase> getPhases() {
+		return phases;
+	}
+
+	public long getWallNanos(Phase phase) {
+		return wallNanos[phase.ordinal()];
+	}
+
+	public long getCpuNanos(Phase phase) {
+		return cpuNanos[phase.ordinal()];
+	}
+
+	public long getAllocatedBytes(Phase phase) {
+		return allocatedBytes[phase.ordinal()];
+	}
+
+	public long getBytesIn(Phase phase) {
+		return bytesIn[phase.ordinal()];
+	}
+
+	public long getBytesOut(Phase phase) {
+		return bytesOut[phase.ordinal()];
+	}
+
+	/**
+	 * @return The larger of the bytes read and written by a phase per second of
+	 *         its wall time, in MB/s; 0 for a phase that moves no data.
+	 */
+	public double getThroughput(Phase phase) {
+		long wall = wallNanos[phase.ordinal()];
+		long bytes = Math.max(bytesIn[phase.ordinal()], bytesOut[phase.ordinal()]);
+		return wall == 0 ? 0 : bytes * 1e3 / wall;
+	}
+
+	/**
+	 * @return Wall time of the whole run, phases and the work between them.
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	/**
+	 * @return Heap allocated over all phases.
+	 */
+	public long getAllocatedBytes() {
+		long sum = 0;
+		for (long bytes : allocatedBytes)
+			sum += bytes;
+		return sum;
+	}
+
+	/**
+	 * @return One line per phase that ran, then the total, as a table for logs.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder table = new StringBuilder(
+				String.format("%-10s %10s %10s %10s %12s %12s %12s%n", "Phase", "Wall ms", "CPU ms", "MB/s",
+						"Bytes in", "Bytes out", "Allocated"));
+		for (Phase phase : getPhases()) {
+			int i = phase.ordinal();
+			table.append(String.format("%-10s %10.2f %10.2f %10.1f %12d %12d %12d%n", phase, wallNanos[i] / 1e6,
+					cpuNanos[i] / 1e6, getThroughput(phase), bytesIn[i], bytesOut[i], allocatedBytes[i]));
+		}
+		table.append(String.format("%-10s %10.2f", "Total", totalNanos / 1e6));
+		return table.toString();
+	}
+}
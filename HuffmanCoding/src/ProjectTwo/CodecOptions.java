@@ -0,0 +1,306 @@
+package ProjectTwo;
+
+/**
+ * Immutable settings of a {@link HuffmanCodec}. Every {@code with} method
+ * returns a copy with one setting changed.
+ */
+public final class CodecOptions {
+
+	/**
+	 * Picks the I/O mode by file size, uses every available core, codes bytes,
+	 * limits codes only to what the encoder can write, writes checksums and
+	 * keeps tables in {@link TableCache#SHARED}.
+	 */
+	public static final CodecOptions DEFAULT = new CodecOptions(null, Runtime.getRuntime().availableProcessors(),
+			BitWriter.MAX_CODE_LENGTH, 0, Alphabet.BYTES, false, true, null, false, TableCache.SHARED);
+
+	/**
+	 * Shortest code length limit that fits all 256 byte values.
+	 */
+	public static final int MIN_CODE_LENGTH_LIMIT = 8;
+
+	/**
+	 * Smallest block size of the adaptive mode.
+	 */
+	public static final int MIN_ADAPTIVE_BLOCK_SIZE = 4 * 1024;
+
+	/**
+	 * Largest block size of the adaptive mode, which the encoder holds at least
+	 * one block of.
+	 */
+	public static final int MAX_ADAPTIVE_BLOCK_SIZE = 64 << 20;
+
+	private final IoMode ioMode; // How files are read and written, null to pick by size
+	private final int threads; // Maximum number of threads working on one input
+	private final int maxCodeLength; // Longest Huffman code the encoder may use
+	private final int adaptiveBlockSize; // Bytes per block with its own code table, 0 for one table
+	private final Alphabet alphabet; // Symbols the code is built over
+	private final boolean interleaved; // Whether blocks are indexed as four streams
+	private final boolean checksums; // Whether CRC32C checksums of the original data are written
+	private final Codebook codebook; // Pre-trained code of every input, null to build one per input
+	private final boolean singlePass; // Whether files are read once
+	private final TableCache tableCache; // Tables of earlier inputs and headers
+
+	private CodecOptions(IoMode ioMode, int threads, int maxCodeLength, int adaptiveBlockSize, Alphabet alphabet,
+			boolean interleaved, boolean checksums, Codebook codebook, boolean singlePass,
+			TableCache tableCache) {
+		this.ioMode = ioMode;
+		this.threads = threads;
+		this.maxCodeLength = maxCodeLength;
+		this.adaptiveBlockSize = adaptiveBlockSize;
+		this.alphabet = alphabet;
+		this.interleaved = interleaved;
+		this.checksums = checksums;
+		this.codebook = codebook;
+		this.singlePass = singlePass;
+		this.tableCache = tableCache;
+	}
+
+	/**
+	 * @param ioMode How files are read and written, or null to pick by size.
+	 * @return A copy with the I/O mode changed.
+	 */
+	public CodecOptions withIoMode(IoMode ioMode) {
+		return new CodecOptions(ioMode, threads, maxCodeLength, adaptiveBlockSize, alphabet, interleaved, checksums,
+				codebook, singlePass, tableCache);
+	}
+
+	/**
+	 * @param threads Maximum number of threads working on one input, 1 for
+	 *                single threaded runs.
+	 * @return A copy with the thread count changed.
+	 */
+	public CodecOptions withThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be at least 1: " + threads);
+		return new CodecOptions(ioMode, threads, maxCodeLength, adaptiveBlockSize, alphabet, interleaved, checksums,
+				codebook, singlePass, tableCache);
+	}
+
+	/**
+	 * Limits the length of the Huffman codes. Inputs whose Huffman tree is
+	 * deeper get the best code within the limit instead, which compresses
+	 * slightly worse but keeps every code inside the decoder's lookup tables:
+	 * up to {@link DecodeTable#PRIMARY_BITS} bits one lookup resolves every
+	 * code, up to 25 bits two lookups do.
+	 *
+	 * @param maxCodeLength Longest code in bits, from
+	 *                      {@link #MIN_CODE_LENGTH_LIMIT} to 63.
+	 * @return A copy with the limit changed.
+	 */
+	public CodecOptions withMaxCodeLength(int maxCodeLength) {
+		if (maxCodeLength < MIN_CODE_LENGTH_LIMIT || maxCodeLength > BitWriter.MAX_CODE_LENGTH)
+			throw new IllegalArgumentException("maxCodeLength must be between " + MIN_CODE_LENGTH_LIMIT + " and "
+					+ BitWriter.MAX_CODE_LENGTH + ": " + maxCodeLength);
+		return new CodecOptions(ioMode, threads, maxCodeLength, adaptiveBlockSize, alphabet, interleaved, checksums,
+				codebook, singlePass, tableCache);
+	}
+
+	/**
+	 * Switches to the adaptive mode, which reads the input once and picks a code
+	 * table per block: a new one built from the block, or the one of the block
+	 * before when the new one would not save more than it costs to store. Mixed
+	 * inputs compress better; inputs of one kind lose a few bytes per block.
+	 *
+	 * @param blockSize Bytes per block, from {@link #MIN_ADAPTIVE_BLOCK_SIZE} to
+	 *                  {@link #MAX_ADAPTIVE_BLOCK_SIZE}, or 0 for one code table
+	 *                  built from the whole input.
+	 * @return A copy with the mode changed.
+	 * @throws IllegalArgumentException If the block size is out of range or the
+	 *                                  alphabet is not {@link Alphabet#BYTES}.
+	 */
+	public CodecOptions withAdaptiveBlocks(int blockSize) {
+		if (blockSize != 0 && (blockSize < MIN_ADAPTIVE_BLOCK_SIZE || blockSize > MAX_ADAPTIVE_BLOCK_SIZE))
+			throw new IllegalArgumentException("blockSize must be 0 or between " + MIN_ADAPTIVE_BLOCK_SIZE + " and "
+					+ MAX_ADAPTIVE_BLOCK_SIZE + ": " + blockSize);
+		if (blockSize != 0 && alphabet != Alphabet.BYTES)
+			throw new IllegalArgumentException("The adaptive mode codes bytes only, not " + alphabet);
+		if (blockSize != 0 && interleaved)
+			throw new IllegalArgumentException("The adaptive mode has no interleaved streams");
+		if (blockSize != 0 && codebook != null)
+			throw new IllegalArgumentException("The adaptive mode builds its own tables, not a codebook");
+		return new CodecOptions(ioMode, threads, maxCodeLength, blockSize, alphabet, interleaved, checksums,
+				codebook, singlePass, tableCache);
+	}
+
+	/**
+	 * Picks the symbols of the code. Alphabets larger than bytes code pairs of
+	 * bytes or whole words with one symbol, which compresses text and other
+	 * structured data better, at the cost of a larger header and a single
+	 * threaded encoder and decoder. Their codes are at most
+	 * {@link CanonicalDecoder#MAX_CODE_LENGTH} bits long, and at least as long as
+	 * the number of distinct symbols requires, whatever the code length limit.
+	 *
+	 * @param alphabet The alphabet; {@link Alphabet#BYTES} by default.
+	 * @return A copy with the alphabet changed.
+	 * @throws IllegalArgumentException If a larger alphabet is combined with the
+	 *                                  adaptive mode.
+	 */
+	public CodecOptions withAlphabet(Alphabet alphabet) {
+		if (alphabet != Alphabet.BYTES && adaptiveBlockSize != 0)
+			throw new IllegalArgumentException("The adaptive mode codes bytes only, not " + alphabet);
+		if (alphabet != Alphabet.BYTES && interleaved)
+			throw new IllegalArgumentException("Interleaved streams code bytes only, not " + alphabet);
+		if (alphabet != Alphabet.BYTES && codebook != null)
+			throw new IllegalArgumentException("Codebooks code bytes only, not " + alphabet);
+		if (alphabet != Alphabet.BYTES && singlePass)
+			throw new IllegalArgumentException("Larger alphabets need two passes, not " + alphabet);
+		return new CodecOptions(ioMode, threads, maxCodeLength, adaptiveBlockSize, alphabet, interleaved, checksums,
+				codebook, singlePass, tableCache);
+	}
+
+	/**
+	 * Splits every block of the payload into {@link BlockIndex#STREAMS} streams,
+	 * one per quarter of the block, and records where each starts in the block
+	 * index. The payload itself does not change, but the decoder can then keep
+	 * one bit reader per stream and advance all of them in the same loop: the
+	 * lookups of one stream do not wait on those of the others, so the processor
+	 * overlaps them. Costs 12 bytes per block of index.
+	 *
+	 * @param interleaved Whether to index the streams of every block.
+	 * @return A copy with the mode changed.
+	 * @throws IllegalArgumentException If combined with the adaptive mode or an
+	 *                                  alphabet other than {@link Alphabet#BYTES}.
+	 */
+	public CodecOptions withInterleavedStreams(boolean interleaved) {
+		if (interleaved && adaptiveBlockSize != 0)
+			throw new IllegalArgumentException("The adaptive mode has no interleaved streams");
+		if (interleaved && alphabet != Alphabet.BYTES)
+			throw new IllegalArgumentException("Interleaved streams code bytes only, not " + alphabet);
+		if (interleaved && codebook != null)
+			throw new IllegalArgumentException("Files coded with a codebook have no interleaved streams");
+		if (interleaved && singlePass)
+			throw new IllegalArgumentException("A single pass has no interleaved streams");
+		return new CodecOptions(ioMode, threads, maxCodeLength, adaptiveBlockSize, alphabet, interleaved, checksums,
+				codebook, singlePass, tableCache);
+	}
+
+	/**
+	 * Writes a CRC32C checksum of the original bytes of every block, or of the
+	 * whole input for alphabets larger than bytes. The checksums are computed
+	 * while encoding and checked while decoding, so a corrupt or truncated file
+	 * fails instead of decoding to garbage, at the cost of 4 bytes per block.
+	 * Files written without them still decode.
+	 *
+	 * @param checksums Whether to write checksums; true by default.
+	 * @return A copy with the setting changed.
+	 */
+	public CodecOptions withChecksums(boolean checksums) {
+		return new CodecOptions(ioMode, threads, maxCodeLength, adaptiveBlockSize, alphabet, interleaved, checksums,
+				codebook, singlePass, tableCache);
+	}
+
+	/**
+	 * Codes every input with a pre-trained {@link Codebook} instead of a table
+	 * built from the input, and decodes files that refer to it. The input is
+	 * then read once, without a histogram, and the header names the codebook by
+	 * its id instead of storing a table, which is most of the size of small
+	 * files. Such files use format version 7 and decode only with the same
+	 * codebook set.
+	 *
+	 * @param codebook The codebook, or null to build a table per input.
+	 * @return A copy with the codebook changed.
+	 * @throws IllegalArgumentException If combined with the adaptive mode,
+	 *                                  interleaved streams or an alphabet other
+	 *                                  than {@link Alphabet#BYTES}.
+	 */
+	public CodecOptions withCodebook(Codebook codebook) {
+		if (codebook != null && adaptiveBlockSize != 0)
+			throw new IllegalArgumentException("The adaptive mode builds its own tables, not a codebook");
+		if (codebook != null && alphabet != Alphabet.BYTES)
+			throw new IllegalArgumentException("Codebooks code bytes only, not " + alphabet);
+		if (codebook != null && interleaved)
+			throw new IllegalArgumentException("Files coded with a codebook have no interleaved streams");
+		return new CodecOptions(ioMode, threads, maxCodeLength, adaptiveBlockSize, alphabet, interleaved, checksums,
+				codebook, singlePass, tableCache);
+	}
+
+	/**
+	 * Reads every file once, as streams always are. A file of at most one
+	 * block of {@link BlockIndex#BLOCK_SIZE} bytes is read into memory and
+	 * coded with one table as usual; a longer one is coded in the adaptive
+	 * layout with blocks of that size, the first with a table of its own and
+	 * the others with the table of the block before unless a new one pays off.
+	 * Large files then cost half the reads. Files coded with a codebook or in
+	 * the adaptive mode are read once anyway.
+	 *
+	 * @param singlePass Whether to read files once; false by default.
+	 * @return A copy with the setting changed.
+	 * @throws IllegalArgumentException If combined with interleaved streams or
+	 *                                  an alphabet other than
+	 *                                  {@link Alphabet#BYTES}.
+	 */
+	public CodecOptions withSinglePass(boolean singlePass) {
+		if (singlePass && alphabet != Alphabet.BYTES)
+			throw new IllegalArgumentException("Larger alphabets need two passes, not " + alphabet);
+		if (singlePass && interleaved)
+			throw new IllegalArgumentException("A single pass has no interleaved streams");
+		return new CodecOptions(ioMode, threads, maxCodeLength, adaptiveBlockSize, alphabet, interleaved, checksums,
+				codebook, singlePass, tableCache);
+	}
+
+	/**
+	 * Keeps the tables built for inputs and read from headers in a cache, so
+	 * that many inputs with the same histogram or files with the same table
+	 * build them once. Codecs share {@link TableCache#SHARED} unless given
+	 * another cache; one of capacity 0 turns caching off.
+	 *
+	 * @param tableCache The cache.
+	 * @return A copy with the cache changed.
+	 * @throws IllegalArgumentException If the cache is null.
+	 */
+	public CodecOptions withTableCache(TableCache tableCache) {
+		if (tableCache == null)
+			throw new IllegalArgumentException("No table cache; one of capacity 0 caches nothing");
+		return new CodecOptions(ioMode, threads, maxCodeLength, adaptiveBlockSize, alphabet, interleaved, checksums,
+				codebook, singlePass, tableCache);
+	}
+
+	public IoMode getIoMode() {
+		return ioMode;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public int getMaxCodeLength() {
+		return maxCodeLength;
+	}
+
+	public int getAdaptiveBlockSize() {
+		return adaptiveBlockSize;
+	}
+
+	public Alphabet getAlphabet() {
+		return alphabet;
+	}
+
+	public boolean isInterleaved() {
+		return interleaved;
+	}
+
+	public boolean isChecksums() {
+		return checksums;
+	}
+
+	public Codebook getCodebook() {
+		return codebook;
+	}
+
+	public boolean isSinglePass() {
+		return singlePass;
+	}
+
+	public TableCache getTableCache() {
+		return tableCache;
+	}
+
+	/**
+	 * @return The configured I/O mode, or the default one for a file of the given
+	 *         size.
+	 */
+	IoMode ioModeFor(long size) {
+		return ioMode != null ? ioMode : IoMode.forSize(size);
+	}
+}
@@ -0,0 +1,42 @@
+package ProjectTwo;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one phase of a codec call; its duration is the
+ * wall time of the phase. Enabled by default, so a plain
+ * {@code -XX:StartFlightRecording} records it.
+ */
+@Name("ProjectTwo.CodecPhase")
+@Label("Huffman Codec Phase")
+@Category("Huffman")
+@Description("One phase of a Huffman compression or decompression")
+@StackTrace(false)
+final class CodecPhaseEvent extends jdk.jfr.Event {
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Bytes In")
+	@DataAmount
+	long bytesIn;
+
+	@Label("Bytes Out")
+	@DataAmount
+	long bytesOut;
+
+	@Label("CPU Time")
+	@Description("CPU time of the calling thread and of the workers it forked")
+	@Timespan
+	long cpuTime;
+
+	@Label("Allocated")
+	@DataAmount
+	long allocated;
+}
@@ -0,0 +1,33 @@
+package ProjectTwo;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for a whole codec call, the parent of its
+ * {@link CodecPhaseEvent}s.
+ */
+@Name("ProjectTwo.CodecRun")
+@Label("Huffman Codec Run")
+@Category("Huffman")
+@Description("A Huffman compression or decompression")
+final class CodecRunEvent extends jdk.jfr.Event {
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Bytes In")
+	@DataAmount
+	long bytesIn;
+
+	@Label("Bytes Out")
+	@DataAmount
+	long bytesOut;
+
+	@Label("Allocated")
+	@DataAmount
+	long allocated;
+}
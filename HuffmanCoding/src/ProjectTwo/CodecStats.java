@@ -0,0 +1,71 @@
+package ProjectTwo;
+
+/**
+ * Immutable summary of one compression or decompression run: sizes before and
+ * after, the stored file extension, the serialized code, the code of every
+ * symbol and the timing of each phase.
+ */
+public final class CodecStats {
+
+	private final long lengthBefore; // Number of bytes read
+	private final long lengthAfter; // Number of bytes written
+	private final String extension; // Extension of the original file
+	private final int headerLength; // Length of the serialized tree or code lengths in bits
+	private final String header; // Serialized tree or code lengths as a binary string, padded to whole bytes
+	private final Node[] nodes; // Leaves indexed by their unsigned byte value
+	private final CodecMetrics metrics; // Timing of the run, phase by phase
+
+	CodecStats(long lengthBefore, long lengthAfter, String extension, int headerLength, String header, Node[] nodes,
+			CodecMetrics metrics) {
+		this.lengthBefore = lengthBefore;
+		this.lengthAfter = lengthAfter;
+		this.extension = extension;
+		this.headerLength = headerLength;
+		this.header = header;
+		this.nodes = nodes;
+		this.metrics = metrics;
+	}
+
+	public long getLengthBefore() {
+		return lengthBefore;
+	}
+
+	public long getLengthAfter() {
+		return lengthAfter;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	public int getHeaderLength() {
+		return headerLength;
+	}
+
+	public String getHeader() {
+		return header;
+	}
+
+	/**
+	 * @return A copy of the leaves indexed by their unsigned byte value, null for
+	 *         bytes that do not occur.
+	 */
+	public Node[] getNodes() {
+		return nodes.clone();
+	}
+
+	public long getElapsedNanos() {
+		return metrics.getTotalNanos();
+	}
+
+	public CodecMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return Output size divided by input size, 0 for an empty input.
+	 */
+	public double getRatio() {
+		return lengthBefore == 0 ? 0 : (double) lengthAfter / lengthBefore;
+	}
+}
@@ -0,0 +1,80 @@
+package ProjectTwo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import javafx.concurrent.Task;
+
+/**
+ * Compresses or decompresses a file off the JavaFX Application Thread. The
+ * task publishes the share of bytes processed as its progress and a line with
+ * the throughput and the time left as its message. Cancelling it stops the
+ * codec at its next progress update, a megabyte of data at most, and the
+ * partial output is deleted.
+ */
+public final class CodecTask extends Task<CodecStats> {
+
+	private final File in; // The file to read
+	private final File out; // The file to write
+	private final boolean compress; // Whether to compress or decompress
+
+	private CodecTask(File in, File out, boolean compress) {
+		this.in = in;
+		this.out = out;
+		this.compress = compress;
+	}
+
+	/**
+	 * @param in  The file to compress.
+	 * @param out The .huff file to create.
+	 * @return A task compressing the file when run.
+	 */
+	public static CodecTask compress(File in, File out) {
+		return new CodecTask(in, out, true);
+	}
+
+	/**
+	 * @param in  The .huff file to decompress.
+	 * @param out The file to create.
+	 * @return A task decompressing the file when run.
+	 */
+	public static CodecTask decompress(File in, File out) {
+		return new CodecTask(in, out, false);
+	}
+
+	@Override
+	protected CodecStats call() throws IOException {
+		long start = System.nanoTime();
+		Progress progress = (done, total) -> {
+			if (isCancelled())
+				throw new InterruptedIOException("Cancelled");
+			updateProgress(done, total);
+			updateMessage(status(done, total, System.nanoTime() - start));
+		};
+
+		HuffmanCodec codec = new HuffmanCodec();
+		return compress ? codec.compress(in, out, progress) : codec.decompress(in, out, progress);
+	}
+
+	/**
+	 * @return The percentage done, the throughput so far and the time left at
+	 *         that rate.
+	 */
+	static String status(long done, long total, long elapsedNanos) {
+		double seconds = elapsedNanos / 1e9;
+		double rate = seconds > 0 ? done / seconds : 0;
+		String left = rate > 0 ? duration((total - done) / rate) : "--";
+		return String.format("%.0f%%   %.1f MB/s   %s left", total == 0 ? 100.0 : 100.0 * done / total,
+				rate / 1e6, left);
+	}
+
+	private static String duration(double seconds) {
+		long s = Math.round(seconds);
+		if (s < 60)
+			return s + " s";
+		if (s < 3600)
+			return String.format("%d min %02d s", s / 60, s % 60);
+		return String.format("%d h %02d min", s / 3600, s % 3600 / 60);
+	}
+}
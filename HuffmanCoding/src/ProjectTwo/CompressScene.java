@@ -2,8 +2,6 @@ package ProjectTwo;
 
 import java.awt.Desktop;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -37,16 +35,9 @@ import javafx.stage.Stage;
  */
 public class CompressScene extends Scene {
 
-	int[] freq = new int[256]; // Frequency array for each byte value (0-255)
 	File file; // File object for the file to be compressed
 	String fileName; // Name of the file without extension
-	Heap heap; // Min-heap for building the Huffman tree
-	byte numberOfLeafs; // Number of leaf nodes in the Huffman tree
-
-	String fullHeader; // Complete header information as a binary string
-	Node[] nodes = new Node[256]; // Array to store nodes corresponding to byte values
-
-	Node rootNode; // Root node of the Huffman tree
+	Node[] nodes; // Leaves of the Huffman tree indexed by byte value
 
 	BorderPane bp = new BorderPane(); // Main layout pane for the scene
 
@@ -57,6 +48,7 @@ public class CompressScene extends Scene {
 	String extString; // String of the file extension
 	int headerLength; // Length of the header in bits
 	String header; // Header data as a binary string
+	CodecMetrics metrics; // Timing of the compression phase by phase
 
 	Stage stage; // Stage on which the scene is set
 	Scene scene; // Previous scene to return to
@@ -64,14 +56,16 @@ public class CompressScene extends Scene {
 	String outFileName; // contains the resulted file name
 
 	/**
-	 * Constructor for CompressScene. Sets up the scene and initializes the
-	 * compression process.
+	 * Constructor for CompressScene. Sets up the scene showing the results of a
+	 * compression run by a {@link CodecTask}.
 	 * 
-	 * @param stage The primary stage of the application.
-	 * @param scene The previous scene to allow returning to it.
-	 * @param file  The file to be compressed.
+	 * @param stage       The primary stage of the application.
+	 * @param scene       The previous scene to allow returning to it.
+	 * @param file        The file that was compressed.
+	 * @param outFileName The name of the .huff file written.
+	 * @param stats       The statistics of the run.
 	 */
-	public CompressScene(Stage stage, Scene scene, File file) {
+	public CompressScene(Stage stage, Scene scene, File file, String outFileName, CodecStats stats) {
 		super(new BorderPane(), 1200, 600);
 		this.stage = stage;
 		this.scene = scene;
@@ -79,297 +73,35 @@ public class CompressScene extends Scene {
 		this.bp = ((BorderPane) this.getRoot());
 
 		this.file = file;
-
-		this.lengthBefore = this.file.length();
-
-		getFreq();
-		initializeHeap();
-		rootNode = heap.remove();
-		if (rootNode.getLeft() == null && rootNode.getRight() == null) {
-			rootNode.setHuffCode("1");
-			rootNode.setHuffLength((byte) 1);
-			Byte charCode = rootNode.getCharCode();
-			if (charCode < 0)
-				nodes[rootNode.getCharCode() + 256] = rootNode;
-			else
-				nodes[rootNode.getCharCode()] = rootNode;
-
-		} else
-			generateHuffmanCodes(rootNode, "", (byte) 0);
-
-		this.fullHeader = generateHeader();
-
-		writeToFile();
+		this.fileName = HuffmanCodec.baseNameOf(file.getName());
+		this.outFileName = outFileName;
+
+		this.lengthBefore = stats.getLengthBefore();
+		this.lengthAfter = stats.getLengthAfter();
+		this.extString = stats.getExtension();
+		this.extLength = (byte) extString.length();
+		this.headerLength = stats.getHeaderLength();
+		this.header = stats.getHeader();
+		this.nodes = stats.getNodes();
+		this.metrics = stats.getMetrics();
 
 		addFX();
 	}
 
 	/**
-	 * Reads the file and calculates the frequency of each byte.
-	 */
-	private void getFreq() {
-		try (FileInputStream inputStream = new FileInputStream(file)) {
-			byte[] buffer = new byte[8]; // Buffer to read chunks of the file
-
-			int bytesRead;
-			while ((bytesRead = inputStream.read(buffer)) != -1) {
-				for (int i = 0; i < bytesRead; i++) {
-					if (buffer[i] < 0)
-						freq[buffer[i] + 256]++;
-					else
-						freq[buffer[i]]++;
-				}
-			}
-
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-	}
-
-	/**
-	 * Initializes the heap with nodes for each unique byte and builds the Huffman
-	 * tree.
-	 */
-	private void initializeHeap() {
-		heap = new Heap(256);
-		for (int i = 0; i < freq.length; i++) {
-			if (freq[i] != 0) {
-				Node node = new Node((byte) i, freq[i]);
-				heap.insert(node);
-			}
-		}
-
-		numberOfLeafs = (byte) heap.getSize();
-
-		if (numberOfLeafs == 1)
-			return;
-
-		while (heap.getSize() != 1) {
-			Node node1 = heap.remove();
-			Node node2 = heap.remove();
-
-			Node node = new Node(node1.getFreq() + node2.getFreq());
-			node.setLeft(node1);
-			node.setRight(node2);
-
-			heap.insert(node);
-		}
-
-	}
-
-	/**
-	 * Recursively generates Huffman codes for each node in the tree starting from
-	 * the root.
-	 * 
-	 * @param node   Current node in the tree
-	 * @param code   Accumulated Huffman code for the current node
-	 * @param length Length of the Huffman code
-	 */
-	public void generateHuffmanCodes(Node node, String code, byte length) {
-		if (node != null) {
-			if (node.getLeft() == null && node.getRight() == null) {
-				node.setHuffCode(code);
-				node.setHuffLength(length);
-
-				Byte charCode = node.getCharCode();
-				if (charCode < 0)
-					nodes[node.getCharCode() + 256] = node;
-				else
-					nodes[node.getCharCode()] = node;
-
-			} else {
-				generateHuffmanCodes(node.getLeft(), code + "0", (byte) (length + 1));
-				generateHuffmanCodes(node.getRight(), code + "1", (byte) (length + 1));
-			}
-		}
-	}
-
-	/**
-	 * Generates the header for the compressed file, containing metadata like file
-	 * extension and tree structure.
-	 * 
-	 * @return A string representing the binary form of the header.
-	 */
-	private String generateHeader() {
-		StringBuilder headInfo = new StringBuilder();
-
-		String[] nameInfo = file.getName().split("\\.");
-
-		String ext = nameInfo[1];
-		this.extString = ext;
-		byte extLength = (byte) ext.length();
-		this.extLength = extLength;
-		String fileName = nameInfo[0];
-		this.fileName = fileName;
-
-		// appending the length and the extension of the original file to the header
-		headInfo.append(byteToBinaryString(extLength));
-		for (int i = 0; i < extLength; i++)
-			headInfo.append(byteToBinaryString((byte) ext.charAt(i)));
-
-		StringBuilder headerBuilder = getHeader(rootNode);
-
-		this.headerLength = headerBuilder.length();
-
-		if (headerLength % 8 != 0)
-			for (int i = 0; i < 8 - headerLength % 8; i++)
-				headerBuilder.append("0");
-
-		this.header = headerBuilder.toString();
-
-		headInfo.append(byteToBinaryString((byte) (headerLength >> 24)));
-		headInfo.append(byteToBinaryString((byte) (headerLength >> 16)));
-		headInfo.append(byteToBinaryString((byte) (headerLength >> 8)));
-		headInfo.append(byteToBinaryString((byte) (headerLength)));
-		headInfo.append(this.header);
-
-		return headInfo.toString();
-	}
-
-	public StringBuilder getHeader(Node root) { // post order
-		StringBuilder builder = new StringBuilder();
-		getHeader(root, builder);
-		return builder;
-	}
-
-	private void getHeader(Node node, StringBuilder builder) {
-		if (node == null)
-			return;
-		getHeader(node.getLeft(), builder);
-		getHeader(node.getRight(), builder);
-
-		if (node.getLeft() == null && node.getRight() == null) {
-			byte charCode = node.getCharCode();
-			builder.append("1" + byteToBinaryString(charCode));
-		} else {
-			builder.append("0");
-		}
-	}
-
-	/**
-	 * Converts a byte into a binary string of 8 bits.
+	 * Names the .huff file of a file: its base name with ".huff", numbered if a
+	 * file of that name exists.
 	 * 
-	 * @param b Byte to convert.
-	 * @return Binary string representation of the byte.
+	 * @param file The file to be compressed.
+	 * @return The name of the output file.
 	 */
-	public static String byteToBinaryString(byte b) {
-		StringBuilder binaryString = new StringBuilder();
-		for (int i = 7; i >= 0; i--) {
-			int bit = (b >> i) & 1;
-			binaryString.append(bit);
-		}
-		return binaryString.toString();
+	public static String outFileNameFor(File file) {
+		StringBuilder outFileName = new StringBuilder(HuffmanCodec.baseNameOf(file.getName()) + ".huff");
+		getUniquName(outFileName);
+		return outFileName.toString();
 	}
 
-	/**
-	 * Writes the compressed data, including the header and the Huffman-encoded
-	 * content, to a file.
-	 */
-	private void writeToFile() {
-	    // Append ".huff" extension to the original filename and ensure it is unique
-	    StringBuilder outFileName = new StringBuilder(fileName + ".huff");
-	    getUniquName(outFileName);
-	    File outFile = new File(outFileName.toString());
-	    
-	    this.outFileName = outFileName.toString();
-
-	    try (FileOutputStream out = new FileOutputStream(outFile)) {
-	        byte[] bufferIn = new byte[8]; // Buffer to read the original file
-	        byte[] bufferOut = new byte[8]; // Buffer to write compressed data
-	        byte[] headerBytes = new byte[8]; // Buffer to store header information
-
-	        int byteNumber = 0;
-
-	        // Convert header string bits to bytes and write them to the output file
-	        for (byteNumber = 0; byteNumber < fullHeader.length() / 8; byteNumber++) {
-	            String byteString = fullHeader.substring(8 * byteNumber, 8 * byteNumber + 8);
-	            headerBytes[byteNumber % 8] = (byte) Integer.parseInt(byteString, 2);
-
-	            // Write every 8 bytes to the file
-	            if ((byteNumber + 1) % 8 == 0)
-	                out.write(headerBytes);
-	        }
-
-	        // Write any remaining bytes in the header buffer
-	        if (byteNumber % 8 != 0)
-	            out.write(headerBytes, 0, byteNumber % 8);
-
-	        // Process the original file's data
-	        try (FileInputStream inputStream = new FileInputStream(file)) {
-	            int bytesRead;
-	            StringBuilder builder = new StringBuilder();
-
-	            // Read and compress the input file byte by byte
-	            while ((bytesRead = inputStream.read(bufferIn)) != -1) {
-	                for (int i = 0; i < bytesRead; i++) {
-	                    byte currByte = bufferIn[i];
-	                    // Retrieve and append Huffman codes for each byte
-	                    if (currByte < 0)
-	                        builder.append(nodes[currByte + 256].getHuffCode());
-	                    else
-	                        builder.append(nodes[currByte].getHuffCode());
-
-	                    // Write 64 bits at a time to the output file
-	                    if (builder.length() >= 64) {
-	                        for (int j = 0; j < 8; j++) {
-	                            bufferOut[j] = (byte) Integer.parseInt(builder.substring(0, 8), 2);
-	                            builder.delete(0, 8);
-	                        }
-	                        out.write(bufferOut);
-	                    }
-	                }
-	            }
-
-	            // Write any remaining bits to the output file
-	            byte length = (byte) builder.length();
-	            for (int i = 0; i < length / 8; i++) {
-	                bufferOut[i] = (byte) Integer.parseInt(builder.substring(0, 8), 2);
-	                builder.delete(0, 8);
-	            }
-	            out.write(bufferOut, 0, length / 8);
-
-	            // Handle the last few remaining bits by padding them with zeros
-	            byte lengthOfRemainingBits = (byte) builder.length();
-	            byte[] remain = new byte[2];
-	            if (lengthOfRemainingBits != 0) {
-	                for (int i = 0; i < 8 - lengthOfRemainingBits; i++)
-	                    builder.append("0");
-
-	            	try {
-		                remain[0] = (byte) Integer.parseInt(builder.substring(0, 8), 2);
-		                remain[1] = (byte) (8 - lengthOfRemainingBits);
-	            	}
-	            	catch (Exception e) {
-						// TODO: handle exception
-					}
-
-	            } else {
-	            	try {
-		                remain[0] = (byte) Integer.parseInt(builder.substring(0, 8), 2);
-		                remain[1] = (byte) 0;
-	            	}
-	            	catch (Exception e) {
-						// TODO: handle exception
-					}
-	            }
-	            out.write(remain, 0, 2);
-
-	            // Close the output file stream
-	            out.close();
-
-	            // Store the final size of the compressed file
-	            lengthAfter = outFile.length();
-
-	        } catch (Exception e) {
-	            e.printStackTrace();
-	        }
-
-	    } catch (Exception e) {
-	        e.printStackTrace();
-	    }
-	}
-
-	public void getUniquName(StringBuilder fileName) {
+	public static void getUniquName(StringBuilder fileName) {
 		// Create a File object based on the input file name.
 		File file = new File(fileName.toString());
 		// Initialize a counter and a flag for the while loop.
@@ -636,6 +368,18 @@ public class CompressScene extends Scene {
 		});
 		headerButton.setMaxWidth(Double.MAX_VALUE);
 
+		Button timingButton = new Button("Phase Timing");
+		timingButton.setOnAction(e -> {
+			Stage timingStage = new Stage();
+			Scene timingScene = new Scene(new TimingPane(metrics), 650, 400);
+			timingScene.getStylesheets().add("LightMode.css");
+			timingStage.setScene(timingScene);
+			timingStage.setTitle("Phase Timing");
+
+			timingStage.show();
+		});
+		timingButton.setMaxWidth(Double.MAX_VALUE);
+
 		Button backButton = new Button("Back");
 		backButton.setOnAction(e -> {
 			stage.setScene(scene);
@@ -649,7 +393,7 @@ public class CompressScene extends Scene {
 		VBox percentageBox = new VBox(10, compRateLabel, getPercentagePane(), beforeLabel, afterLabel);
 		percentageBox.setAlignment(Pos.CENTER);
 
-		VBox rightBox = new VBox(20, percentageBox, openDirectoryButton, headerButton, backButton);
+		VBox rightBox = new VBox(20, percentageBox, timingButton, openDirectoryButton, headerButton, backButton);
 		rightBox.setAlignment(Pos.CENTER);
 		BorderPane.setMargin(rightBox, new Insets(0, 150, 0, 0));
 
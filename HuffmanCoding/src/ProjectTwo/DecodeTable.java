@@ -0,0 +1,431 @@
+package ProjectTwo;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Table driven Huffman decoder. The next {@link #PRIMARY_BITS} bits of the
+ * stream index a primary table that resolves every code up to that length,
+ * and two symbols at once when both codes fit. Longer codes continue in a
+ * secondary table indexed by the bits that follow; only codes behind a prefix
+ * that would need a secondary table of more than {@link #MAX_SECONDARY_BITS}
+ * bits are found by walking a {@link FlatTree} of the code bit by bit.
+ * <p>
+ * Primary entries are either a symbol entry (bits 0-7 first symbol, 8-15
+ * second symbol, 16-17 number of symbols, 18-23 length of the first code,
+ * 24-29 length of all codes) or the complement of a reference
+ * (offset of the secondary table shifted left by 5, plus the number of
+ * secondary index bits, 0 for the bit by bit lookup). Secondary entries hold
+ * the symbol in bits 0-7 and the full code length from bit 8.
+ * <p>
+ * The tables are built from the codes alone, canonical or not, so no tree is
+ * needed unless some code takes the walk.
+ */
+final class DecodeTable {
+
+	static final int PRIMARY_BITS = 11; // Bits resolved by the primary table
+	static final int MAX_SECONDARY_BITS = 14; // Largest secondary table index
+	private static final int ROUNDS = 4; // Codes decoded per stream between two refills
+
+	private final int[] primary = new int[1 << PRIMARY_BITS];
+	private int[] secondary = new int[0];
+	private int secondarySize;
+
+	private FlatTree tree; // The whole code, for prefixes without a secondary table
+
+	private DecodeTable() {
+	}
+
+	/**
+	 * Builds the tables for a code table. A code made of a single symbol decodes
+	 * every bit as that symbol.
+	 *
+	 * @param codes The codes, which must form a prefix code.
+	 * @return The decode table.
+	 */
+	static DecodeTable of(CodeTable codes) {
+		DecodeTable table = new DecodeTable();
+		int symbols = 0;
+		for (int length : codes.lengths) {
+			if (length > 0)
+				symbols++;
+		}
+		if (symbols == 0)
+			return table;
+
+		if (symbols == 1) {
+			for (int symbol = 0; symbol < 256; symbol++) {
+				if (codes.lengths[symbol] > 0) {
+					table.fillPrimary(0, 1, symbol);
+					table.fillPrimary(1, 1, symbol);
+				}
+			}
+		} else
+			table.build(codes);
+
+		table.pairSymbols();
+		return table;
+	}
+
+	private void build(CodeTable codes) {
+		// Short codes go straight into the primary table; long ones are counted
+		// by length first so that they can be sorted by length and value
+		int count = 0;
+		int[] lengthStart = new int[BitWriter.MAX_CODE_LENGTH + 2]; // First long code of each length
+		for (int symbol = 0; symbol < 256; symbol++) {
+			int length = codes.lengths[symbol];
+			if (length > PRIMARY_BITS) {
+				lengthStart[length + 1]++;
+				count++;
+			} else if (length > 0)
+				fillPrimary((int) codes.codes[symbol], length, symbol);
+		}
+		if (count == 0)
+			return;
+
+		for (int length = 1; length < lengthStart.length; length++)
+			lengthStart[length] += lengthStart[length - 1];
+		// Codes longer than PRIMARY_BITS ordered by length and value
+		long[] longCodes = new long[count];
+		byte[] longSymbols = new byte[count];
+		int[] depth = new int[1 << PRIMARY_BITS]; // Longest code below each primary prefix, minus PRIMARY_BITS
+		for (int length = PRIMARY_BITS + 1; length < lengthStart.length - 1; length++) {
+			int from = lengthStart[length];
+			int to = from;
+			for (int symbol = 0; symbol < 256; symbol++) {
+				if (codes.lengths[symbol] != length)
+					continue;
+				long code = codes.codes[symbol];
+				int slot = to++;
+				for (; slot > from && longCodes[slot - 1] > code; slot--) {
+					longCodes[slot] = longCodes[slot - 1];
+					longSymbols[slot] = longSymbols[slot - 1];
+				}
+				longCodes[slot] = code;
+				longSymbols[slot] = (byte) symbol;
+				int prefix = (int) (code >>> (length - PRIMARY_BITS));
+				depth[prefix] = Math.max(depth[prefix], length - PRIMARY_BITS);
+			}
+		}
+
+		int[] base = new int[1 << PRIMARY_BITS];
+		for (int prefix = 0; prefix < depth.length; prefix++) {
+			int subBits = depth[prefix];
+			if (subBits == 0)
+				continue;
+			if (subBits <= MAX_SECONDARY_BITS) {
+				base[prefix] = reserveSecondary(1 << subBits);
+				primary[prefix] = ~(base[prefix] << 5 | subBits);
+			} else {
+				primary[prefix] = ~(prefix << 5);
+				if (tree == null) {
+					tree = new FlatTree(256);
+					tree.read(codes);
+				}
+			}
+		}
+		for (int length = PRIMARY_BITS + 1; length < lengthStart.length - 1; length++) {
+			int rest = length - PRIMARY_BITS;
+			for (int slot = lengthStart[length]; slot < lengthStart[length + 1]; slot++) {
+				long code = longCodes[slot];
+				int prefix = (int) (code >>> rest);
+				int subBits = depth[prefix];
+				if (subBits > MAX_SECONDARY_BITS)
+					continue;
+				int shift = subBits - rest;
+				int low = (int) (code & ((1L << rest) - 1));
+				int entry = (longSymbols[slot] & 0xFF) | length << 8;
+				for (int i = low << shift, end = (low + 1) << shift; i < end; i++)
+					secondary[base[prefix] + i] = entry;
+			}
+		}
+	}
+
+	private void fillPrimary(int code, int length, int symbol) {
+		int shift = PRIMARY_BITS - length;
+		int entry = symbol | 1 << 16 | length << 18 | length << 24;
+		for (int i = code << shift, end = (code + 1) << shift; i < end; i++)
+			primary[i] = entry;
+	}
+
+	private int reserveSecondary(int size) {
+		if (secondarySize + size > secondary.length)
+			secondary = Arrays.copyOf(secondary, Math.max(secondarySize + size, secondary.length * 2));
+		int base = secondarySize;
+		secondarySize += size;
+		return base;
+	}
+
+	/**
+	 * Adds a second symbol to every primary entry whose remaining bits already
+	 * hold a complete short code.
+	 */
+	private void pairSymbols() {
+		int[] single = primary.clone();
+		int mask = (1 << PRIMARY_BITS) - 1;
+		for (int i = 0; i < single.length; i++) {
+			int first = single[i];
+			if (first < 0)
+				continue;
+			int length = (first >>> 18) & 63;
+			int next = single[(i << length) & mask];
+			if (next < 0)
+				continue;
+			int total = length + ((next >>> 18) & 63);
+			if (total <= PRIMARY_BITS)
+				primary[i] = (first & 0xFF) | (next & 0xFF) << 8 | 2 << 16 | length << 18 | total << 24;
+		}
+	}
+
+	/**
+	 * Decodes symbols into a buffer until it is full or the stream has no data
+	 * bits left.
+	 *
+	 * @param in  The bit stream.
+	 * @param out Receives the decoded bytes.
+	 * @param off First index of out to write.
+	 * @param end Index after the last one to write.
+	 * @return The number of bytes written.
+	 * @throws IOException If the stream ends in the middle of a code.
+	 */
+	int decode(BitReader in, byte[] out, int off, int end) throws IOException {
+		int p = off;
+		while (p < end && in.available > 0) {
+			p = decodeFast(in, out, p, end);
+			if (p < end && in.available > 0)
+				p = decodeOne(in, out, p, end);
+		}
+		return p - off;
+	}
+
+	/**
+	 * Decodes the four streams of a block, each into its own range of the
+	 * output, in one loop until one of them nears the end of its data or of its
+	 * range. The streams keep separate windows in locals, so the four table
+	 * lookups of an iteration do not depend on each other and the processor can
+	 * overlap them, where a single stream waits for every lookup to know how far
+	 * to shift before the next. Callers finish each stream with
+	 * {@link #decode(BitReader, byte[], int, int)}.
+	 *
+	 * @param in   The bit reader of each stream.
+	 * @param out  Receives the decoded bytes.
+	 * @param from First index of out to write for each stream; receives the index
+	 *             after the last byte written.
+	 * @param to   Index after the last one to write for each stream.
+	 * @throws IOException If a stream ends in the middle of a code.
+	 */
+	void decodeInterleaved(BitReader[] in, byte[] out, int[] from, int[] to) throws IOException {
+		int[] primary = this.primary;
+		BitReader in0 = in[0], in1 = in[1], in2 = in[2], in3 = in[3];
+		int p0 = from[0], p1 = from[1], p2 = from[2], p3 = from[3];
+		int end0 = to[0], end1 = to[1], end2 = to[2], end3 = to[3];
+		long window0 = in0.bitBuffer, window1 = in1.bitBuffer, window2 = in2.bitBuffer, window3 = in3.bitBuffer;
+		int loaded0 = in0.bitCount, loaded1 = in1.bitCount, loaded2 = in2.bitCount, loaded3 = in3.bitCount;
+		long available0 = in0.available, available1 = in1.available, available2 = in2.available,
+				available3 = in3.available;
+		// Each round takes at most PRIMARY_BITS bits and writes at most two bytes
+		// per stream, so a full window and these margins cover ROUNDS rounds
+		while (p0 + 2 * ROUNDS <= end0 && p1 + 2 * ROUNDS <= end1 && p2 + 2 * ROUNDS <= end2
+				&& p3 + 2 * ROUNDS <= end3 && available0 > 128 && available1 > 128 && available2 > 128
+				&& available3 > 128) {
+			if (Math.min(Math.min(loaded0, loaded1), Math.min(loaded2, loaded3)) < ROUNDS * PRIMARY_BITS) {
+				save(in0, window0, loaded0, available0);
+				save(in1, window1, loaded1, available1);
+				save(in2, window2, loaded2, available2);
+				save(in3, window3, loaded3, available3);
+				in0.refill();
+				in1.refill();
+				in2.refill();
+				in3.refill();
+				window0 = in0.bitBuffer;
+				window1 = in1.bitBuffer;
+				window2 = in2.bitBuffer;
+				window3 = in3.bitBuffer;
+				loaded0 = in0.bitCount;
+				loaded1 = in1.bitCount;
+				loaded2 = in2.bitCount;
+				loaded3 = in3.bitCount;
+			}
+
+			for (int round = 0; round < ROUNDS; round++) {
+				int entry0 = primary[(int) (window0 >>> (64 - PRIMARY_BITS))];
+				int entry1 = primary[(int) (window1 >>> (64 - PRIMARY_BITS))];
+				int entry2 = primary[(int) (window2 >>> (64 - PRIMARY_BITS))];
+				int entry3 = primary[(int) (window3 >>> (64 - PRIMARY_BITS))];
+				if ((entry0 | entry1 | entry2 | entry3) < 0) {
+					// A long code: the checked path decodes it, then the windows
+					// are refilled
+					save(in0, window0, loaded0, available0);
+					save(in1, window1, loaded1, available1);
+					save(in2, window2, loaded2, available2);
+					save(in3, window3, loaded3, available3);
+					if (entry0 < 0)
+						p0 = decodeOne(in0, out, p0, end0);
+					if (entry1 < 0)
+						p1 = decodeOne(in1, out, p1, end1);
+					if (entry2 < 0)
+						p2 = decodeOne(in2, out, p2, end2);
+					if (entry3 < 0)
+						p3 = decodeOne(in3, out, p3, end3);
+					window0 = in0.bitBuffer;
+					window1 = in1.bitBuffer;
+					window2 = in2.bitBuffer;
+					window3 = in3.bitBuffer;
+					loaded0 = in0.bitCount;
+					loaded1 = in1.bitCount;
+					loaded2 = in2.bitCount;
+					loaded3 = in3.bitCount;
+					available0 = in0.available;
+					available1 = in1.available;
+					available2 = in2.available;
+					available3 = in3.available;
+					break;
+				}
+
+				out[p0] = (byte) entry0;
+				out[p0 + 1] = (byte) (entry0 >>> 8);
+				out[p1] = (byte) entry1;
+				out[p1 + 1] = (byte) (entry1 >>> 8);
+				out[p2] = (byte) entry2;
+				out[p2 + 1] = (byte) (entry2 >>> 8);
+				out[p3] = (byte) entry3;
+				out[p3 + 1] = (byte) (entry3 >>> 8);
+				p0 += (entry0 >>> 16) & 3;
+				p1 += (entry1 >>> 16) & 3;
+				p2 += (entry2 >>> 16) & 3;
+				p3 += (entry3 >>> 16) & 3;
+				int length0 = entry0 >>> 24, length1 = entry1 >>> 24, length2 = entry2 >>> 24,
+						length3 = entry3 >>> 24;
+				window0 <<= length0;
+				window1 <<= length1;
+				window2 <<= length2;
+				window3 <<= length3;
+				loaded0 -= length0;
+				loaded1 -= length1;
+				loaded2 -= length2;
+				loaded3 -= length3;
+				available0 -= length0;
+				available1 -= length1;
+				available2 -= length2;
+				available3 -= length3;
+			}
+		}
+		save(in0, window0, loaded0, available0);
+		save(in1, window1, loaded1, available1);
+		save(in2, window2, loaded2, available2);
+		save(in3, window3, loaded3, available3);
+		from[0] = p0;
+		from[1] = p1;
+		from[2] = p2;
+		from[3] = p3;
+	}
+
+	private static void save(BitReader in, long window, int loaded, long available) {
+		in.bitBuffer = window;
+		in.bitCount = loaded;
+		in.available = available;
+	}
+
+	/**
+	 * Decodes primary table entries while more than 64 data bits are left, so
+	 * that no code can run past the end of the data. The window is kept in
+	 * locals and the loop stops at the first long code.
+	 *
+	 * @return The index after the last byte written.
+	 */
+	private int decodeFast(BitReader in, byte[] out, int p, int end) throws IOException {
+		int[] primary = this.primary;
+		long window = in.bitBuffer;
+		int loaded = in.bitCount;
+		long available = in.available;
+		while (p + 1 < end && available > 64) {
+			if (loaded < 32) {
+				in.bitBuffer = window;
+				in.bitCount = loaded;
+				in.available = available;
+				in.refill();
+				window = in.bitBuffer;
+				loaded = in.bitCount;
+				available = in.available;
+			}
+
+			int entry = primary[(int) (window >>> (64 - PRIMARY_BITS))];
+			if (entry < 0)
+				break;
+			// Both bytes are stored unconditionally; a single symbol entry only
+			// advances by one and the second byte is overwritten next
+			out[p] = (byte) entry;
+			out[p + 1] = (byte) (entry >>> 8);
+			p += (entry >>> 16) & 3;
+			int length = entry >>> 24;
+			window <<= length;
+			loaded -= length;
+			available -= length;
+		}
+		in.bitBuffer = window;
+		in.bitCount = loaded;
+		in.available = available;
+		return p;
+	}
+
+	/**
+	 * Decodes one entry with every bound checked: long codes, the last bits of
+	 * the data and the last byte of the buffer.
+	 *
+	 * @return The index after the last byte written.
+	 */
+	private int decodeOne(BitReader in, byte[] out, int p, int end) throws IOException {
+		if (in.bitCount < 32)
+			in.refill();
+
+		int entry = primary[(int) (in.bitBuffer >>> (64 - PRIMARY_BITS))];
+		if (entry >= 0) {
+			int total = entry >>> 24;
+			if ((entry >>> 16 & 3) == 2 && total <= in.available && p + 1 < end) {
+				out[p++] = (byte) entry;
+				out[p++] = (byte) (entry >>> 8);
+				in.skip(total);
+			} else {
+				consume(in, (entry >>> 18) & 63);
+				out[p++] = (byte) entry;
+			}
+		} else {
+			int subBits = ~entry & 31;
+			int offset = ~entry >>> 5;
+			if (subBits != 0) {
+				int sub = secondary[offset + (int) ((in.bitBuffer << PRIMARY_BITS) >>> (64 - subBits))];
+				consume(in, sub >>> 8);
+				out[p++] = (byte) sub;
+			} else
+				out[p++] = walk(in);
+		}
+		return p;
+	}
+
+	/**
+	 * Follows a primary prefix whose codes are too long for a secondary table
+	 * down the tree, one bit at a time after the prefix.
+	 */
+	private byte walk(BitReader in) throws IOException {
+		int[] left = tree.left, right = tree.right, symbol = tree.symbol;
+		int node = 0;
+		long prefix = in.bitBuffer >>> (64 - PRIMARY_BITS);
+		for (int i = PRIMARY_BITS - 1; i >= 0; i--)
+			node = (prefix >>> i & 1) == 0 ? left[node] : right[node];
+		consume(in, PRIMARY_BITS);
+		while (symbol[node] < 0) {
+			if (in.bitCount == 0)
+				in.refill();
+			if (in.available == 0)
+				throw new IOException("Truncated payload");
+			node = in.readBit() == 0 ? left[node] : right[node];
+		}
+		return (byte) symbol[node];
+	}
+
+	private static void consume(BitReader in, int length) throws IOException {
+		if (length > in.available || length == 0)
+			throw new IOException("Truncated payload");
+		in.skip(length);
+	}
+}
@@ -2,8 +2,6 @@ package ProjectTwo;
 
 import java.awt.Desktop;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 
 import javafx.collections.FXCollections;
@@ -38,16 +36,9 @@ import javafx.stage.Stage;
 public class DecompressScene extends Scene {
 
     // Class attributes
-    int[] freq = new int[256]; // Frequency array for each character
     File file; // File to be decompressed
     String fileName; // Name of the file
-    Heap heap; // Heap used in the Huffman coding process
-    byte numberOfLeafs; // Number of leaf nodes in the Huffman tree
-
-    String Fullheader; // Full header string extracted from the file
-    Node[] nodes = new Node[256]; // Array of nodes representing the Huffman tree
-
-    Node rootNode; // Root node of the Huffman tree
+    Node[] nodes; // Leaves of the Huffman tree indexed by byte value
 
     BorderPane bp = new BorderPane(); // Main layout pane
 
@@ -58,19 +49,22 @@ public class DecompressScene extends Scene {
     String extString; // File extension
     int headerLength; // Length of the header
     String header; // Header data
+    CodecMetrics metrics; // Timing of the decompression phase by phase
     
     Stage stage; // Current stage
     Scene scene; // Original scene to return to
 
     /**
-     * Constructs a new DecompressScene with a specified Stage, Scene, and File.
-     * Initializes the GUI elements and starts the decompression process.
+     * Constructs a new DecompressScene showing the results of a decompression run
+     * by a {@link CodecTask}.
      *
-     * @param stage The primary stage of the application
-     * @param scene The previous scene to return to
-     * @param file  The file to be decompressed
+     * @param stage       The primary stage of the application
+     * @param scene       The previous scene to return to
+     * @param file        The file that was decompressed
+     * @param outFileName The name of the file written
+     * @param stats       The statistics of the run
      */
-    public DecompressScene(Stage stage, Scene scene, File file) {
+    public DecompressScene(Stage stage, Scene scene, File file, String outFileName, CodecStats stats) {
         super(new BorderPane(), 1200, 600);
         this.stage = stage;
         this.scene = scene;
@@ -78,223 +72,34 @@ public class DecompressScene extends Scene {
         this.bp = ((BorderPane) this.getRoot());
 
         this.file = file;
-
-        this.lengthBefore = this.file.length();
-
-        getHeader();
+        this.fileName = HuffmanCodec.baseNameOf(file.getName()) + "." + stats.getExtension();
+
+        this.lengthBefore = stats.getLengthBefore();
+        this.lengthAfter = stats.getLengthAfter();
+        this.extString = stats.getExtension();
+        this.extLength = (byte) extString.length();
+        this.headerLength = stats.getHeaderLength();
+        this.header = stats.getHeader();
+        this.nodes = stats.getNodes();
+        this.metrics = stats.getMetrics();
         
         addFX();
     }
-    
-    
-    /**
-     * Extracts the header from the file and initializes the Huffman tree based on the extracted header.
-     * Reads and processes the file data to perform decompression.
-     * The method first reads the extension length and the extension itself from the file,
-     * then reads the header length and constructs the Huffman tree from the serialized header data.
-     * Finally, it decompresses the remaining data in the file using the Huffman tree.
-     */
-	private void getHeader() {
-
-		byte[] bufferIn = new byte[8];
-		byte[] extBuffer;
-
-		try (FileInputStream inputStream = new FileInputStream(file)) {
-
-			this.extLength = (byte) inputStream.read();
-
-			extBuffer = new byte[this.extLength];
-
-			byte length = (byte) inputStream.read(extBuffer);
-
-			StringBuilder builder = new StringBuilder();
-			for (int i = 0; i < length; i++)
-				builder.append((char) extBuffer[i]);
-
-			this.extString = builder.toString();
-
-			inputStream.read(bufferIn, 0, 4);
-
-			this.headerLength = bufferIn[3] & 0xFF | (bufferIn[2] & 0xFF) << 8 | (bufferIn[1] & 0xFF) << 16
-					| (bufferIn[0] & 0xFF) << 24;
-
-			int bytesRead;
-
-			int numberOfBytesForHeader_Conter = 0;
-			int numberOfBytersForHeader = (this.headerLength % 8 == 0) ? this.headerLength / 8
-					: (this.headerLength / 8) + 1;
-
-			// StringBuilders for header and the serialized data
-			StringBuilder header = new StringBuilder();
-			StringBuilder serialData = new StringBuilder();
-
-			// Read the rest of the file
-			while ((bytesRead = inputStream.read(bufferIn)) != -1) {
-				for (int i = 0; i < bytesRead; i++) {
-					if (numberOfBytesForHeader_Conter < numberOfBytersForHeader) {
-						header.append(convertByteToBinary(bufferIn[i]));
-						numberOfBytesForHeader_Conter++;
-					} else
-						serialData.append(convertByteToBinary(bufferIn[i]));
-					
-				}
-			}
-			
-			this.header = header.toString();
-
-			inputStream.close();
-
-			// Huffman tree reconstruction
-			Stack stack = new Stack(256);
-			int counter = 0;
-			while (counter < this.headerLength) {
-				if (header.charAt(counter) == '1') {
-					counter++;
-					stack.push(new Node((byte) Integer.parseInt(header.substring(counter, counter + 8), 2), 0));
-					counter += 8;
-				} else {
-					counter++;
-					Node node = new Node(0);
-					node.setRight(stack.pop());
-					node.setLeft(stack.pop());
-					stack.push(node);
-				}
-			}
-
-			this.rootNode = stack.peek();
-
-			generateHuffmanCodes(this.rootNode, "", (byte) 0);
-
-			String[] nameInfo = file.getName().split("\\.");
-
-			this.fileName = nameInfo[0] + "." + extString;
-			
-
-		    StringBuilder outFileName = new StringBuilder(fileName);
-		    getUniquName(outFileName);
-		    File outFile = new File(outFileName.toString());
-
-
-			// Write the uncompressed data to a file
-			FileOutputStream out = new FileOutputStream(outFile);
-			int startIndex = serialData.length() - 8;
-			int addedBits = Integer.parseInt(serialData.substring(startIndex), 2);
-			serialData.delete(startIndex - addedBits, serialData.length());
-
-			// Buffer for writing to the output file
-			byte[] bufferOut = new byte[8];
-			int counterForBufferSerialData = 0, counterForBufferOut = 0;
-
-			// Process the serialized data to extract the original content
-			while (counterForBufferSerialData < serialData.length()) {
-				Node curr = rootNode;
-
-				// Traverse the Huffman tree to find the corresponding byte
-				while (curr != null && counterForBufferSerialData < serialData.length()) {
-					if (serialData.charAt(counterForBufferSerialData) == '0' && curr.getLeft() != null)
-						curr = curr.getLeft();
-					else if (curr.getRight() != null)
-						curr = curr.getRight();
-					else if (rootNode.getLeft() == null && rootNode.getRight() == null) {
-						counterForBufferSerialData++;
-						break;
-					} else
-						break;
-
-					counterForBufferSerialData++;
-				}
-
-				// Write the byte to the output buffer
-
-				bufferOut[counterForBufferOut++] = curr.getCharCode();
-				if (counterForBufferOut == 8) {
-					out.write(bufferOut);
-
-					counterForBufferOut = 0;
-				}
-			}
-
-			// Write any remaining bytes in the buffer to the file
-			if (counterForBufferOut > 0)
-				out.write(bufferOut, 0, counterForBufferOut);
-
-			out.close();
-			
-			lengthAfter = outFile.length();
-
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-	}
 
     /**
-     * Generates Huffman codes for each node in the tree recursively.
-     * Sets Huffman code and length in each leaf node.
-     * It traverses the Huffman tree and assigns a binary code to each leaf node based on its position in the tree.
+     * Names the decompressed file of a .huff file: its base name with the stored
+     * extension, numbered if a file of that name exists.
      *
-     * @param node  Current node in the Huffman tree
-     * @param code  Current Huffman code being built
-     * @param length Length of the current Huffman code
+     * @param file The .huff file to be decompressed
+     * @return The name of the output file
+     * @throws IOException If the header of the file cannot be read
      */
-	public void generateHuffmanCodes(Node node, String code, byte length) {
-		if (node != null) {
-			if (node.getLeft() == null && node.getRight() == null) { // Check if it's a leaf node
-				// Setting the Huffman code and length for the node (not needed if just
-				// printing)
-				node.setHuffCode(code);
-				node.setHuffLength(length);
-
-				Byte charCode = node.getCharCode();
-				if (charCode < 0)
-					nodes[node.getCharCode() + 256] = node;
-				else
-					nodes[node.getCharCode()] = node;
-
-			} else {
-				// Recursively generate codes for left subtree
-				generateHuffmanCodes(node.getLeft(), code + "0", (byte) (length + 1));
-				// Recursively generate codes for right subtree
-				generateHuffmanCodes(node.getRight(), code + "1", (byte) (length + 1));
-			}
-		}
-	}
-
-	public StringBuilder getHeader(Node root) { // post order
-		StringBuilder builder = new StringBuilder();
-		getHelper(root, builder);
-		return builder;
-	}
-
-	private void getHelper(Node node, StringBuilder builder) {
-		if (node == null)
-			return;
-		getHelper(node.getLeft(), builder);
-		getHelper(node.getRight(), builder);
-
-		if (node.getLeft() == null && node.getRight() == null) {
-			byte charCode = node.getCharCode();
-			builder.append("1" + convertByteToBinary(charCode));
-		} else {
-			builder.append("0");
-		}
-	}
-	
-    /**
-     * Converts a byte into its binary string representation.
-     * This method computes the binary string for the byte, from the most significant bit to the least significant.
-     *
-     * @param b Byte to be converted
-     * @return A string representing the binary value of the byte
-     */
-	public static String convertByteToBinary(byte b) {
-		StringBuilder binaryString = new StringBuilder();
-		for (int i = 7; i >= 0; i--) {
-			int bit = (b >> i) & 1;
-			binaryString.append(bit);
-		}
-		return binaryString.toString();
-	}
+    public static String outFileNameFor(File file) throws IOException {
+        StringBuilder outFileName = new StringBuilder(
+                HuffmanCodec.baseNameOf(file.getName()) + "." + new HuffmanCodec().readExtension(file));
+        getUniquName(outFileName);
+        return outFileName.toString();
+    }
 
 	  /**
      * Creates and returns a TableView populated with nodes from the Huffman tree.
@@ -437,7 +242,7 @@ public class DecompressScene extends Scene {
      *
      * @param fileName The StringBuilder object containing the base file name
      */
-	public void getUniquName(StringBuilder fileName) {
+	public static void getUniquName(StringBuilder fileName) {
 		// Create a File object based on the input file name.
 		File file = new File(fileName.toString());
 		// Initialize a counter and a flag for the while loop.
@@ -588,6 +393,18 @@ public class DecompressScene extends Scene {
 		});
 		headerButton.setMaxWidth(Double.MAX_VALUE);
 
+		Button timingButton = new Button("Phase Timing");
+		timingButton.setOnAction(e -> {
+			Stage timingStage = new Stage();
+			Scene timingScene = new Scene(new TimingPane(metrics), 650, 400);
+			timingScene.getStylesheets().add("LightMode.css");
+			timingStage.setScene(timingScene);
+			timingStage.setTitle("Phase Timing");
+
+			timingStage.show();
+		});
+		timingButton.setMaxWidth(Double.MAX_VALUE);
+
 		Button backButton = new Button("Back");
 		backButton.setOnAction(e -> {
 			stage.setScene(scene);
@@ -601,7 +418,7 @@ public class DecompressScene extends Scene {
 		VBox percentageBox = new VBox(10, compRateLabel, getPercentagePane(), beforeLabel, afterLabel);
 		percentageBox.setAlignment(Pos.CENTER);
 
-		VBox rightBox = new VBox(20, percentageBox, openDirectoryButton, headerButton, backButton);
+		VBox rightBox = new VBox(20, percentageBox, timingButton, openDirectoryButton, headerButton, backButton);
 		rightBox.setAlignment(Pos.CENTER);
 		BorderPane.setMargin(rightBox, new Insets(0, 150, 0, 0));
 
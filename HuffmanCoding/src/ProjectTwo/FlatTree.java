@@ -0,0 +1,265 @@
+package ProjectTwo;
+
+/**
+ * A Huffman tree in parallel primitive arrays. Nodes are numbered breadth
+ * first: the root is node 0, the two children of a node are neighbours, and
+ * every node comes after its parent, so a walk from the root only moves
+ * forward through the arrays and one forward pass sees every parent before its
+ * children. A leaf has a symbol and no children; an inner node has the symbol
+ * -1 and always two children.
+ * <p>
+ * A tree is sized for an alphabet once and rebuilt in place after that:
+ * building it, parsing it and reading its codes allocate nothing.
+ */
+final class FlatTree {
+
+	final int[] left; // Left child of each node, -1 for a leaf
+	final int[] right; // Right child of each node, -1 for a leaf
+	final int[] parent; // Parent of each node, -1 for the root
+	final int[] symbol; // Symbol of each leaf, -1 for an inner node
+	final long[] freq; // Frequency of each node, that of its leaves added up
+	int size; // Number of nodes, 0 for an empty tree
+
+	// The nodes in the order they are made, before the breadth first layout
+	private final int[] itemLeft;
+	private final int[] itemRight;
+	private final int[] itemSymbol;
+	private final long[] itemFreq;
+
+	private final int[] queue; // Items in breadth first order
+	private final int[] depth; // Depth of each node while reading codes
+	private final long[] code; // Code of each node while reading codes
+	private final int[] symbols; // Symbols to sort, or the stack of a parse
+	private final int[] sortBuffer;
+	private final int[] sortStart = new int[257];
+
+	/**
+	 * @param alphabetSize Number of symbols of the alphabet.
+	 */
+	FlatTree(int alphabetSize) {
+		int nodes = 2 * alphabetSize - 1;
+		left = new int[nodes];
+		right = new int[nodes];
+		parent = new int[nodes];
+		symbol = new int[nodes];
+		freq = new long[nodes];
+		itemLeft = new int[nodes];
+		itemRight = new int[nodes];
+		itemSymbol = new int[nodes];
+		itemFreq = new long[nodes];
+		queue = new int[nodes];
+		depth = new int[nodes];
+		code = new long[nodes];
+		symbols = new int[alphabetSize];
+		sortBuffer = new int[alphabetSize];
+	}
+
+	/**
+	 * Builds the Huffman tree of a frequency table with two queues instead of
+	 * a heap. The symbols sorted by frequency form the first queue; merged
+	 * pairs are made in ascending weight, so they form the second, and the two
+	 * lightest nodes are always at the heads of the queues. With the radix sort
+	 * in front the whole build takes linear time, a few milliseconds for 65,536
+	 * symbols. Ties go to the leaf, which keeps the tree shallow.
+	 *
+	 * @param freq Frequency of each symbol, at most as many as the alphabet.
+	 */
+	void build(long[] freq) {
+		int n = 0;
+		for (int s = 0; s < freq.length; s++) {
+			if (freq[s] != 0)
+				symbols[n++] = s;
+		}
+		if (n == 0) {
+			size = 0;
+			return;
+		}
+
+		int[] sorted = HuffmanTree.sortByKey(freq, symbols, n, sortBuffer, sortStart);
+		for (int i = 0; i < n; i++)
+			leaf(i, sorted[i], freq[sorted[i]]);
+		int items = 2 * n - 1;
+		for (int next = n, leaf = 0, pair = n; next < items; next++) {
+			int a = leaf < n && (pair == next || itemFreq[leaf] <= itemFreq[pair]) ? leaf++ : pair++;
+			int b = leaf < n && (pair == next || itemFreq[leaf] <= itemFreq[pair]) ? leaf++ : pair++;
+			inner(next, a, b);
+		}
+		layout(items - 1);
+	}
+
+	/**
+	 * Rebuilds a tree from its post order serialization: a leaf is written as "1"
+	 * followed by its 8 bit value, an inner node as "0".
+	 *
+	 * @param bits   The serialized tree, possibly followed by padding bits.
+	 * @param length Number of meaningful bits in the serialization.
+	 * @throws IllegalArgumentException If the bits do not describe a tree of
+	 *                                  this alphabet.
+	 */
+	void parse(CharSequence bits, int length) {
+		int items = 0;
+		int top = 0; // Size of the stack of parsed subtrees
+		int counter = 0;
+		while (counter < length) {
+			if (items == itemSymbol.length)
+				throw new IllegalArgumentException("Corrupt Huffman header");
+			if (bits.charAt(counter++) == '1') {
+				if (counter + 8 > length || top == symbols.length)
+					throw new IllegalArgumentException("Corrupt Huffman header");
+				int value = 0;
+				for (int end = counter + 8; counter < end; counter++)
+					value = value << 1 | (bits.charAt(counter) == '1' ? 1 : 0);
+				leaf(items, value, 0);
+			} else {
+				if (top < 2)
+					throw new IllegalArgumentException("Corrupt Huffman header");
+				top -= 2;
+				inner(items, symbols[top], symbols[top + 1]);
+			}
+			symbols[top++] = items++;
+		}
+
+		if (top > 1)
+			throw new IllegalArgumentException("Corrupt Huffman header");
+		if (top == 0)
+			size = 0;
+		else
+			layout(symbols[0]);
+	}
+
+	/**
+	 * Rebuilds the tree whose paths are the given codes: a 0 bit leads left, a
+	 * 1 bit right. A single symbol becomes a lone leaf.
+	 *
+	 * @param codes A complete prefix code of this alphabet.
+	 * @throws IllegalArgumentException If the codes leave a node with one child.
+	 */
+	void read(CodeTable codes) {
+		int items = 1;
+		int leaves = 0;
+		itemLeft[0] = itemRight[0] = itemSymbol[0] = -1;
+		itemFreq[0] = 0;
+		for (int s = 0; s < codes.lengths.length; s++) {
+			int length = codes.lengths[s];
+			if (length == 0)
+				continue;
+			leaves++;
+			int item = 0;
+			for (int i = length - 1; i >= 0; i--) {
+				boolean one = (codes.codes[s] >>> i & 1) != 0;
+				int child = one ? itemRight[item] : itemLeft[item];
+				if (child < 0) {
+					if (items == itemSymbol.length)
+						throw new IllegalArgumentException("Codes do not form a prefix code");
+					child = items++;
+					itemLeft[child] = itemRight[child] = itemSymbol[child] = -1;
+					itemFreq[child] = 0;
+					if (one)
+						itemRight[item] = child;
+					else
+						itemLeft[item] = child;
+				}
+				item = child;
+			}
+			itemSymbol[item] = s;
+		}
+
+		if (leaves == 0) {
+			size = 0;
+			return;
+		}
+		if (leaves == 1) {
+			leaf(0, itemSymbol[items - 1], 0);
+			layout(0);
+			return;
+		}
+		for (int item = 0; item < items; item++) {
+			if (itemSymbol[item] < 0 && (itemLeft[item] < 0 || itemRight[item] < 0))
+				throw new IllegalArgumentException("Codes do not form a complete prefix code");
+		}
+		layout(0);
+	}
+
+	/**
+	 * Writes the depth of every leaf, which is the length of its code. A tree
+	 * made of a single leaf gets a one bit code.
+	 *
+	 * @param lengths Receives the code length of each symbol; the entries of
+	 *                symbols not in the tree are left untouched.
+	 */
+	void lengths(int[] lengths) {
+		if (size == 1) {
+			lengths[symbol[0]] = 1;
+			return;
+		}
+		for (int node = 1; node < size; node++) {
+			depth[node] = depth[parent[node]] + 1;
+			if (symbol[node] >= 0)
+				lengths[symbol[node]] = depth[node];
+		}
+	}
+
+	/**
+	 * Writes the codes of the leaves as files of version 1 and 2 label them: a
+	 * left edge is a 0 bit, a right edge a 1 bit, and a tree made of a single
+	 * leaf gets the one bit code 1. Codes longer than 63 bits come out cut off;
+	 * callers check the lengths.
+	 *
+	 * @param codes   Receives the code of each symbol, right aligned.
+	 * @param lengths Receives the code length of each symbol.
+	 */
+	void codes(long[] codes, int[] lengths) {
+		if (size == 1) {
+			codes[symbol[0]] = 1;
+			lengths[symbol[0]] = 1;
+			return;
+		}
+		for (int node = 1; node < size; node++) {
+			int up = parent[node];
+			depth[node] = depth[up] + 1;
+			code[node] = code[up] << 1 | (node == right[up] ? 1 : 0);
+			if (symbol[node] >= 0) {
+				codes[symbol[node]] = code[node];
+				lengths[symbol[node]] = depth[node];
+			}
+		}
+	}
+
+	private void leaf(int item, int symbol, long freq) {
+		itemLeft[item] = itemRight[item] = -1;
+		itemSymbol[item] = symbol;
+		itemFreq[item] = freq;
+	}
+
+	private void inner(int item, int left, int right) {
+		itemLeft[item] = left;
+		itemRight[item] = right;
+		itemSymbol[item] = -1;
+		itemFreq[item] = itemFreq[left] + itemFreq[right];
+	}
+
+	/**
+	 * Numbers the items below a root breadth first into the node arrays.
+	 */
+	private void layout(int root) {
+		queue[0] = root;
+		size = 1;
+		parent[0] = -1;
+		depth[0] = 0;
+		code[0] = 0;
+		for (int node = 0; node < size; node++) {
+			int item = queue[node];
+			symbol[node] = itemSymbol[item];
+			freq[node] = itemFreq[item];
+			if (itemSymbol[item] >= 0)
+				left[node] = right[node] = -1;
+			else {
+				left[node] = size;
+				right[node] = size + 1;
+				parent[size] = parent[size + 1] = node;
+				queue[size++] = itemLeft[item];
+				queue[size++] = itemRight[item];
+			}
+		}
+	}
+}
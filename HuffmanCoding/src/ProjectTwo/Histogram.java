@@ -0,0 +1,195 @@
+package ProjectTwo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Counts how often every byte value occurs. Large inputs are split into
+ * segments that are counted on the common fork-join pool and merged at the
+ * end.
+ * <p>
+ * Each segment counts into four interleaved tables, one per byte of every
+ * group of four, so that runs of the same byte do not stall on the counter
+ * they have just incremented.
+ */
+final class Histogram {
+
+	static final long PARALLEL_THRESHOLD = 8 << 20; // Smallest input split into segments
+	static final long MIN_SEGMENT = 4 << 20; // Smallest segment counted by one task
+
+	private static final int TABLES = 4; // Interleaved tables per segment
+	private static final int SLICE = 64 * 1024; // Bytes copied out of direct memory at a time
+	private static final int FLUSH = 1 << 28; // Bytes counted into int tables before merging
+
+	private Histogram() {
+	}
+
+	/**
+	 * Counts a whole source on the calling thread.
+	 *
+	 * @param source The input; it is not closed.
+	 * @return The frequency of each byte value.
+	 * @throws IOException If the input cannot be read.
+	 */
+	static long[] count(ByteSource source) throws IOException {
+		Counter counter = new Counter();
+		ByteBuffer chunk;
+		while ((chunk = source.next()) != null)
+			counter.add(chunk);
+		return counter.finish();
+	}
+
+	/**
+	 * Counts the remaining bytes of a buffer without changing its position.
+	 *
+	 * @param data    The input.
+	 * @param threads Maximum number of segments counted at once.
+	 * @return The frequency of each byte value.
+	 */
+	static long[] count(ByteBuffer data, int threads) {
+		int start = data.position();
+		int length = data.remaining();
+		int segments = segments(length, threads);
+		if (segments == 1) {
+			Counter counter = new Counter();
+			counter.add(data.duplicate());
+			return counter.finish();
+		}
+
+		List<ForkJoinTask<long[]>> tasks = new ArrayList<>(segments);
+		for (int i = 0; i < segments; i++) {
+			int from = start + (int) ((long) length * i / segments);
+			int to = start + (int) ((long) length * (i + 1) / segments);
+			tasks.add(ForkJoinTask.adapt(Metrics.charged(() -> {
+				Counter counter = new Counter();
+				counter.add(data.duplicate().limit(to).position(from));
+				return counter.finish();
+			})));
+		}
+		return merge(tasks);
+	}
+
+	/**
+	 * Counts a file. Every segment is read through its own
+	 * {@link ByteSource} of the given mode over one shared channel.
+	 *
+	 * @param file    The input file.
+	 * @param mode    How the file is read.
+	 * @param threads Maximum number of segments counted at once.
+	 * @param meter   Counts the bytes read.
+	 * @return The frequency of each byte value.
+	 * @throws IOException If the file cannot be read or the meter cancels the
+	 *                     count.
+	 */
+	static long[] count(Path file, IoMode mode, int threads, ProgressMeter meter) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			int segments = segments(size, threads);
+
+			List<ForkJoinTask<long[]>> tasks = new ArrayList<>(segments);
+			for (int i = 0; i < segments; i++) {
+				long from = size / segments * i;
+				long to = i == segments - 1 ? size : size / segments * (i + 1);
+				tasks.add(ForkJoinTask.adapt(Metrics.charged(() -> {
+					try (ByteSource source = meter.wrap(mode.openSegment(channel, from, to - from))) {
+						return count(source);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				})));
+			}
+
+			try {
+				return segments == 1 ? tasks.get(0).invoke() : merge(tasks);
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	private static int segments(long length, int threads) {
+		if (threads <= 1 || length < PARALLEL_THRESHOLD)
+			return 1;
+		return (int) Math.max(1, Math.min(threads, length / MIN_SEGMENT));
+	}
+
+	private static long[] merge(List<ForkJoinTask<long[]>> tasks) {
+		ForkJoinTask.invokeAll(tasks);
+		long[] freq = new long[256];
+		for (ForkJoinTask<long[]> task : tasks) {
+			long[] part = task.join();
+			for (int i = 0; i < 256; i++)
+				freq[i] += part[i];
+		}
+		return freq;
+	}
+
+	/**
+	 * Counts the chunks of one segment into interleaved int tables and moves
+	 * them into a long table before they can overflow.
+	 */
+	private static final class Counter {
+		private final int[] tables = new int[TABLES * 256];
+		private final long[] freq = new long[256];
+		private byte[] scratch;
+		private int pending; // Bytes counted into tables since the last merge
+
+		void add(ByteBuffer chunk) {
+			if (chunk.hasArray()) {
+				byte[] data = chunk.array();
+				int offset = chunk.arrayOffset() + chunk.position();
+				for (int done = 0, n; done < chunk.remaining(); done += n) {
+					n = Math.min(FLUSH, chunk.remaining() - done);
+					count(data, offset + done, n);
+				}
+			} else {
+				// Bulk copies out of direct and mapped memory are far cheaper than
+				// reading them one byte at a time
+				if (scratch == null)
+					scratch = new byte[SLICE];
+				for (int i = chunk.position(), n; i < chunk.limit(); i += n) {
+					n = Math.min(SLICE, chunk.limit() - i);
+					chunk.get(i, scratch, 0, n);
+					count(scratch, 0, n);
+				}
+			}
+		}
+
+		private void count(byte[] data, int offset, int length) {
+			if (pending > FLUSH - length)
+				flush();
+			pending += length;
+
+			int[] t = tables;
+			int i = offset;
+			for (int end = offset + (length & ~3); i < end; i += 4) {
+				t[data[i] & 0xFF]++;
+				t[256 + (data[i + 1] & 0xFF)]++;
+				t[512 + (data[i + 2] & 0xFF)]++;
+				t[768 + (data[i + 3] & 0xFF)]++;
+			}
+			for (int end = offset + length; i < end; i++)
+				t[data[i] & 0xFF]++;
+		}
+
+		private void flush() {
+			for (int i = 0; i < tables.length; i++) {
+				freq[i & 255] += tables[i];
+				tables[i] = 0;
+			}
+			pending = 0;
+		}
+
+		long[] finish() {
+			flush();
+			return freq;
+		}
+	}
+}
@@ -0,0 +1,950 @@
+package ProjectTwo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The headless {@code huff} command. It compresses or decompresses any number
+ * of files, directory trees and glob patterns, several files at once, or pipes
+ * standard input to standard output.
+ * <p>
+ * Files are handed to a pool of platform threads, or to virtual threads where
+ * the runtime has them, and at most {@code --jobs} of them run at a time. Each
+ * file also reserves an estimate of the memory its codec needs from a shared
+ * budget, so a batch of large files waits for memory instead of running the
+ * JVM out of it. Outputs are written to a temporary file next to their final
+ * name and renamed when complete, so a failed run leaves no partial files.
+ * <p>
+ * With {@code --archive} the inputs are packed into one {@link HuffArchive}
+ * instead, one after the other, and members are listed or extracted from it
+ * one at a time.
+ * <p>
+ * With {@code --append} the inputs are appended to one .huff file of the
+ * adaptive mode, which keeps what it holds and is only extended.
+ * <p>
+ * With {@code --range} a range of the original data of one file is written
+ * to standard output, decoding only the blocks it spans.
+ * <p>
+ * With {@code --train} the inputs are only read, to train a {@link Codebook}
+ * that later runs pass to {@code --codebook}.
+ */
+public final class Huff {
+
+	private static final String USAGE = String.join(System.lineSeparator(),
+			"Usage: huff [-c | -d] [options] <file | directory | glob>...",
+			"       huff [-c | -d] [options] -          (standard input to standard output)",
+			"       huff -a <archive> [-c | -d | -l] [options] [<file | directory | glob | member>...]",
+			"       huff --append <file> [options] <file | directory | glob | ->...",
+			"       huff --train <codebook> [options] <file | directory | glob>...", "",
+			"  -c, --compress           compress (the default)",
+			"  -d, --decompress         decompress .huff files",
+			"  -r, --recursive          process the files below directories",
+			"  -o, --output <dir>       write outputs under <dir> instead of next to their inputs",
+			"  -f, --force              overwrite existing outputs",
+			"  -a, --archive <file>     pack the inputs into one archive, or with -d extract its",
+			"                           members (all, or those named) under -o or the current directory",
+			"  -l, --list               list the members of the archive",
+			"      --shared-table       code every member of the archive with one table",
+			"      --append <file>      append the inputs to a .huff file of the adaptive mode,",
+			"                           which is created if it does not exist",
+			"  -j, --jobs <n>           files processed at once (default: number of processors)",
+			"      --virtual            run the files on virtual threads (Java 21 and later)",
+			"  -t, --threads <n>        threads per file (default: processors / files at once)",
+			"  -m, --memory <size>      memory budget shared by running files, e.g. 512m or 2g",
+			"                           (default: half the maximum heap)",
+			"      --adaptive <size>    compress with a code table per block of <size> bytes",
+			"      --alphabet <name>    symbols to code: bytes (the default), pairs or words",
+			"      --interleaved        index four streams per block for a faster decoder",
+			"      --single-pass        read every file once, coding files over 1 MB as adaptive blocks",
+			"      --no-checksums       compress without CRC32C checksums of the data",
+			"      --train <file>       write a codebook trained on the inputs to <file>",
+			"      --codebook <file>    compress with a trained codebook, or decompress files made with it",
+			"      --max-code-length <n>",
+			"                           longest Huffman code (8 to 63, default 63)",
+			"      --range <offset>:<length>",
+			"                           with -d, write that range of the original data of one",
+			"                           file to standard output, decoding only the blocks it spans",
+			"      --ext <ext>          extension stored when compressing standard input",
+			"      --timing             print the time of each phase after each file, and the",
+			"                           hits of the table cache at the end",
+			"  -q, --quiet              print errors only", "  -h, --help               print this help");
+
+	private final Arguments arguments; // The parsed command line
+	private final CodecOptions options; // Settings of every file
+	private final HuffmanCodec codec; // Shared by every file
+	private final PrintStream out; // Receives the line printed per file, or the data of --range
+	private final PrintStream err; // Receives errors
+	private final Set<Path> outputs = ConcurrentHashMap.newKeySet(); // Outputs claimed so far
+	private final Semaphore memory; // Budget in KiB
+	private final int budget; // Size of the budget in KiB
+
+	private Huff(Arguments arguments, Codebook codebook, PrintStream out, PrintStream err) {
+		this.arguments = arguments;
+		this.out = out;
+		this.err = err;
+		this.options = CodecOptions.DEFAULT
+				.withThreads(arguments.threads > 0 ? arguments.threads : Runtime.getRuntime().availableProcessors())
+				.withAdaptiveBlocks(arguments.adaptiveBlockSize).withMaxCodeLength(arguments.maxCodeLength)
+				.withAlphabet(arguments.alphabet).withInterleavedStreams(arguments.interleaved)
+				.withChecksums(arguments.checksums).withCodebook(codebook).withSinglePass(arguments.singlePass);
+		this.codec = new HuffmanCodec(options);
+		this.budget = (int) Math.min(Integer.MAX_VALUE, arguments.memory >> 10);
+		this.memory = new Semaphore(budget);
+	}
+
+	public static void main(String[] args) {
+		System.exit(run(args));
+	}
+
+	/**
+	 * Runs the command.
+	 *
+	 * @param args The command line.
+	 * @return The exit status: 0 if every file succeeded, 1 if any failed and 2
+	 *         for a usage error.
+	 */
+	static int run(String[] args) {
+		Arguments arguments;
+		try {
+			arguments = Arguments.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println("huff: " + e.getMessage());
+			System.err.println(USAGE);
+			return 2;
+		}
+		if (arguments.help) {
+			System.out.println(USAGE);
+			return 0;
+		}
+
+		Codebook codebook = null;
+		if (arguments.codebook != null) {
+			try {
+				codebook = Codebook.read(arguments.codebook);
+			} catch (IOException e) {
+				System.err.println("huff: " + arguments.codebook + ": " + describe(e));
+				return 1;
+			}
+		}
+		Huff huff = new Huff(arguments, codebook, System.out, System.err);
+		if (arguments.train != null)
+			return huff.train();
+		if (arguments.archive != null)
+			return huff.archive();
+		if (arguments.append != null)
+			return huff.append();
+		if (arguments.rangeLength >= 0)
+			return huff.range();
+		if (arguments.inputs.equals(List.of("-")))
+			return huff.pipe();
+		return huff.batch();
+	}
+
+	/**
+	 * Writes a range of the original data of the input to standard output,
+	 * decoding only the blocks it falls in.
+	 */
+	private int range() {
+		String input = arguments.inputs.get(0);
+		try (HuffReader reader = codec.open(Paths.get(input).toFile())) {
+			byte[] buffer = new byte[(int) Math.min(arguments.rangeLength, 1 << 20)];
+			long position = arguments.rangeOffset;
+			for (long left = arguments.rangeLength; left > 0;) {
+				int n = reader.read(position, buffer, 0, (int) Math.min(left, buffer.length));
+				if (n < 0)
+					break;
+				out.write(buffer, 0, n);
+				position += n;
+				left -= n;
+			}
+			out.flush();
+			return 0;
+		} catch (IOException | RuntimeException e) {
+			err.println("huff: " + input + ": " + describe(e));
+			return 1;
+		}
+	}
+
+	/**
+	 * Compresses or decompresses standard input to standard output.
+	 */
+	private int pipe() {
+		try {
+			if (arguments.decompress)
+				codec.decompress(System.in, System.out);
+			else
+				codec.compress(System.in, System.out, arguments.extension);
+			return 0;
+		} catch (IOException | RuntimeException e) {
+			err.println("huff: -: " + describe(e));
+			return 1;
+		}
+	}
+
+	/**
+	 * Processes every input file on the pool.
+	 */
+	private int batch() {
+		List<Job> jobs = new ArrayList<>();
+		int failed = 0;
+		for (String input : arguments.inputs) {
+			try {
+				collect(input, jobs);
+			} catch (IOException | IllegalArgumentException e) {
+				err.println("huff: " + input + ": " + describe(e));
+				failed++;
+			}
+		}
+
+		// Unless given, the threads per file share the processors among the
+		// files that run at once, so a single file gets all of them
+		int running = Math.max(1, Math.min(arguments.jobs, jobs.size()));
+		int threads = arguments.threads > 0 ? arguments.threads
+				: Math.max(1, Runtime.getRuntime().availableProcessors() / running);
+		HuffmanCodec codec = threads == options.getThreads() ? this.codec : new HuffmanCodec(options.withThreads(threads));
+
+		ExecutorService executor = newExecutor();
+		Semaphore slots = new Semaphore(arguments.jobs);
+		List<Future<Boolean>> results = new ArrayList<>(jobs.size());
+		try {
+			for (Job job : jobs)
+				results.add(executor.submit(() -> process(job, slots, codec, threads)));
+			for (Future<Boolean> result : results) {
+				if (!result.get())
+					failed++;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 1;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		if (arguments.timing && !arguments.quiet)
+			out.println("table cache: " + options.getTableCache());
+		return failed == 0 ? 0 : 1;
+	}
+
+	/**
+	 * Trains a codebook on every input file and writes it.
+	 */
+	private int train() {
+		List<Job> jobs = new ArrayList<>();
+		int failed = 0;
+		for (String input : arguments.inputs) {
+			try {
+				collect(input, jobs);
+			} catch (IOException | IllegalArgumentException e) {
+				err.println("huff: " + input + ": " + describe(e));
+				failed++;
+			}
+		}
+		if (failed > 0)
+			return 1;
+
+		try {
+			if (!arguments.force && Files.exists(arguments.train))
+				throw new IOException(arguments.train + " exists, use -f to overwrite it");
+			List<Path> samples = new ArrayList<>(jobs.size());
+			long bytes = 0;
+			for (Job job : jobs) {
+				samples.add(job.input);
+				bytes += Files.size(job.input);
+			}
+			Codebook codebook = Codebook.train(samples, arguments.maxCodeLength);
+			codebook.write(arguments.train);
+			if (!arguments.quiet)
+				out.printf(Locale.ROOT, "%s  codebook %s  trained on %d files, %,d bytes%n", arguments.train,
+						codebook, samples.size(), bytes);
+			return 0;
+		} catch (IOException | RuntimeException e) {
+			err.println("huff: " + arguments.train + ": " + describe(e));
+			return 1;
+		}
+	}
+
+	/**
+	 * Packs the inputs into the archive, or lists or extracts its members.
+	 */
+	private int archive() {
+		try {
+			if (arguments.list)
+				return list();
+			return arguments.decompress ? extract() : pack();
+		} catch (IOException | RuntimeException e) {
+			err.println("huff: " + arguments.archive + ": " + describe(e));
+			return 1;
+		}
+	}
+
+	/**
+	 * Writes every input file into a new archive, named by its path below the
+	 * directory or glob base it was found under. Nothing is written if an input
+	 * cannot be collected.
+	 */
+	private int pack() throws IOException {
+		List<Job> jobs = new ArrayList<>();
+		int failed = 0;
+		for (String input : arguments.inputs) {
+			try {
+				collect(input, jobs);
+			} catch (IOException | IllegalArgumentException e) {
+				err.println("huff: " + input + ": " + describe(e));
+				failed++;
+			}
+		}
+		if (failed > 0)
+			return 1;
+
+		Path archive = arguments.archive.toAbsolutePath().normalize();
+		Map<String, Path> members = new LinkedHashMap<>();
+		for (Job job : jobs) {
+			Path input = job.input.toAbsolutePath().normalize();
+			if (input.equals(archive))
+				continue;
+			String name = job.root.toAbsolutePath().normalize().relativize(input).toString()
+					.replace(input.getFileSystem().getSeparator(), "/");
+			if (members.put(name, job.input) != null)
+				throw new IOException("two inputs are both named " + name);
+		}
+		if (!arguments.force && Files.exists(archive))
+			throw new IOException(arguments.archive + " exists, use -f to overwrite it");
+
+		long start = System.nanoTime();
+		Files.createDirectories(archive.getParent());
+		Path temp = partFile(archive);
+		List<HuffArchive.Entry> entries;
+		try {
+			entries = HuffArchive.write(temp, members, options, arguments.sharedTable);
+			Files.move(temp, archive, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+
+		if (!arguments.quiet) {
+			long before = 0;
+			for (HuffArchive.Entry entry : entries)
+				before += entry.getLength();
+			long after = Files.size(archive);
+			out.printf(Locale.ROOT, "%s  %d files  %,d -> %,d bytes  %.1f%%  %d ms%n", arguments.archive,
+					entries.size(), before, after, before == 0 ? 100.0 : 100.0 * after / before,
+					(System.nanoTime() - start) / 1_000_000);
+		}
+		return 0;
+	}
+
+	/**
+	 * Appends the input files, or standard input, to the .huff file one after
+	 * the other, creating it in the adaptive mode if it does not exist yet.
+	 * Inputs after one that fails are not appended.
+	 */
+	private int append() {
+		Path file = arguments.append;
+		List<Path> inputs = new ArrayList<>();
+		try {
+			if (arguments.inputs.equals(List.of("-")))
+				inputs.add(null);
+			else {
+				List<Job> jobs = new ArrayList<>();
+				for (String input : arguments.inputs)
+					collect(input, jobs);
+				for (Job job : jobs)
+					inputs.add(job.input);
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			err.println("huff: " + describe(e));
+			return 1;
+		}
+
+		for (Path input : inputs) {
+			String name = input == null ? "-" : input.toString();
+			try (InputStream in = input == null ? System.in : Files.newInputStream(input)) {
+				long start = System.nanoTime();
+				CodecStats stats;
+				if (Files.exists(file))
+					stats = codec.append(in, file.toFile());
+				else
+					stats = create(file, in, input == null ? arguments.extension
+							: HuffmanCodec.extensionOf(input.getFileName().toString()));
+				if (!arguments.quiet)
+					out.printf(Locale.ROOT, "%s >> %s  %,d -> +%,d bytes  %d ms%n", name, file,
+							stats.getLengthBefore(), stats.getLengthAfter(), (System.nanoTime() - start) / 1_000_000);
+			} catch (IOException | RuntimeException e) {
+				err.println("huff: " + file + ": " + name + ": " + describe(e));
+				return 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Compresses the first data appended to a file in the adaptive mode, which
+	 * later data can be appended to.
+	 */
+	private CodecStats create(Path file, InputStream in, String extension) throws IOException {
+		int blockSize = arguments.adaptiveBlockSize > 0 ? arguments.adaptiveBlockSize : BlockIndex.BLOCK_SIZE;
+		HuffmanCodec adaptive = new HuffmanCodec(options.withAdaptiveBlocks(blockSize));
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		Path temp = partFile(file);
+		try {
+			CodecStats stats;
+			try (OutputStream target = Files.newOutputStream(temp)) {
+				stats = adaptive.compress(in, target, extension);
+			}
+			Files.move(temp, file);
+			return stats;
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Prints the original and compressed length and the name of every member.
+	 */
+	private int list() throws IOException {
+		try (HuffArchive archive = HuffArchive.open(arguments.archive)) {
+			for (HuffArchive.Entry entry : archive.entries())
+				out.printf(Locale.ROOT, "%,15d %,15d  %s%n", entry.getLength(), entry.getCompressedLength(),
+						entry.getName());
+		}
+		return 0;
+	}
+
+	/**
+	 * Extracts the members named by the inputs, or all of them, below the
+	 * output directory.
+	 */
+	private int extract() throws IOException {
+		int failed = 0;
+		try (HuffArchive archive = HuffArchive.open(arguments.archive)) {
+			List<HuffArchive.Entry> entries = new ArrayList<>();
+			for (String input : arguments.inputs) {
+				HuffArchive.Entry entry = archive.entry(input);
+				if (entry != null)
+					entries.add(entry);
+				else {
+					err.println("huff: " + arguments.archive + ": no member " + input);
+					failed++;
+				}
+			}
+			if (arguments.inputs.isEmpty())
+				entries = archive.entries();
+
+			Path root = arguments.outputDir != null ? arguments.outputDir : Paths.get("");
+			for (HuffArchive.Entry entry : entries) {
+				try {
+					// Member names have no empty, "." or ".." parts, so this stays below the root
+					Path output = root.resolve(entry.getName());
+					if (!arguments.force && Files.exists(output))
+						throw new IOException(output + " exists, use -f to overwrite it");
+					long start = System.nanoTime();
+					Files.createDirectories(output.toAbsolutePath().getParent());
+					Path temp = partFile(output);
+					try {
+						archive.extract(entry, temp);
+						Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+					} finally {
+						Files.deleteIfExists(temp);
+					}
+					if (!arguments.quiet)
+						out.printf(Locale.ROOT, "%s:%s -> %s  %,d -> %,d bytes  %d ms%n", arguments.archive,
+								entry.getName(), output, entry.getCompressedLength(), entry.getLength(),
+								(System.nanoTime() - start) / 1_000_000);
+				} catch (IOException | RuntimeException e) {
+					err.println("huff: " + arguments.archive + ":" + entry.getName() + ": " + describe(e));
+					failed++;
+				}
+			}
+		}
+		return failed == 0 ? 0 : 1;
+	}
+
+	/**
+	 * Adds the files an input names: a file, the files below a directory, or the
+	 * files matching a glob pattern.
+	 */
+	private void collect(String input, List<Job> jobs) throws IOException {
+		if (input.equals("-"))
+			throw new IllegalArgumentException("standard input cannot be mixed with files");
+
+		int glob = globStart(input);
+		if (glob >= 0) {
+			// Walk from the directory part in front of the first wildcard
+			int slash = input.lastIndexOf('/', glob);
+			Path base = Paths.get(slash < 0 ? "." : slash == 0 ? "/" : input.substring(0, slash));
+			Predicate<Path> matcher = glob(input, 0);
+			List<Path> files = walk(base, file -> matcher.test(slash < 0 ? base.relativize(file) : file));
+			if (files.isEmpty())
+				throw new NoSuchFileException(input, null, "no file matches");
+			for (Path file : files)
+				jobs.add(new Job(file, base));
+			return;
+		}
+
+		Path path = Paths.get(input);
+		if (Files.isDirectory(path)) {
+			if (!arguments.recursive)
+				throw new IllegalArgumentException("is a directory, use -r to process the files below it");
+			// Compression skips files already compressed, but an archive or append takes them as they are
+			for (Path file : walk(path, file -> arguments.archive != null || arguments.append != null
+					|| isHuff(file) == arguments.decompress))
+				jobs.add(new Job(file, path));
+		} else if (Files.isRegularFile(path))
+			jobs.add(new Job(path, path.toAbsolutePath().getParent()));
+		else
+			throw new NoSuchFileException(input);
+	}
+
+	private static List<Path> walk(Path base, Predicate<Path> filter) throws IOException {
+		try (Stream<Path> files = Files.walk(base)) {
+			return files.filter(Files::isRegularFile).filter(filter).sorted().collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Compresses or decompresses one file once a job slot and its memory are
+	 * free.
+	 *
+	 * @param codec   The codec of the batch.
+	 * @param threads The threads per file it runs.
+	 * @return Whether the file succeeded; failures are reported on the error
+	 *         stream.
+	 */
+	private boolean process(Job job, Semaphore slots, HuffmanCodec codec, int threads)
+			throws InterruptedException {
+		int reserved = 0;
+		slots.acquire();
+		try {
+			reserved = (int) Math.min(budget, Math.max(1, memoryFor(job.input, threads) >> 10));
+			memory.acquire(reserved);
+
+			Path output = job.outputDir(arguments.outputDir).resolve(outputName(job.input));
+			if (output.toAbsolutePath().normalize().equals(job.input.toAbsolutePath().normalize()))
+				throw new IOException("output would overwrite the input");
+			if (!outputs.add(output.toAbsolutePath().normalize()))
+				throw new IOException("another input is also written to " + output);
+			if (!arguments.force && Files.exists(output))
+				throw new IOException(output + " exists, use -f to overwrite it");
+
+			Files.createDirectories(output.toAbsolutePath().getParent());
+			Path temp = partFile(output);
+			CodecStats stats;
+			try {
+				stats = arguments.decompress ? codec.decompress(job.input.toFile(), temp.toFile())
+						: codec.compress(job.input.toFile(), temp.toFile());
+				if (arguments.force)
+					Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+				else
+					Files.move(temp, output);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+
+			if (!arguments.quiet) {
+				synchronized (out) {
+					out.printf(Locale.ROOT, "%s -> %s  %,d -> %,d bytes  %.1f%%  %d ms%n", job.input, output,
+							stats.getLengthBefore(), stats.getLengthAfter(), 100 * stats.getRatio(),
+							stats.getElapsedNanos() / 1_000_000);
+					if (arguments.timing)
+						out.println(stats.getMetrics());
+				}
+			}
+			return true;
+		} catch (IOException | RuntimeException e) {
+			synchronized (err) {
+				err.println("huff: " + job.input + ": " + describe(e));
+			}
+			return false;
+		} finally {
+			memory.release(reserved);
+			slots.release();
+		}
+	}
+
+	/**
+	 * Names the output of a file: the base name with .huff when compressing, and
+	 * the base name with the stored extension when decompressing.
+	 */
+	private String outputName(Path input) throws IOException {
+		String base = HuffmanCodec.baseNameOf(input.getFileName().toString());
+		if (!arguments.decompress)
+			return base + ".huff";
+		String extension = codec.readExtension(input.toFile());
+		return extension.isEmpty() ? base : base + "." + extension;
+	}
+
+	/**
+	 * Estimates the heap a codec needs for a file: the blocks its threads hold
+	 * at once, in and out, and its I/O buffers. Files smaller than that need
+	 * about twice their size.
+	 */
+	private long memoryFor(Path file, int threads) throws IOException {
+		long size = Files.size(file);
+		int blockSize = arguments.adaptiveBlockSize > 0 ? arguments.adaptiveBlockSize : BlockIndex.BLOCK_SIZE;
+		long blocks = 3L * threads * blockSize;
+		return Math.min(2 * size, blocks) + 4L * IoMode.forSize(size).bufferSize;
+	}
+
+	/**
+	 * Creates the executor of the files: one virtual thread per file if asked
+	 * for, since they are cheap, or a fixed pool of platform threads.
+	 */
+	private ExecutorService newExecutor() {
+		if (!arguments.virtual)
+			return Executors.newFixedThreadPool(arguments.jobs);
+		try {
+			// Looked up by name so that the command still runs on Java 17
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			err.println("huff: virtual threads need Java 21 or later, using platform threads");
+			return Executors.newFixedThreadPool(arguments.jobs);
+		}
+	}
+
+	/**
+	 * Creates the empty file an output is written to beside its target before
+	 * it is moved into place. Unlike {@link Files#createTempFile}, which only
+	 * lets the owner read its files, this gives the file the permissions of the
+	 * umask, which the move keeps.
+	 */
+	private static Path partFile(Path target) throws IOException {
+		Path parent = target.toAbsolutePath().getParent();
+		while (true) {
+			String suffix = Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36);
+			try {
+				return Files.createFile(parent.resolve("." + target.getFileName() + "." + suffix + ".part"));
+			} catch (FileAlreadyExistsException e) {
+				// Another output took the name, try the next one
+			}
+		}
+	}
+
+	private static boolean isHuff(Path file) {
+		return file.getFileName().toString().endsWith(".huff");
+	}
+
+	/**
+	 * Matches a glob pattern in which, as in shells, every {@code **}{@code /}
+	 * from an index on also matches no directory at all; a {@link PathMatcher}
+	 * needs at least one.
+	 */
+	private static Predicate<Path> glob(String pattern, int from) {
+		int star = pattern.indexOf("**/", from);
+		if (star < 0) {
+			PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+			return matcher::matches;
+		}
+		return glob(pattern, star + 3).or(glob(pattern.substring(0, star) + pattern.substring(star + 3), star));
+	}
+
+	/**
+	 * @return Index of the first wildcard of a glob pattern, or -1.
+	 */
+	private static int globStart(String input) {
+		for (int i = 0; i < input.length(); i++) {
+			if ("*?[{".indexOf(input.charAt(i)) >= 0)
+				return i;
+		}
+		return -1;
+	}
+
+	private static String describe(Exception e) {
+		if (e instanceof NoSuchFileException)
+			return e.getMessage().equals(((NoSuchFileException) e).getFile()) ? "no such file"
+					: ((NoSuchFileException) e).getReason();
+		return e.getMessage() != null ? e.getMessage() : e.toString();
+	}
+
+	/**
+	 * One input file and the directory its relative path is kept from when the
+	 * output goes elsewhere.
+	 */
+	private static final class Job {
+		final Path input;
+		final Path root;
+
+		Job(Path input, Path root) {
+			this.input = input;
+			this.root = root;
+		}
+
+		Path outputDir(Path outputRoot) {
+			if (outputRoot == null)
+				return input.getParent() != null ? input.getParent() : Paths.get("");
+			Path parent = input.toAbsolutePath().getParent().normalize();
+			return outputRoot.resolve(root.toAbsolutePath().normalize().relativize(parent));
+		}
+	}
+
+	/**
+	 * The parsed command line.
+	 */
+	private static final class Arguments {
+		boolean decompress;
+		boolean recursive;
+		boolean force;
+		boolean quiet;
+		boolean timing;
+		boolean virtual;
+		boolean help;
+		int jobs = Runtime.getRuntime().availableProcessors();
+		int threads; // 0 unless given, to share the processors among the files at once
+		long memory = Runtime.getRuntime().maxMemory() / 2;
+		int adaptiveBlockSize;
+		int maxCodeLength = BitWriter.MAX_CODE_LENGTH;
+		Alphabet alphabet = Alphabet.BYTES;
+		boolean interleaved;
+		boolean singlePass;
+		boolean checksums = true;
+		Path archive;
+		Path append;
+		long rangeOffset;
+		long rangeLength = -1; // -1 without --range
+		Path train;
+		Path codebook;
+		boolean list;
+		boolean sharedTable;
+		Path outputDir;
+		String extension = "";
+		final List<String> inputs = new ArrayList<>();
+
+		/**
+		 * @throws IllegalArgumentException If the command line is not valid.
+		 */
+		static Arguments parse(String[] args) {
+			Arguments arguments = new Arguments();
+			boolean options = true;
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				String value = null;
+				if (options && arg.startsWith("--") && arg.indexOf('=') > 0) {
+					value = arg.substring(arg.indexOf('=') + 1);
+					arg = arg.substring(0, arg.indexOf('='));
+				}
+				if (!options || !arg.startsWith("-") || arg.equals("-")) {
+					arguments.inputs.add(arg);
+					continue;
+				}
+
+				switch (arg) {
+				case "--":
+					options = false;
+					break;
+				case "-c":
+				case "--compress":
+					arguments.decompress = false;
+					break;
+				case "-d":
+				case "--decompress":
+					arguments.decompress = true;
+					break;
+				case "-r":
+				case "--recursive":
+					arguments.recursive = true;
+					break;
+				case "-f":
+				case "--force":
+					arguments.force = true;
+					break;
+				case "-q":
+				case "--quiet":
+					arguments.quiet = true;
+					break;
+				case "--timing":
+					arguments.timing = true;
+					break;
+				case "--virtual":
+					arguments.virtual = true;
+					break;
+				case "--interleaved":
+					arguments.interleaved = true;
+					break;
+				case "--single-pass":
+					arguments.singlePass = true;
+					break;
+				case "--no-checksums":
+					arguments.checksums = false;
+					break;
+				case "-l":
+				case "--list":
+					arguments.list = true;
+					break;
+				case "--shared-table":
+					arguments.sharedTable = true;
+					break;
+				case "-h":
+				case "--help":
+					arguments.help = true;
+					break;
+				case "-a":
+				case "--archive":
+					arguments.archive = Paths.get(value != null ? value : next(args, ++i, arg));
+					break;
+				case "--append":
+					arguments.append = Paths.get(value != null ? value : next(args, ++i, arg));
+					break;
+				case "--train":
+					arguments.train = Paths.get(value != null ? value : next(args, ++i, arg));
+					break;
+				case "--codebook":
+					arguments.codebook = Paths.get(value != null ? value : next(args, ++i, arg));
+					break;
+				case "-o":
+				case "--output":
+					arguments.outputDir = Paths.get(value != null ? value : next(args, ++i, arg));
+					break;
+				case "-j":
+				case "--jobs":
+					arguments.jobs = positive(value != null ? value : next(args, ++i, arg), arg);
+					break;
+				case "-t":
+				case "--threads":
+					arguments.threads = positive(value != null ? value : next(args, ++i, arg), arg);
+					break;
+				case "-m":
+				case "--memory":
+					arguments.memory = size(value != null ? value : next(args, ++i, arg), arg);
+					if (arguments.memory < 1 << 20)
+						throw new IllegalArgumentException(arg + " must be at least 1m");
+					break;
+				case "--adaptive":
+					arguments.adaptiveBlockSize = (int) Math.min(Integer.MAX_VALUE,
+							size(value != null ? value : next(args, ++i, arg), arg));
+					break;
+				case "--alphabet":
+					arguments.alphabet = alphabet(value != null ? value : next(args, ++i, arg), arg);
+					break;
+				case "--max-code-length":
+					arguments.maxCodeLength = positive(value != null ? value : next(args, ++i, arg), arg);
+					break;
+				case "--range":
+					range(arguments, value != null ? value : next(args, ++i, arg), arg);
+					break;
+				case "--ext":
+					arguments.extension = value != null ? value : next(args, ++i, arg);
+					break;
+				default:
+					throw new IllegalArgumentException("unknown option " + arg);
+				}
+			}
+
+			if (arguments.help)
+				return arguments;
+			if (arguments.archive == null && (arguments.list || arguments.sharedTable))
+				throw new IllegalArgumentException((arguments.list ? "--list" : "--shared-table") + " needs --archive");
+			if (arguments.inputs.isEmpty() && (arguments.archive == null || !(arguments.decompress || arguments.list)))
+				throw new IllegalArgumentException("no input given");
+			if (arguments.train != null && (arguments.decompress || arguments.archive != null
+					|| arguments.codebook != null || arguments.inputs.contains("-")))
+				throw new IllegalArgumentException("--train reads files only, to train a codebook");
+			if (arguments.archive != null && arguments.codebook != null)
+				throw new IllegalArgumentException("archive members share a table with --shared-table, not a codebook");
+			if (arguments.archive != null && arguments.inputs.contains("-"))
+				throw new IllegalArgumentException("standard input cannot be archived");
+			if (arguments.append != null && (arguments.decompress || arguments.archive != null
+					|| arguments.train != null || arguments.codebook != null || arguments.alphabet != Alphabet.BYTES
+					|| arguments.interleaved))
+				throw new IllegalArgumentException(
+						"--append compresses byte blocks only, into a file of the adaptive mode");
+			if (arguments.rangeLength >= 0 && (!arguments.decompress || arguments.archive != null
+					|| arguments.append != null || arguments.train != null || arguments.inputs.size() != 1
+					|| arguments.inputs.contains("-")))
+				throw new IllegalArgumentException("--range reads from one .huff file, with -d");
+			if (arguments.inputs.contains("-") && arguments.inputs.size() > 1)
+				throw new IllegalArgumentException("standard input cannot be mixed with files");
+			// Checked here so that a bad value is a usage error
+			CodecOptions.DEFAULT.withAdaptiveBlocks(arguments.adaptiveBlockSize)
+					.withMaxCodeLength(arguments.maxCodeLength).withAlphabet(arguments.alphabet)
+					.withInterleavedStreams(arguments.interleaved).withSinglePass(arguments.singlePass);
+			if (arguments.codebook != null
+					&& (arguments.adaptiveBlockSize > 0 || arguments.alphabet != Alphabet.BYTES || arguments.interleaved))
+				throw new IllegalArgumentException("--codebook needs byte symbols without --adaptive or --interleaved");
+			if (arguments.sharedTable && (arguments.adaptiveBlockSize > 0 || arguments.alphabet != Alphabet.BYTES))
+				throw new IllegalArgumentException("--shared-table needs byte symbols without --adaptive");
+			return arguments;
+		}
+
+		private static String next(String[] args, int i, String option) {
+			if (i >= args.length)
+				throw new IllegalArgumentException(option + " needs a value");
+			return args[i];
+		}
+
+		private static int positive(String value, String option) {
+			try {
+				int n = Integer.parseInt(value);
+				if (n > 0)
+					return n;
+			} catch (NumberFormatException e) {
+				// Reported below
+			}
+			throw new IllegalArgumentException(option + " needs a positive number: " + value);
+		}
+
+		private static Alphabet alphabet(String value, String option) {
+			try {
+				return Alphabet.valueOf(value.toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(option + " needs bytes, pairs or words: " + value);
+			}
+		}
+
+		/**
+		 * Parses the offset and length of --range.
+		 */
+		private static void range(Arguments arguments, String value, String option) {
+			int colon = value.indexOf(':');
+			if (colon < 0)
+				throw new IllegalArgumentException(option + " needs <offset>:<length>, such as 1g:64k: " + value);
+			arguments.rangeOffset = size(value.substring(0, colon), option);
+			arguments.rangeLength = size(value.substring(colon + 1), option);
+		}
+
+		/**
+		 * Parses a size in bytes with an optional k, m or g suffix.
+		 */
+		private static long size(String value, String option) {
+			String digits = value.toLowerCase(Locale.ROOT);
+			int shift = 0;
+			if (digits.endsWith("k") || digits.endsWith("m") || digits.endsWith("g")) {
+				shift = digits.endsWith("k") ? 10 : digits.endsWith("m") ? 20 : 30;
+				digits = digits.substring(0, digits.length() - 1);
+			}
+			try {
+				long n = Long.parseLong(digits);
+				if (n >= 0 && n <= Long.MAX_VALUE >> shift)
+					return n << shift;
+			} catch (NumberFormatException e) {
+				// Reported below
+			}
+			throw new IllegalArgumentException(option + " needs a size such as 4096, 64k or 2g: " + value);
+		}
+	}
+}
@@ -0,0 +1,441 @@
+package ProjectTwo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Many files packed into one container, each member readable on its own. The
+ * layout:
+ * <ol>
+ * <li>the magic bytes 0x89 'H' 'U' 'A', the version (1 byte) and the flags (1
+ * byte),</li>
+ * <li>with {@link #SHARED_TABLE}, the table every member is coded with, as the
+ * header of an empty version 3 or 6 .huff file,</li>
+ * <li>every member: the length of its name (2 bytes), the name in UTF-8, the
+ * length of its original data (8 bytes), then either a whole .huff file or,
+ * with a shared table, the length of the encoded data in bits (8 bytes), the
+ * encoded data and its {@link BlockIndex},</li>
+ * <li>the central directory: the number of members (4 bytes), and for each
+ * its name as above, the length of its original data, the offset of its
+ * member header and the length of the member up to the next one (8 bytes
+ * each),</li>
+ * <li>the offset of the central directory (8 bytes) and the magic bytes
+ * again.</li>
+ * </ol>
+ * A reader finds the directory from the end of the file, so listing the
+ * members reads only the directory and extracting one reads only that member.
+ * The member headers repeat the names so that an archive whose end is lost can
+ * still be walked from the front.
+ * <p>
+ * A shared table is built from the bytes of all members together. Small
+ * members then pay neither for a header of their own nor for a table of their
+ * own, at the price of a code that fits each of them less well.
+ * <p>
+ * Member names are relative paths with '/' between their parts. An open
+ * archive holds no mutable state besides its channel, which is only read at
+ * absolute positions, so members can be extracted by several threads at once.
+ * <p>
+ * All numbers are big endian.
+ */
+public final class HuffArchive implements Closeable {
+
+	static final int MAGIC = 0x89485541; // 0x89 'H' 'U' 'A'
+	static final int VERSION = 1; // Version written by this release
+	static final int SHARED_TABLE = 1; // Flag of archives whose members share one code table
+
+	private static final int FOOTER_SIZE = 12; // Offset of the directory and the magic bytes
+	private static final int MIN_ENTRY_SIZE = 26; // Directory entry with an empty name
+	private static final int BUFFER_SIZE = 64 * 1024; // Buffer size for reading members
+
+	private final FileChannel channel; // The archive, read at absolute positions
+	private final HuffHeader shared; // The shared table, null if every member has its own
+	private final List<Entry> entries; // In the order of the archive
+	private final Map<String, Entry> byName;
+
+	private HuffArchive(FileChannel channel, HuffHeader shared, List<Entry> entries) {
+		this.channel = channel;
+		this.shared = shared;
+		this.entries = Collections.unmodifiableList(entries);
+		this.byName = new HashMap<>();
+		for (Entry entry : entries)
+			byName.put(entry.name, entry);
+	}
+
+	/**
+	 * Writes an archive. If the call fails, the partial archive is deleted.
+	 *
+	 * @param archive     The archive to create or overwrite.
+	 * @param members     The files to pack by their member names, in the order
+	 *                    they are written.
+	 * @param options     How the members are coded.
+	 * @param sharedTable Whether every member is coded with one table built
+	 *                    from all of them; it needs byte symbols without
+	 *                    adaptive blocks.
+	 * @return The entries of the archive.
+	 * @throws IOException              If a file cannot be read or the archive
+	 *                                  cannot be written.
+	 * @throws IllegalArgumentException If a name is not a valid member name, the
+	 *                                  options name a codebook or cannot be
+	 *                                  used with a shared table.
+	 */
+	public static List<Entry> write(Path archive, Map<String, Path> members, CodecOptions options,
+			boolean sharedTable) throws IOException {
+		if (sharedTable && (options.getAdaptiveBlockSize() > 0 || options.getAlphabet() != Alphabet.BYTES))
+			throw new IllegalArgumentException("A shared table needs byte symbols without adaptive blocks");
+		if (options.getCodebook() != null)
+			throw new IllegalArgumentException("Archive members share a table of the archive, not a codebook");
+		for (String name : members.keySet())
+			checkName(name);
+
+		try {
+			long total = 0;
+			for (Path file : members.values())
+				total += Files.size(file);
+			IoMode mode = options.ioModeFor(total);
+			try (OutputStream sink = mode.openSink(archive)) {
+				return write(sink, members, options, sharedTable);
+			}
+		} catch (IOException | RuntimeException e) {
+			try {
+				Files.deleteIfExists(archive);
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		}
+	}
+
+	private static List<Entry> write(OutputStream sink, Map<String, Path> members, CodecOptions options,
+			boolean sharedTable) throws IOException {
+		HuffmanCodec codec = new HuffmanCodec(options);
+		HuffmanCodec.CountingOutputStream counting = new HuffmanCodec.CountingOutputStream(sink);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(counting, 512));
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte(sharedTable ? SHARED_TABLE : 0);
+
+		// A shared table needs the bytes of every member before the first is coded
+		List<long[]> histograms = new ArrayList<>();
+		CodeTable table = null;
+		if (sharedTable) {
+			long[] freq = new long[256];
+			for (Path file : members.values()) {
+				long size = Files.size(file);
+				long[] counts = Histogram.count(file, options.ioModeFor(size), options.getThreads(),
+						new ProgressMeter(Progress.NONE, size));
+				for (int i = 0; i < 256; i++)
+					freq[i] += counts[i];
+				histograms.add(counts);
+			}
+			table = options.getTableCache().codes(freq, options.getMaxCodeLength());
+			HuffHeader.of("", 0, 0, table, options.isInterleaved(), options.isChecksums()).write(out);
+		}
+
+		List<Entry> entries = new ArrayList<>(members.size());
+		int member = 0;
+		for (Map.Entry<String, Path> next : members.entrySet()) {
+			String name = next.getKey();
+			Path file = next.getValue();
+			long length = Files.size(file);
+			IoMode mode = options.ioModeFor(length);
+			out.flush();
+			long offset = counting.count;
+			writeName(out, name);
+			out.writeLong(length);
+			if (table == null) {
+				out.flush();
+				codec.compress(file, HuffmanCodec.extensionOf(name), counting, mode, Progress.NONE);
+			} else {
+				long[] freq = histograms.get(member);
+				long payloadBits = 0;
+				for (int i = 0; i < 256; i++)
+					payloadBits += freq[i] * table.lengths[i];
+				out.writeLong(payloadBits);
+				out.flush();
+				Metrics metrics = new Metrics();
+				long start = counting.count;
+				codec.writePayload(() -> mode.openSource(file), table, length, payloadBits, counting, mode.bufferSize,
+						metrics);
+				metrics.finish("compress", length, counting.count - start);
+			}
+			entries.add(new Entry(name, length, offset, counting.count - offset));
+			member++;
+		}
+
+		long directory = counting.count;
+		out.writeInt(entries.size());
+		for (Entry entry : entries) {
+			writeName(out, entry.name);
+			out.writeLong(entry.length);
+			out.writeLong(entry.offset);
+			out.writeLong(entry.size);
+		}
+		out.writeLong(directory);
+		out.writeInt(MAGIC);
+		out.flush();
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * Opens an archive and reads its central directory.
+	 *
+	 * @param archive The archive to read.
+	 * @return The open archive; close it when done.
+	 * @throws IOException If the file cannot be read or is not an archive.
+	 */
+	public static HuffArchive open(Path archive) throws IOException {
+		FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new Slice(channel, 0, size), 512));
+			if (size < 6 + FOOTER_SIZE || in.readInt() != MAGIC)
+				throw new IOException("Not a .huff archive");
+			int version = in.readUnsignedByte();
+			if (version != VERSION)
+				throw new IOException("Unsupported archive version: " + version);
+			int flags = in.readUnsignedByte();
+			if ((flags & ~SHARED_TABLE) != 0)
+				throw new IOException("Unsupported archive flags: " + flags);
+			HuffHeader shared = null;
+			long membersStart = 6;
+			if ((flags & SHARED_TABLE) != 0) {
+				shared = HuffHeader.read(in);
+				if (shared.version != HuffHeader.VERSION && shared.version != HuffHeader.INTERLEAVED_VERSION)
+					throw new IOException("Corrupt shared table");
+				membersStart += shared.size();
+			}
+
+			ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+			readFully(channel, footer, size - FOOTER_SIZE);
+			long directory = footer.getLong(0);
+			if (footer.getInt(8) != MAGIC)
+				throw new IOException("Truncated archive");
+			long directoryEnd = size - FOOTER_SIZE;
+			if (directory < membersStart || directory > directoryEnd - 4)
+				throw new IOException("Corrupt central directory");
+
+			in = new DataInputStream(new BufferedInputStream(new Slice(channel, directory, directoryEnd)));
+			int count = in.readInt();
+			if (count < 0 || count > (directoryEnd - directory - 4) / MIN_ENTRY_SIZE)
+				throw new IOException("Corrupt central directory");
+			List<Entry> entries = new ArrayList<>(count);
+			Map<String, Entry> names = new HashMap<>();
+			for (int i = 0; i < count; i++) {
+				String name = readName(in);
+				Entry entry = new Entry(name, in.readLong(), in.readLong(), in.readLong());
+				if (entry.length < 0 || entry.offset < membersStart || entry.size <= 0
+						|| entry.size > directory - entry.offset || names.put(name, entry) != null)
+					throw new IOException("Corrupt central directory");
+				entries.add(entry);
+			}
+			return new HuffArchive(channel, shared, entries);
+		} catch (EOFException e) {
+			channel.close();
+			throw new IOException("Truncated archive", e);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The members in the order of the archive.
+	 */
+	public List<Entry> entries() {
+		return entries;
+	}
+
+	/**
+	 * @param name The name of a member.
+	 * @return The member, or null if the archive has none of that name.
+	 */
+	public Entry entry(String name) {
+		return byName.get(name);
+	}
+
+	/**
+	 * Decompresses one member into a stream, reading only that member.
+	 *
+	 * @param entry  A member of this archive.
+	 * @param target Receives the original data; it is flushed but not closed.
+	 * @throws IOException If reading or writing fails or the member is corrupt.
+	 */
+	public void extract(Entry entry, OutputStream target) throws IOException {
+		if (byName.get(entry.name) != entry)
+			throw new IllegalArgumentException("Not a member of this archive: " + entry.name);
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new Slice(channel, entry.offset, entry.offset + entry.size), BUFFER_SIZE));
+		try {
+			if (!readName(in).equals(entry.name) || in.readLong() != entry.length)
+				throw new IOException("Corrupt member header: " + entry.name);
+			HuffHeader header = shared != null ? shared.member(entry.length, in.readLong()) : HuffHeader.read(in);
+			long decoded = HuffmanCodec.decompress(header, in, target, BUFFER_SIZE, new Metrics()).getLengthAfter();
+			if (decoded != entry.length)
+				throw new IOException("Decoded " + decoded + " bytes instead of " + entry.length);
+		} catch (EOFException e) {
+			throw new IOException("Truncated member: " + entry.name, e);
+		}
+	}
+
+	/**
+	 * Decompresses one member into a file. If the call fails, the partial
+	 * output is deleted.
+	 *
+	 * @param entry  A member of this archive.
+	 * @param target The file to create or overwrite with the original data.
+	 * @throws IOException If reading or writing fails or the member is corrupt.
+	 */
+	public void extract(Entry entry, Path target) throws IOException {
+		try (OutputStream out = IoMode.forSize(entry.length).openSink(target)) {
+			extract(entry, out);
+		} catch (IOException | RuntimeException e) {
+			try {
+				Files.deleteIfExists(target);
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Checks that a name is a relative path with no empty, "." or ".." parts, so
+	 * that a member extracted below a directory stays below it.
+	 *
+	 * @throws IllegalArgumentException If it is not.
+	 */
+	static void checkName(String name) {
+		if (name.getBytes(StandardCharsets.UTF_8).length > 0xFFFF || name.indexOf('\\') >= 0
+				|| name.indexOf('\0') >= 0)
+			throw new IllegalArgumentException("Invalid member name: " + name);
+		for (String part : name.split("/", -1)) {
+			if (part.isEmpty() || part.equals(".") || part.equals(".."))
+				throw new IllegalArgumentException("Invalid member name: " + name);
+		}
+	}
+
+	private static void writeName(DataOutputStream out, String name) throws IOException {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readName(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readUnsignedShort()];
+		in.readFully(bytes);
+		String name = new String(bytes, StandardCharsets.UTF_8);
+		try {
+			checkName(name);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+		return name;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new EOFException();
+		}
+	}
+
+	/**
+	 * A member of an archive.
+	 */
+	public static final class Entry {
+		final String name;
+		final long length; // Length of the original data
+		final long offset; // Start of the member header in the archive
+		final long size; // Length of the member in the archive, header included
+
+		Entry(String name, long length, long offset, long size) {
+			this.name = name;
+			this.length = length;
+			this.offset = offset;
+			this.size = size;
+		}
+
+		/**
+		 * @return The relative path of the member, with '/' between its parts.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return The length of the original data in bytes.
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		/**
+		 * @return The bytes the member takes in the archive.
+		 */
+		public long getCompressedLength() {
+			return size;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * Reads a range of a channel at absolute positions, leaving the position of
+	 * the channel alone.
+	 */
+	private static final class Slice extends InputStream {
+		private final FileChannel channel;
+		private final long end;
+		private long position;
+
+		Slice(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.position = start;
+			this.end = end;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] one = new byte[1];
+			return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (position >= end)
+				return -1;
+			int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+			if (n > 0)
+				position += n;
+			return n;
+		}
+	}
+}
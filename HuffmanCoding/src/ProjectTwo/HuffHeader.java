@@ -0,0 +1,465 @@
+package ProjectTwo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The part of a .huff file in front of the payload. Seven layouts exist.
+ * <p>
+ * Version 1, written by the first releases of the application:
+ * <ol>
+ * <li>the length of the original file extension (1 byte, at most 127) and the
+ * extension,</li>
+ * <li>the length of the serialized tree in bits (4 bytes, big endian),</li>
+ * <li>the post order tree, padded with zeros to whole bytes,</li>
+ * <li>the encoded data, its last byte padded with zeros,</li>
+ * <li>one byte holding the number of padding bits in the byte before it.</li>
+ * </ol>
+ * Version 2, which can be split into blocks and decoded in parallel:
+ * <ol>
+ * <li>the magic bytes 0x89 'H' 'U' 'F' and the version (1 byte); the first
+ * byte can never start a version 1 file,</li>
+ * <li>the length of the extension (1 byte) and the extension,</li>
+ * <li>the length of the original data in bytes (8 bytes),</li>
+ * <li>the length of the encoded data in bits (8 bytes),</li>
+ * <li>the length of the serialized tree in bits (4 bytes) and the tree,
+ * padded as in version 1,</li>
+ * <li>the encoded data, its last byte padded with zeros,</li>
+ * <li>the {@link BlockIndex}.</li>
+ * </ol>
+ * Version 3 is version 2 with a canonical code: in place of the tree it stores
+ * the code length of every symbol, serialized by {@link CodeLengths} and
+ * prefixed by its length in bits (4 bytes). Decoders build their tables
+ * straight from the lengths.
+ * <p>
+ * Version 4 holds only the magic bytes, the version and the extension; the
+ * code tables travel with the blocks that follow, see {@link AdaptiveBlocks}.
+ * <p>
+ * Version 5 codes an {@link Alphabet} larger than bytes, see
+ * {@link TokenCoder}:
+ * <ol>
+ * <li>the magic bytes, the version and the extension as in version 2,</li>
+ * <li>the id of the alphabet (1 byte),</li>
+ * <li>the length of the original data in bytes (8 bytes),</li>
+ * <li>the length of the encoded data in bits (8 bytes),</li>
+ * <li>for {@link Alphabet#WORDS}, the number of words of the dictionary (2
+ * bytes) and each word as its length (1 byte) and its bytes,</li>
+ * <li>the code lengths as in version 3, for every symbol of the alphabet,</li>
+ * <li>the encoded data, its last byte padded with zeros.</li>
+ * </ol>
+ * Version 6 is version 3 with the streams of every block in the
+ * {@link BlockIndex}; header and payload are laid out the same.
+ * <p>
+ * Version 7 is version 3 coded with a {@link Codebook}: in place of the code
+ * lengths it stores the id of the codebook (4 bytes), which the reader must
+ * supply. Files of at most one block, the small inputs codebooks are meant
+ * for, set bit 0x40 of the version byte and leave out what the header implies:
+ * they store both lengths in 4 bytes each, and their {@link BlockIndex} is
+ * only the checksum of the block, if any.
+ * <p>
+ * From version 3 on, the high bit of the version byte marks a file with CRC32C
+ * checksums of the original data: one per block in the index of versions 3, 6
+ * and 7, in the blocks of version 4, and one for the whole data after the
+ * payload of version 5.
+ * <p>
+ * All numbers are big endian.
+ */
+final class HuffHeader {
+
+	static final int MAGIC = 0x89485546; // 0x89 'H' 'U' 'F'
+	static final int VERSION = 3; // Version written by this release
+	static final int ADAPTIVE_VERSION = 4; // Version written in the adaptive mode
+	static final int TOKEN_VERSION = 5; // Version written for alphabets larger than bytes
+	static final int INTERLEAVED_VERSION = 6; // Version written with interleaved streams
+	static final int CODEBOOK_VERSION = 7; // Version written with a codebook
+	static final int CHECKSUM_FLAG = 0x80; // Set in the version byte of files with checksums
+	static final int SINGLE_BLOCK_FLAG = 0x40; // Set in the version byte of version 7 files of one block
+
+	private static final byte[][] NO_WORDS = new byte[0][];
+
+	final int version; // Layout of the file, 1 to 7
+	final String extension; // Extension of the original file, may be empty
+	final long originalLength; // Length of the original data in bytes, -1 in version 1
+	final long payloadBits; // Length of the encoded data in bits, -1 in version 1
+	final int tableLength; // Length of the serialized tree or code lengths in bits
+	final String table; // The serialized tree or code lengths, padded with zeros to whole bytes
+	final CodeTable codes; // The code of every symbol
+	final Alphabet alphabet; // The symbols of the code
+	final byte[][] words; // The dictionary of a version 5 file of words, empty otherwise
+	final boolean checksummed; // Whether the file holds CRC32C checksums of the original data
+	final Codebook codebook; // The codebook of a version 7 file, null otherwise
+	private final DecodeTable decoder; // Decode table of the codebook or a cache, null to build one
+	final boolean singleBlock; // Whether this is a version 7 file of one block, whose index the header implies
+
+	private HuffHeader(int version, String extension, long originalLength, long payloadBits, int tableLength,
+			String table, CodeTable codes) {
+		this(version, extension, originalLength, payloadBits, tableLength, table, codes, Alphabet.BYTES, NO_WORDS,
+				false, null, null);
+	}
+
+	private HuffHeader(int version, String extension, long originalLength, long payloadBits, int tableLength,
+			String table, CodeTable codes, Alphabet alphabet, byte[][] words, boolean checksummed,
+			Codebook codebook, DecodeTable decoder) {
+		this(version, extension, originalLength, payloadBits, tableLength, table, codes, alphabet, words, checksummed,
+				codebook, decoder, false);
+	}
+
+	private HuffHeader(int version, String extension, long originalLength, long payloadBits, int tableLength,
+			String table, CodeTable codes, Alphabet alphabet, byte[][] words, boolean checksummed,
+			Codebook codebook, DecodeTable decoder, boolean singleBlock) {
+		this.version = version;
+		this.extension = extension;
+		this.originalLength = originalLength;
+		this.payloadBits = payloadBits;
+		this.tableLength = tableLength;
+		this.table = table;
+		this.codes = codes;
+		this.alphabet = alphabet;
+		this.words = words;
+		this.checksummed = checksummed;
+		this.codebook = codebook;
+		this.decoder = decoder;
+		this.singleBlock = singleBlock;
+	}
+
+	/**
+	 * Describes a file of the current version without checksums.
+	 *
+	 * @param extension      Extension of the original file, may be empty.
+	 * @param originalLength Length of the original data in bytes.
+	 * @param payloadBits    Length of the encoded data in bits.
+	 * @param codes          The canonical code the data is encoded with.
+	 * @return The header.
+	 */
+	static HuffHeader of(String extension, long originalLength, long payloadBits, CodeTable codes) {
+		return of(extension, originalLength, payloadBits, codes, false, false);
+	}
+
+	/**
+	 * Describes a file of the current version, or of the interleaved one.
+	 *
+	 * @param extension      Extension of the original file, may be empty.
+	 * @param originalLength Length of the original data in bytes.
+	 * @param payloadBits    Length of the encoded data in bits.
+	 * @param codes          The canonical code the data is encoded with.
+	 * @param interleaved    Whether the block index holds the streams of every
+	 *                       block.
+	 * @param checksummed    Whether the block index holds the checksum of every
+	 *                       block.
+	 * @return The header.
+	 */
+	static HuffHeader of(String extension, long originalLength, long payloadBits, CodeTable codes,
+			boolean interleaved, boolean checksummed) {
+		String table = CodeLengths.serialize(codes.lengths);
+		return new HuffHeader(interleaved ? INTERLEAVED_VERSION : VERSION, extension, originalLength, payloadBits,
+				table.length(), pad(table), codes, Alphabet.BYTES, NO_WORDS, checksummed, null, null);
+	}
+
+	/**
+	 * Describes a file of an alphabet larger than bytes.
+	 *
+	 * @param extension      Extension of the original file, may be empty.
+	 * @param alphabet       The symbols of the code.
+	 * @param words          The dictionary of {@link Alphabet#WORDS}, empty
+	 *                       for other alphabets.
+	 * @param originalLength Length of the original data in bytes.
+	 * @param payloadBits    Length of the encoded data in bits.
+	 * @param codes          The canonical code of every symbol of the alphabet.
+	 * @param checksummed    Whether the checksum of the data follows the
+	 *                       payload.
+	 * @return The header.
+	 */
+	static HuffHeader tokens(String extension, Alphabet alphabet, byte[][] words, long originalLength,
+			long payloadBits, CodeTable codes, boolean checksummed) {
+		String table = CodeLengths.serialize(codes.lengths);
+		return new HuffHeader(TOKEN_VERSION, extension, originalLength, payloadBits, table.length(), pad(table),
+				codes, alphabet, words, checksummed, null, null);
+	}
+
+	/**
+	 * Describes a file coded with a codebook, leaving out the index if the data
+	 * fits in one block.
+	 *
+	 * @param extension      Extension of the original file, may be empty.
+	 * @param originalLength Length of the original data in bytes.
+	 * @param payloadBits    Length of the encoded data in bits.
+	 * @param codebook       The codebook the data is encoded with.
+	 * @param checksummed    Whether the block index holds the checksum of every
+	 *                       block.
+	 * @return The header.
+	 */
+	static HuffHeader codebook(String extension, long originalLength, long payloadBits, Codebook codebook,
+			boolean checksummed) {
+		return codebook(extension, originalLength, payloadBits, codebook, checksummed,
+				originalLength <= BlockIndex.BLOCK_SIZE);
+	}
+
+	private static HuffHeader codebook(String extension, long originalLength, long payloadBits, Codebook codebook,
+			boolean checksummed, boolean singleBlock) {
+		return new HuffHeader(CODEBOOK_VERSION, extension, originalLength, payloadBits, codebook.tableLength,
+				codebook.table, codebook.codes, Alphabet.BYTES, NO_WORDS, checksummed, codebook,
+				codebook.decoder, singleBlock);
+	}
+
+	/**
+	 * Describes a file of the adaptive mode.
+	 *
+	 * @param extension   Extension of the original file, may be empty.
+	 * @param checksummed Whether every block holds the checksum of its data.
+	 * @return The header.
+	 */
+	static HuffHeader adaptive(String extension, boolean checksummed) {
+		return new HuffHeader(ADAPTIVE_VERSION, extension, -1, -1, 0, "", CodeTable.canonical(new int[256]),
+				Alphabet.BYTES, NO_WORDS, checksummed, null, null);
+	}
+
+	/**
+	 * Describes other data coded with the table of this header, as the members
+	 * of an archive that share one table are.
+	 *
+	 * @param originalLength Length of the original data in bytes.
+	 * @param payloadBits    Length of the encoded data in bits.
+	 * @return A header of the same version, code and checksum flag.
+	 */
+	HuffHeader member(long originalLength, long payloadBits) {
+		return new HuffHeader(version, "", originalLength, payloadBits, tableLength, table, codes, alphabet, words,
+				checksummed, codebook, decoder, singleBlock);
+	}
+
+	/**
+	 * Reads a header of any version but 7.
+	 *
+	 * @param in The stream, positioned at the start of the file.
+	 * @return The header; the stream is positioned at the first payload byte.
+	 * @throws IOException If the stream cannot be read or is not a .huff file.
+	 */
+	static HuffHeader read(DataInputStream in) throws IOException {
+		return read(in, null, TableCache.SHARED);
+	}
+
+	/**
+	 * Reads a header of any version.
+	 *
+	 * @param in       The stream, positioned at the start of the file.
+	 * @param codebook The codebook a version 7 file may be coded with, or null.
+	 * @param cache    Tables of headers read before, which this header may
+	 *                 share.
+	 * @return The header; the stream is positioned at the first payload byte.
+	 * @throws IOException If the stream cannot be read, is not a .huff file or
+	 *                     is coded with another codebook.
+	 */
+	static HuffHeader read(DataInputStream in, Codebook codebook, TableCache cache) throws IOException {
+		int version = 1;
+		boolean checksummed = false;
+		boolean singleBlock = false;
+		int extLength = in.read();
+		if (extLength == MAGIC >>> 24) {
+			if (in.readUnsignedByte() != (MAGIC >>> 16 & 0xFF) || in.readUnsignedByte() != (MAGIC >>> 8 & 0xFF)
+					|| in.readUnsignedByte() != (MAGIC & 0xFF))
+				throw new IOException("Not a .huff file");
+			int versionByte = in.readUnsignedByte();
+			version = versionByte & ~(CHECKSUM_FLAG | SINGLE_BLOCK_FLAG);
+			checksummed = (versionByte & CHECKSUM_FLAG) != 0;
+			singleBlock = (versionByte & SINGLE_BLOCK_FLAG) != 0;
+			if (version < 2 || version > CODEBOOK_VERSION || (checksummed && version < 3)
+					|| (singleBlock && version != CODEBOOK_VERSION))
+				throw new IOException("Unsupported .huff version: " + versionByte);
+			extLength = in.read();
+		}
+		if (extLength < 0 || extLength > Byte.MAX_VALUE)
+			throw new IOException("Not a .huff file");
+		byte[] ext = new byte[extLength];
+		in.readFully(ext);
+		String extension = new String(ext, StandardCharsets.ISO_8859_1);
+		if (version == ADAPTIVE_VERSION)
+			return adaptive(extension, checksummed);
+
+		Alphabet alphabet = Alphabet.BYTES;
+		if (version == TOKEN_VERSION) {
+			try {
+				alphabet = Alphabet.of(in.readUnsignedByte());
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage(), e);
+			}
+		}
+
+		long originalLength = -1;
+		long payloadBits = -1;
+		if (singleBlock) {
+			originalLength = in.readInt();
+			payloadBits = in.readInt();
+			if (originalLength < 0 || originalLength > BlockIndex.BLOCK_SIZE || payloadBits < 0)
+				throw new IOException("Corrupt data length");
+		} else if (version >= 2) {
+			originalLength = in.readLong();
+			payloadBits = in.readLong();
+			if (originalLength < 0 || payloadBits < 0)
+				throw new IOException("Corrupt data length");
+		}
+		byte[][] words = alphabet == Alphabet.WORDS ? readWords(in) : NO_WORDS;
+		if (version == CODEBOOK_VERSION) {
+			int id = in.readInt();
+			if (codebook == null || codebook.getId() != id)
+				throw new IOException(String.format("Coded with codebook %08x, which is not given", id));
+			return codebook(extension, originalLength, payloadBits, codebook, checksummed, singleBlock);
+		}
+
+		int tableLength = in.readInt();
+		if (tableLength < 0)
+			throw new IOException("Corrupt header length: " + tableLength);
+		byte[] tableBytes = new byte[(tableLength + 7) / 8];
+		in.readFully(tableBytes);
+
+		// Files of one kind often carry the same table, which is then parsed once
+		int symbols = alphabet.size;
+		boolean tree = version < 3;
+		TableCache.Decoding decoding;
+		try {
+			decoding = cache.decoding(tree ? 0 : symbols, tableLength, tableBytes, () -> {
+				StringBuilder table = new StringBuilder(tableBytes.length * 8);
+				for (byte b : tableBytes)
+					table.append(HuffmanTree.toBinaryString(b));
+				CodeTable parsed = tree ? CodeTable.of(HuffmanTree.parse(table, tableLength))
+						: CodeTable.canonical(CodeLengths.parse(table, tableLength, symbols));
+				return new TableCache.Decoding(table.toString(), parsed,
+						symbols == 256 ? DecodeTable.of(parsed) : null);
+			});
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+		CodeTable codes = decoding.codes;
+		if (codes.maxLength() == 0 && payloadBits > 0)
+			throw new IOException("Data without a Huffman tree");
+		if (version == TOKEN_VERSION) {
+			if (codes.maxLength() > CanonicalDecoder.MAX_CODE_LENGTH)
+				throw new IOException("Corrupt Huffman header");
+			// Every word symbol must name a word of the dictionary
+			int named = alphabet == Alphabet.WORDS ? 256 + words.length : alphabet.size;
+			for (int symbol = named; symbol < alphabet.size; symbol++) {
+				if (codes.lengths[symbol] != 0)
+					throw new IOException("Corrupt Huffman header");
+			}
+		}
+		return new HuffHeader(version, extension, originalLength, payloadBits, tableLength, decoding.table, codes,
+				alphabet, words, checksummed, null, decoding.decoder);
+	}
+
+	/**
+	 * Reads the dictionary of a version 5 file of words.
+	 */
+	private static byte[][] readWords(DataInputStream in) throws IOException {
+		int count = in.readUnsignedShort();
+		if (count > TokenCoder.MAX_DICTIONARY)
+			throw new IOException("Corrupt dictionary");
+		byte[][] words = new byte[count][];
+		for (int i = 0; i < count; i++) {
+			int length = in.readUnsignedByte();
+			if (length < 2 || length > TokenCoder.MAX_WORD)
+				throw new IOException("Corrupt dictionary");
+			words[i] = new byte[length];
+			in.readFully(words[i]);
+		}
+		return words;
+	}
+
+	/**
+	 * Writes the header in the layout of its version, 3 to 7.
+	 *
+	 * @throws IllegalArgumentException If the extension is longer than 127
+	 *                                  bytes.
+	 */
+	void write(DataOutputStream out) throws IOException {
+		byte[] ext = extension.getBytes(StandardCharsets.ISO_8859_1);
+		if (ext.length > Byte.MAX_VALUE)
+			throw new IllegalArgumentException("Extension too long: " + extension);
+		out.writeInt(MAGIC);
+		out.writeByte(version | (checksummed ? CHECKSUM_FLAG : 0) | (singleBlock ? SINGLE_BLOCK_FLAG : 0));
+		out.writeByte(ext.length);
+		out.write(ext);
+		if (version == ADAPTIVE_VERSION)
+			return;
+		if (version == TOKEN_VERSION)
+			out.writeByte(alphabet.id);
+		if (singleBlock) {
+			out.writeInt((int) originalLength);
+			out.writeInt((int) payloadBits);
+		} else {
+			out.writeLong(originalLength);
+			out.writeLong(payloadBits);
+		}
+		if (alphabet == Alphabet.WORDS) {
+			out.writeShort(words.length);
+			for (byte[] word : words) {
+				out.writeByte(word.length);
+				out.write(word);
+			}
+		}
+		if (version == CODEBOOK_VERSION) {
+			out.writeInt(codebook.getId());
+			return;
+		}
+		out.writeInt(tableLength);
+		for (int i = 0; i < table.length(); i += 8)
+			out.write(Integer.parseInt(table.substring(i, i + 8), 2));
+	}
+
+	/**
+	 * @return The decoding table of the code: the one the codebook or table
+	 *         cache keeps, or a new one.
+	 */
+	DecodeTable decodeTable() {
+		return decoder != null ? decoder : DecodeTable.of(codes);
+	}
+
+	/**
+	 * @return The length of the header in bytes, which is the offset of the
+	 *         first payload byte.
+	 */
+	long size() {
+		if (version == ADAPTIVE_VERSION)
+			return 5 + 1 + extension.length();
+		if (version == CODEBOOK_VERSION)
+			return 5 + 1 + extension.length() + (singleBlock ? 8 : 16) + 4;
+		long size = 1 + extension.length() + 4 + table.length() / 8;
+		if (version == TOKEN_VERSION) {
+			size += 1;
+			if (alphabet == Alphabet.WORDS) {
+				size += 2;
+				for (byte[] word : words)
+					size += 1 + word.length;
+			}
+		}
+		return version >= 2 ? size + 5 + 16 : size;
+	}
+
+	/**
+	 * @return The offset of the payload length in the written header of a
+	 *         version 3, 6 or 7 file, where an encoder that learns it only
+	 *         after the payload writes it.
+	 */
+	long payloadBitsOffset() {
+		return 5 + 1 + extension.length() + (singleBlock ? 4 : 8);
+	}
+
+	/**
+	 * @return The payload length as the header stores it at
+	 *         {@link #payloadBitsOffset()}.
+	 */
+	byte[] payloadBitsBytes() {
+		return singleBlock ? ByteBuffer.allocate(4).putInt((int) payloadBits).array()
+				: ByteBuffer.allocate(8).putLong(payloadBits).array();
+	}
+
+	/**
+	 * @return The bits padded with zeros to whole bytes.
+	 */
+	private static String pad(String bits) {
+		StringBuilder padded = new StringBuilder(bits);
+		while (padded.length() % 8 != 0)
+			padded.append('0');
+		return padded.toString();
+	}
+}
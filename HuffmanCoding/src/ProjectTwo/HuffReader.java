@@ -0,0 +1,282 @@
+package ProjectTwo;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads ranges of the original data of a .huff file without decoding the rest
+ * of it, as range requests over large compressed files need. The index at the
+ * end of the file records, for every block, where it starts in the original
+ * data and in the payload; those are the sync points a read starts decoding
+ * at. A range is read by decoding each block it overlaps from the last sync
+ * point before the range to the end of the range, so a read costs at most
+ * one block of decoding per block it covers, however large the file is.
+ * <p>
+ * Blocks hold {@link BlockIndex#BLOCK_SIZE} bytes in files of versions 2, 3
+ * and 7; version 6 files also index the quarter of every block, and version 4
+ * files have the block size of the adaptive mode, which is the way to closer
+ * sync points. Files of versions 1 and 5 have no index and cannot be read by
+ * range.
+ * <p>
+ * Checksums are checked where a read decodes a whole block; bytes decoded from
+ * part of a block are not checked. Any number of threads may read at once.
+ */
+public final class HuffReader implements Closeable {
+
+	private final FileChannel channel;
+	private final HuffHeader header;
+	private final Blocks blocks;
+	private final long length; // Length of the original data
+
+	private HuffReader(FileChannel channel, HuffHeader header, Blocks blocks) {
+		this.channel = channel;
+		this.header = header;
+		this.blocks = blocks;
+		int last = blocks.size() - 1;
+		this.length = last < 0 ? 0 : blocks.position(last) + blocks.length(last);
+	}
+
+	/**
+	 * Opens a file and reads its header and index.
+	 *
+	 * @param file    The .huff file.
+	 * @param options The codebook and table cache to read the header with.
+	 * @return The reader.
+	 * @throws IOException If the file cannot be read, is corrupt or has no
+	 *                     index.
+	 */
+	static HuffReader open(File file, CodecOptions options) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			HuffHeader header = HuffHeader.read(
+					new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel))),
+					options.getCodebook(), options.getTableCache());
+			Blocks blocks;
+			if (header.version == HuffHeader.ADAPTIVE_VERSION)
+				blocks = AdaptiveBlocks.blocks(header, channel);
+			else if (header.version >= 2 && header.version != HuffHeader.TOKEN_VERSION)
+				blocks = new Indexed(header, channel);
+			else
+				throw new IOException("Files of version " + header.version + " have no index to read ranges by");
+			return new HuffReader(channel, header, blocks);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The extension of the original file, may be empty.
+	 */
+	public String getExtension() {
+		return header.extension;
+	}
+
+	/**
+	 * @return The length of the original data in bytes.
+	 */
+	public long length() {
+		return length;
+	}
+
+	/**
+	 * Reads original bytes from a position.
+	 *
+	 * @param position Offset in the original data of the first byte to read.
+	 * @param dst      Receives the bytes.
+	 * @param off      Index of dst of the first byte.
+	 * @param len      Most bytes to read.
+	 * @return The number of bytes read, less than len only at the end of the
+	 *         data, or -1 if the position is at or after the end.
+	 * @throws IOException               If the file cannot be read or is
+	 *                                   corrupt.
+	 * @throws IllegalArgumentException  If the position is negative.
+	 * @throws IndexOutOfBoundsException If off and len do not fit dst.
+	 */
+	public int read(long position, byte[] dst, int off, int len) throws IOException {
+		if (position < 0)
+			throw new IllegalArgumentException("Negative position: " + position);
+		if (off < 0 || len < 0 || len > dst.length - off)
+			throw new IndexOutOfBoundsException(
+					"Range [" + off + ", " + off + " + " + len + ") out of bounds for length " + dst.length);
+		if (position >= length)
+			return -1;
+
+		int n = (int) Math.min(len, length - position);
+		for (int block = find(position), done = 0; done < n; block++) {
+			int from = (int) (position + done - blocks.position(block));
+			int to = (int) Math.min(blocks.length(block), (long) from + n - done);
+			blocks.decode(block, from, to, dst, off + done);
+			done += to - from;
+		}
+		return n;
+	}
+
+	/**
+	 * Reads original bytes from a position.
+	 *
+	 * @param position Offset in the original data of the first byte to read.
+	 * @param length   Most bytes to read.
+	 * @return The bytes, fewer than asked for only at the end of the data.
+	 * @throws IOException              If the file cannot be read or is
+	 *                                  corrupt.
+	 * @throws IllegalArgumentException If the position or length is negative.
+	 */
+	public byte[] read(long position, int length) throws IOException {
+		if (position < 0)
+			throw new IllegalArgumentException("Negative position: " + position);
+		if (length < 0)
+			throw new IllegalArgumentException("Negative length: " + length);
+		byte[] bytes = new byte[(int) Math.max(0, Math.min(length, this.length - position))];
+		if (bytes.length > 0)
+			read(position, bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * @return The last block starting at or before a position of the data.
+	 */
+	private int find(long position) {
+		int low = 0;
+		int high = blocks.size() - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (blocks.position(middle) <= position)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * The blocks of a file and how to decode part of one.
+	 */
+	interface Blocks {
+		int size();
+
+		/**
+		 * @return The offset of a block in the original data.
+		 */
+		long position(int block);
+
+		/**
+		 * @return The number of bytes a block decodes to.
+		 */
+		int length(int block);
+
+		/**
+		 * Decodes some bytes of a block.
+		 *
+		 * @param from   Index in the block of the first byte.
+		 * @param to     Index in the block after the last byte.
+		 * @param out    Receives the bytes.
+		 * @param offset Index of out of the first byte.
+		 * @throws IOException If the file cannot be read or is corrupt.
+		 */
+		void decode(int block, int from, int to, byte[] out, int offset) throws IOException;
+	}
+
+	/**
+	 * The blocks of a file of version 2, 3, 6 or 7, found through its
+	 * {@link BlockIndex}; those of version 6 are entered at any of their
+	 * streams.
+	 */
+	private static final class Indexed implements Blocks {
+		private final FileChannel channel;
+		private final long payloadStart;
+		private final long payloadBits;
+		private final BlockIndex index;
+		private final DecodeTable table;
+
+		Indexed(HuffHeader header, FileChannel channel) throws IOException {
+			this.channel = channel;
+			this.payloadStart = header.size();
+			this.payloadBits = header.payloadBits;
+			long indexStart = payloadStart + ((payloadBits + 7) >>> 3);
+			if (indexStart > channel.size())
+				throw new IOException("Truncated payload");
+			byte[] bytes = new byte[(int) Math.min(Integer.MAX_VALUE - 8, channel.size() - indexStart)];
+			ParallelDecoder.readFully(channel, ByteBuffer.wrap(bytes), indexStart);
+			this.index = BlockIndex.read(new DataInputStream(new ByteArrayInputStream(bytes)), header);
+			this.table = header.decodeTable();
+		}
+
+		@Override
+		public int size() {
+			return index.size();
+		}
+
+		@Override
+		public long position(int block) {
+			return index.position(block);
+		}
+
+		@Override
+		public int length(int block) {
+			return index.length(block);
+		}
+
+		@Override
+		public void decode(int block, int from, int to, byte[] out, int offset) throws IOException {
+			// The streams of a block follow each other in the payload, so decoding
+			// may start at the stream holding the first byte and run on into the
+			// stream holding the last one
+			int length = index.length(block);
+			int streams = index.streams();
+			int first = 0;
+			while (first + 1 < streams && BlockIndex.streamStart(length, first + 1, streams) <= from)
+				first++;
+			int last = first;
+			while (last + 1 < streams && BlockIndex.streamStart(length, last + 1, streams) < to)
+				last++;
+			long start = index.bitOffset(block, first);
+			long end = last + 1 < streams ? index.bitOffset(block, last + 1)
+					: block + 1 < index.size() ? index.bitOffset(block + 1) : payloadBits;
+
+			byte[] packed = new byte[(int) (((end + 7) >>> 3) - (start >>> 3))];
+			ByteBuffer buffer = ByteBuffer.wrap(packed);
+			ParallelDecoder.readFully(channel, buffer, payloadStart + (start >>> 3));
+			if (buffer.hasRemaining())
+				throw new IOException("Truncated payload");
+			BitReader reader = new BitReader(packed, 0, packed.length, end - (start & ~7));
+			reader.refill();
+			reader.skip((int) (start & 7));
+
+			int skip = BlockIndex.streamStart(length, first, streams);
+			boolean whole = skip == 0 && to == length;
+			byte[] decoded = from == skip ? out : new byte[to - skip];
+			int base = from == skip ? offset : 0;
+			for (int done = base, n; done < base + to - skip; done += n) {
+				n = table.decode(reader, decoded, done, base + to - skip);
+				if (n == 0)
+					throw new IOException("Truncated payload");
+			}
+			if (whole) {
+				if (reader.available != 0)
+					throw new IOException("Corrupt block index");
+				if (index.checksummed()) {
+					CRC32C crc = new CRC32C();
+					crc.update(decoded, base, length);
+					index.check(block, (int) crc.getValue());
+				}
+			}
+			if (decoded != out)
+				System.arraycopy(decoded, from - skip, out, offset, to - from);
+		}
+	}
+}
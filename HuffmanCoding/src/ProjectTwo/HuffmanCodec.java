@@ -0,0 +1,844 @@
+package ProjectTwo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Headless Huffman compressor and decompressor. It writes the block indexed
+ * version 3 .huff layout with a canonical code and reads every layout of
+ * earlier releases; see {@link HuffHeader}. Block indexed files are decoded
+ * block by block on several threads when they are read from a file or an
+ * array. Their ranges can also be read on their own through
+ * {@link #open(File)}, which decodes only the blocks a range falls in.
+ * <p>
+ * With {@link CodecOptions#withAdaptiveBlocks(int)} it writes the version 4
+ * layout instead, in one pass and with a code table per block where that pays
+ * off; see {@link AdaptiveBlocks}. Such files can be appended to with
+ * {@link #append(InputStream, File)}. With {@link CodecOptions#withAlphabet}
+ * set to pairs of bytes or words it writes the version 5 layout, coded on one
+ * thread; see {@link TokenCoder}. With
+ * {@link CodecOptions#withInterleavedStreams(boolean)} it writes the version 6
+ * layout, whose blocks are decoded as four streams at once. With
+ * {@link CodecOptions#withCodebook(Codebook)} it writes the version 7 layout in
+ * one pass, coded with a pre-trained table that the file names by its id.
+ * <p>
+ * Unless {@link CodecOptions#withChecksums(boolean)} turns them off, every
+ * file carries CRC32C checksums of its original bytes, computed while encoding
+ * and checked while decoding; a mismatch fails the call like any other
+ * corruption.
+ * <p>
+ * Every call times its phases into the {@link CodecMetrics} of the
+ * {@link CodecStats} it returns, and into {@code ProjectTwo.CodecPhase} and
+ * {@code ProjectTwo.CodecRun} Flight Recorder events.
+ * <p>
+ * A codec holds no mutable state; every call works on its own tree and
+ * buffers, so one instance can be shared by any number of threads.
+ */
+public final class HuffmanCodec {
+
+	private static final int BUFFER_SIZE = 64 * 1024; // Buffer size for streams and arrays
+
+	private final CodecOptions options; // Settings shared by every call
+
+	/**
+	 * Creates a codec with {@link CodecOptions#DEFAULT}.
+	 */
+	public HuffmanCodec() {
+		this(CodecOptions.DEFAULT);
+	}
+
+	/**
+	 * @param ioMode How files are read and written, or null to pick by size.
+	 */
+	public HuffmanCodec(IoMode ioMode) {
+		this(CodecOptions.DEFAULT.withIoMode(ioMode));
+	}
+
+	/**
+	 * @param options The settings of every call made through this codec.
+	 */
+	public HuffmanCodec(CodecOptions options) {
+		this.options = options;
+	}
+
+	/**
+	 * Compresses a file. The extension of the input file name is stored in the
+	 * output so that decompression can restore it.
+	 *
+	 * @param in  The file to compress.
+	 * @param out The .huff file to create or overwrite.
+	 * @return Statistics of the run.
+	 * @throws IOException If either file cannot be read or written.
+	 */
+	public CodecStats compress(File in, File out) throws IOException {
+		return compress(in, out, Progress.NONE);
+	}
+
+	/**
+	 * Compresses a file and reports its progress. If the call fails or is
+	 * cancelled, the partial output is deleted.
+	 *
+	 * @param in       The file to compress.
+	 * @param out      The .huff file to create or overwrite.
+	 * @param progress Receives the bytes read so far; it may cancel the call.
+	 * @return Statistics of the run.
+	 * @throws IOException If either file cannot be read or written, or the
+	 *                     progress cancels the call.
+	 */
+	public CodecStats compress(File in, File out, Progress progress) throws IOException {
+		try {
+			IoMode mode = options.ioModeFor(in.length());
+			if (options.getCodebook() != null) {
+				Metrics metrics = new Metrics();
+				ProgressMeter meter = new ProgressMeter(progress, in.length());
+				CountingOutputStream counting;
+				HuffHeader header;
+				try (OutputStream target = mode.openSink(out.toPath())) {
+					counting = new CountingOutputStream(target);
+					header = compressWithCodebook(() -> meter.wrap(mode.openSource(in.toPath())), in.length(),
+							extensionOf(in.getName()), counting, mode.bufferSize, metrics);
+				}
+				try (FileChannel target = FileChannel.open(out.toPath(), StandardOpenOption.WRITE)) {
+					ByteBuffer bits = ByteBuffer.wrap(header.payloadBitsBytes());
+					while (bits.hasRemaining())
+						target.write(bits, header.payloadBitsOffset() + bits.position());
+				}
+				return new CodecStats(header.originalLength, counting.count, header.extension, header.tableLength,
+						header.table, header.codes.toNodes(null),
+						metrics.finish("compress", header.originalLength, counting.count));
+			}
+			try (OutputStream target = mode.openSink(out.toPath())) {
+				return compress(in.toPath(), extensionOf(in.getName()), target, mode, progress);
+			}
+		} catch (IOException | RuntimeException e) {
+			deletePartial(out, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Compresses a file into a stream in the layout the options select.
+	 *
+	 * @param in        The file to compress.
+	 * @param extension The extension to store in the header, may be empty.
+	 * @param target    Receives the compressed data; it is not closed.
+	 * @param mode      How the file is read.
+	 * @param progress  Receives the bytes read so far; it may cancel the call.
+	 * @return Statistics of the run.
+	 * @throws IOException If reading or writing fails, or the progress cancels
+	 *                     the call.
+	 */
+	CodecStats compress(Path in, String extension, OutputStream target, IoMode mode, Progress progress)
+			throws IOException {
+		Metrics metrics = new Metrics();
+		long length = Files.size(in);
+		if (options.getAdaptiveBlockSize() > 0) {
+			ProgressMeter meter = new ProgressMeter(progress, length);
+			try (ByteSource source = meter.wrap(mode.openSource(in))) {
+				return AdaptiveBlocks.encode(source, extension, target, options, mode.bufferSize, metrics);
+			}
+		}
+		if (options.isSinglePass()) {
+			ProgressMeter meter = new ProgressMeter(progress, length);
+			try (ByteSource source = meter.wrap(mode.openSource(in))) {
+				return compressOnePass(source, extension, target, mode.bufferSize, metrics);
+			}
+		}
+
+		// The input is read twice, once for the histogram and once to encode it
+		ProgressMeter meter = new ProgressMeter(progress, 2 * length);
+		if (options.getAlphabet() != Alphabet.BYTES)
+			return TokenCoder.encode(() -> meter.wrap(mode.openSource(in)), extension, target, options,
+					mode.bufferSize, metrics);
+		long[] freq;
+		try (Metrics.Span span = metrics.begin(Phase.HISTOGRAM)) {
+			freq = Histogram.count(in, mode, options.getThreads(), meter);
+			span.in(length);
+		}
+		return compress(() -> meter.wrap(mode.openSource(in)), freq, extension, target, mode.bufferSize, metrics);
+	}
+
+	/**
+	 * Compresses a stream of any length, reading it once. A stream that ends
+	 * within one block of {@link BlockIndex#BLOCK_SIZE} bytes is coded with one
+	 * table, as an array would be; a longer one is coded as it comes in the
+	 * adaptive layout, see {@link CodecOptions#withSinglePass(boolean)}, so
+	 * memory use does not grow with it. Only with an alphabet larger than
+	 * bytes, a codebook or interleaved streams is the whole stream buffered in
+	 * memory first. The output stream is flushed but not closed.
+	 *
+	 * @param in        The data to compress.
+	 * @param out       Receives the compressed data.
+	 * @param extension The extension to store in the header, may be empty.
+	 * @return Statistics of the run.
+	 * @throws IOException If reading or writing fails.
+	 */
+	public CodecStats compress(InputStream in, OutputStream out, String extension) throws IOException {
+		Metrics metrics = new Metrics();
+		if (options.getAlphabet() != Alphabet.BYTES || options.getCodebook() != null || options.isInterleaved())
+			return compress(ByteBuffer.wrap(in.readAllBytes()), extension, out, metrics);
+		ByteSource source = ByteSource.of(in, BUFFER_SIZE);
+		if (options.getAdaptiveBlockSize() > 0)
+			return AdaptiveBlocks.encode(source, extension, out, options, BUFFER_SIZE, metrics);
+		return compressOnePass(source, extension, out, BUFFER_SIZE, metrics);
+	}
+
+	/**
+	 * Compresses a byte array.
+	 *
+	 * @param data      The data to compress.
+	 * @param extension The extension to store in the header, may be empty.
+	 * @return The compressed data.
+	 */
+	public byte[] compress(byte[] data, String extension) {
+		return compress(ByteBuffer.wrap(data), extension).array();
+	}
+
+	/**
+	 * Compresses the remaining bytes of a buffer, heap, direct or mapped,
+	 * without copying them or changing its position.
+	 *
+	 * @param data      The data to compress.
+	 * @param extension The extension to store in the header, may be empty.
+	 * @return A heap buffer holding the compressed data.
+	 */
+	public ByteBuffer compress(ByteBuffer data, String extension) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.remaining() / 2 + 64);
+		try {
+			if (options.getCodebook() != null) {
+				Metrics metrics = new Metrics();
+				byte[] bytes = compressWithCodebook(data, extension, metrics);
+				metrics.finish("compress", data.remaining(), bytes.length);
+				return ByteBuffer.wrap(bytes);
+			}
+			compress(data, extension, out, new Metrics());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return ByteBuffer.wrap(out.toByteArray());
+	}
+
+	private CodecStats compress(ByteBuffer data, String extension, OutputStream out, Metrics metrics)
+			throws IOException {
+		Codebook codebook = options.getCodebook();
+		if (codebook != null) {
+			byte[] bytes = compressWithCodebook(data, extension, metrics);
+			out.write(bytes);
+			out.flush();
+			return new CodecStats(data.remaining(), bytes.length, extension, codebook.tableLength, codebook.table,
+					codebook.codes.toNodes(null), metrics.finish("compress", data.remaining(), bytes.length));
+		}
+		if (options.getAdaptiveBlockSize() > 0)
+			return AdaptiveBlocks.encode(ByteSource.of(data), extension, out, options, BUFFER_SIZE, metrics);
+		if (options.getAlphabet() != Alphabet.BYTES)
+			return TokenCoder.encode(() -> ByteSource.of(data), extension, out, options, BUFFER_SIZE, metrics);
+		long[] freq;
+		try (Metrics.Span span = metrics.begin(Phase.HISTOGRAM)) {
+			freq = Histogram.count(data, options.getThreads());
+			span.in(data.remaining());
+		}
+		return compress(() -> ByteSource.of(data), freq, extension, out, BUFFER_SIZE, metrics);
+	}
+
+	/**
+	 * Codes an input read once. Up to one block of it is held in memory; if the
+	 * input ends there it is coded with one table, otherwise it is coded as
+	 * adaptive blocks of that size, starting with the bytes held.
+	 */
+	private CodecStats compressOnePass(ByteSource source, String extension, OutputStream target, int bufferSize,
+			Metrics metrics) throws IOException {
+		byte[] head = new byte[0];
+		int filled = 0;
+		ByteBuffer pending; // The chunk after the bytes held, null if the input ended
+		while ((pending = source.next()) != null && filled < BlockIndex.BLOCK_SIZE) {
+			int n = Math.min(pending.remaining(), BlockIndex.BLOCK_SIZE - filled);
+			if (filled + n > head.length)
+				head = Arrays.copyOf(head, Math.min(BlockIndex.BLOCK_SIZE, Math.max(2 * head.length, filled + n)));
+			pending.get(head, filled, n);
+			filled += n;
+			if (pending.hasRemaining())
+				break;
+		}
+		if (pending == null)
+			return compress(ByteBuffer.wrap(head, 0, filled), extension, target, metrics);
+
+		byte[] held = head;
+		int heldLength = filled;
+		ByteBuffer next = pending;
+		ByteSource rest = new ByteSource() {
+			private int chunk; // Number of chunks handed out
+
+			@Override
+			public ByteBuffer next() throws IOException {
+				chunk++;
+				return chunk == 1 ? ByteBuffer.wrap(held, 0, heldLength) : chunk == 2 ? next : source.next();
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		return AdaptiveBlocks.encode(rest, extension, target, options.withAdaptiveBlocks(BlockIndex.BLOCK_SIZE),
+				bufferSize, metrics);
+	}
+
+	/**
+	 * Appends data to a .huff file of the adaptive mode, without decoding what
+	 * the file holds: the data is coded into new blocks behind the old ones and
+	 * only the index at the end of the file is written again, the old one
+	 * staying valid until the new one is complete. The blocks are as
+	 * large as {@link CodecOptions#withAdaptiveBlocks(int)} sets, or
+	 * {@link BlockIndex#BLOCK_SIZE} bytes; files of other versions code all of
+	 * their data with one table and cannot be appended to.
+	 *
+	 * @param in   The data to append; it is read to its end but not closed.
+	 * @param file A version 4 .huff file, as written in the adaptive mode.
+	 * @return Statistics of the run: the bytes appended and how much the file
+	 *         grew.
+	 * @throws IOException If the file cannot be accessed, is corrupt or is not
+	 *                     of version 4, or reading the data fails. The file
+	 *                     then holds the data it held before.
+	 * @throws IllegalArgumentException If the options code another alphabet
+	 *                                  than bytes, interleaved streams or with a
+	 *                                  codebook.
+	 */
+	public CodecStats append(InputStream in, File file) throws IOException {
+		Metrics metrics = new Metrics();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			HuffHeader header;
+			try (Metrics.Span span = metrics.begin(Phase.HEADER)) {
+				header = HuffHeader.read(new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel))),
+						options.getCodebook(), options.getTableCache());
+				span.in(header.size());
+			}
+			if (header.version != HuffHeader.ADAPTIVE_VERSION)
+				throw new IOException("Only files of the adaptive mode can be appended to, not version "
+						+ header.version);
+			CodecOptions blocks = options.getAdaptiveBlockSize() > 0 ? options
+					: options.withAdaptiveBlocks(BlockIndex.BLOCK_SIZE);
+			return AdaptiveBlocks.append(header, channel, ByteSource.of(in, BUFFER_SIZE), blocks, BUFFER_SIZE,
+					metrics);
+		}
+	}
+
+	/**
+	 * Opens a .huff file to read ranges of its original data, decoding only the
+	 * blocks they fall in; see {@link HuffReader}.
+	 *
+	 * @param in A .huff file of any version with a block index: 2, 3, 4, 6 or
+	 *           7.
+	 * @return The reader, to be closed by the caller.
+	 * @throws IOException If the file cannot be read, is corrupt or has no
+	 *                     block index.
+	 */
+	public HuffReader open(File in) throws IOException {
+		return HuffReader.open(in, options);
+	}
+
+	/**
+	 * Decompresses a .huff file.
+	 *
+	 * @param in  The .huff file to read.
+	 * @param out The file to create or overwrite with the original data.
+	 * @return Statistics of the run.
+	 * @throws IOException If either file cannot be accessed or the input is
+	 *                     corrupt.
+	 */
+	public CodecStats decompress(File in, File out) throws IOException {
+		return decompress(in, out, Progress.NONE);
+	}
+
+	/**
+	 * Decompresses a .huff file and reports its progress. If the call fails or
+	 * is cancelled, the partial output is deleted.
+	 *
+	 * @param in       The .huff file to read.
+	 * @param out      The file to create or overwrite with the original data.
+	 * @param progress Receives the bytes decoded so far, or read so far from a
+	 *                 version 1 or 5 file; it may cancel the call.
+	 * @return Statistics of the run.
+	 * @throws IOException If either file cannot be accessed, the input is
+	 *                     corrupt or the progress cancels the call.
+	 */
+	public CodecStats decompress(File in, File out, Progress progress) throws IOException {
+		try {
+			Metrics metrics = new Metrics();
+			HuffHeader header;
+			try (Metrics.Span span = metrics.begin(Phase.HEADER)) {
+				header = readHeader(in, options);
+				span.in(header.size());
+			}
+			if (header.version == 1 || header.version == HuffHeader.TOKEN_VERSION) {
+				IoMode mode = options.ioModeFor(in.length());
+				ProgressMeter meter = new ProgressMeter(progress, in.length());
+				try (InputStream source = meter.wrap(mode.openSource(in.toPath()).asInputStream());
+						OutputStream target = mode.openSink(out.toPath())) {
+					return decompress(source, target, mode.bufferSize, metrics);
+				}
+			}
+
+			// The output is sized up front and every block is written to its place
+			try (FileChannel source = FileChannel.open(in.toPath(), StandardOpenOption.READ);
+					RandomAccessFile target = new RandomAccessFile(out, "rw")) {
+				if (header.version == HuffHeader.ADAPTIVE_VERSION)
+					return AdaptiveBlocks.decode(header, source, target, options.getThreads(), progress, metrics);
+				ParallelDecoder.decode(source, target, header, options.getThreads(),
+						new ProgressMeter(progress, header.originalLength), metrics);
+			}
+			return new CodecStats(in.length(), header.originalLength, header.extension, header.tableLength,
+					header.table, header.codes.toNodes(null),
+					metrics.finish("decompress", in.length(), header.originalLength));
+		} catch (IOException | RuntimeException e) {
+			deletePartial(out, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Decompresses a stream. The payload is read, decoded and written through
+	 * fixed size buffers, so memory use does not grow with the input. The
+	 * output stream is flushed but not closed.
+	 *
+	 * @param source The compressed data.
+	 * @param target Receives the original data.
+	 * @return Statistics of the run.
+	 * @throws IOException If reading or writing fails or the input is corrupt.
+	 */
+	public CodecStats decompress(InputStream source, OutputStream target) throws IOException {
+		return decompress(source, target, BUFFER_SIZE, new Metrics());
+	}
+
+	private CodecStats decompress(InputStream source, OutputStream target, int bufferSize, Metrics metrics)
+			throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(source, bufferSize));
+
+		HuffHeader header;
+		try (Metrics.Span span = metrics.begin(Phase.HEADER)) {
+			header = HuffHeader.read(in, options.getCodebook(), options.getTableCache());
+			span.in(header.size());
+		}
+		return decompress(header, in, target, bufferSize, metrics);
+	}
+
+	/**
+	 * Decodes what follows a header that has been read already.
+	 *
+	 * @param header Describes the data.
+	 * @param in     The stream, positioned at the first byte after the header.
+	 * @param target Receives the original data; it is flushed but not closed.
+	 * @return Statistics of the run, counting the header at its written size.
+	 * @throws IOException If reading or writing fails or the input is corrupt.
+	 */
+	static CodecStats decompress(HuffHeader header, DataInputStream in, OutputStream target, int bufferSize,
+			Metrics metrics) throws IOException {
+		if (header.version == HuffHeader.ADAPTIVE_VERSION)
+			return AdaptiveBlocks.decode(header, in, target, bufferSize, metrics);
+		if (header.version == HuffHeader.TOKEN_VERSION)
+			return TokenCoder.decode(header, in, target, bufferSize, metrics);
+		DecodeTable table;
+		try (Metrics.Span span = metrics.begin(Phase.CODES)) {
+			table = header.decodeTable();
+			span.in((header.tableLength + 7) >>> 3);
+		}
+		BitReader reader = header.version == 1 ? new BitReader(in, bufferSize)
+				: new BitReader(in, bufferSize, header.payloadBits);
+		if (header.codes.maxLength() == 0 && reader.available != 0)
+			throw new IOException("Data without a Huffman tree");
+
+		// Only the two fixed buffers are held, whatever the size of the file.
+		// Decoding stops at every block end, so that the checksum of each block
+		// is computed as it goes by and checked once the index is read.
+		byte[] buffer = new byte[bufferSize];
+		long lengthAfter = 0;
+		CRC32C crc = header.checksummed ? new CRC32C() : null;
+		int[] checksums = new int[16]; // Of the blocks decoded so far
+		int blocks = 0;
+		try (Metrics.Span span = metrics.begin(Phase.DECODE)) {
+			while (reader.available > 0) {
+				int end = buffer.length;
+				if (crc != null) {
+					long blockLeft = BlockIndex.BLOCK_SIZE - lengthAfter % BlockIndex.BLOCK_SIZE;
+					end = (int) Math.min(end, blockLeft);
+				}
+				int decoded = table.decode(reader, buffer, 0, end);
+				target.write(buffer, 0, decoded);
+				if (crc != null) {
+					crc.update(buffer, 0, decoded);
+					if ((lengthAfter + decoded) % BlockIndex.BLOCK_SIZE == 0 || reader.available == 0) {
+						if (blocks == checksums.length)
+							checksums = Arrays.copyOf(checksums, blocks * 2);
+						checksums[blocks++] = (int) crc.getValue();
+						crc.reset();
+					}
+				}
+				lengthAfter += decoded;
+			}
+			target.flush();
+			span.in(reader.bytesRead()).out(lengthAfter);
+		}
+		long lengthBefore = header.size() + reader.bytesRead();
+
+		if (header.version >= 2) {
+			BlockIndex index;
+			try (Metrics.Span span = metrics.begin(Phase.INDEX)) {
+				index = BlockIndex.read(in, header);
+				span.in(index.bytes());
+			}
+			if (lengthAfter != header.originalLength)
+				throw new IOException("Decoded " + lengthAfter + " bytes instead of " + header.originalLength);
+			if (crc != null && index.size() != blocks)
+				throw new IOException("Corrupt block index");
+			for (int i = 0; i < blocks; i++)
+				index.check(i, checksums[i]);
+			lengthBefore += index.bytes();
+		}
+
+		return new CodecStats(lengthBefore, lengthAfter, header.extension, header.tableLength, header.table,
+				header.codes.toNodes(null), metrics.finish("decompress", lengthBefore, lengthAfter));
+	}
+
+	/**
+	 * Decompresses a byte array.
+	 *
+	 * @param data The compressed data.
+	 * @return The original data.
+	 * @throws IllegalArgumentException If the data is corrupt.
+	 */
+	public byte[] decompress(byte[] data) {
+		try {
+			HuffHeader header = HuffHeader.read(new DataInputStream(new ByteArrayInputStream(data)),
+					options.getCodebook(), options.getTableCache());
+			if (header.version >= 2 && header.version != HuffHeader.TOKEN_VERSION) {
+				Metrics metrics = new Metrics();
+				byte[] out;
+				try (Metrics.Span span = metrics.begin(Phase.DECODE)) {
+					out = header.version == HuffHeader.ADAPTIVE_VERSION
+							? AdaptiveBlocks.decode(header, data, options.getThreads())
+							: ParallelDecoder.decode(data, header, options.getThreads());
+					span.in(data.length).out(out.length);
+				}
+				metrics.finish("decompress", data.length, out.length);
+				return out;
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 2);
+			decompress(new ByteArrayInputStream(data), out);
+			return out.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Decompresses the remaining bytes of a buffer without changing its position.
+	 *
+	 * @param data The compressed data.
+	 * @return A heap buffer holding the original data.
+	 * @throws IllegalArgumentException If the data is corrupt.
+	 */
+	public ByteBuffer decompress(ByteBuffer data) {
+		byte[] bytes = new byte[data.remaining()];
+		data.duplicate().get(bytes);
+		return ByteBuffer.wrap(decompress(bytes));
+	}
+
+	/**
+	 * Reads only the stored extension of a .huff file, so that callers can name
+	 * the output before decompressing.
+	 *
+	 * @param in The .huff file.
+	 * @return The extension without the dot, may be empty.
+	 * @throws IOException If the file cannot be read or is not a .huff file.
+	 */
+	public String readExtension(File in) throws IOException {
+		return readHeader(in, options).extension;
+	}
+
+	/**
+	 * Deletes the output of a failed call; a failure to delete is added to the
+	 * original exception.
+	 */
+	private static void deletePartial(File out, Exception failure) {
+		try {
+			Files.deleteIfExists(out.toPath());
+		} catch (IOException e) {
+			failure.addSuppressed(e);
+		}
+	}
+
+	private static HuffHeader readHeader(File in, CodecOptions options) throws IOException {
+		try (DataInputStream source = new DataInputStream(new BufferedInputStream(new FileInputStream(in)))) {
+			return HuffHeader.read(source, options.getCodebook(), options.getTableCache());
+		}
+	}
+
+	/**
+	 * Writes the header and encodes the input in a second pass.
+	 *
+	 * @param source Opens the input for the encoding pass.
+	 * @param freq   Frequency of each byte value in the input.
+	 */
+	private CodecStats compress(Source source, long[] freq, String extension, OutputStream target, int bufferSize,
+			Metrics metrics) throws IOException {
+		long lengthBefore = 0;
+		for (long f : freq)
+			lengthBefore += f;
+
+		// Only the code lengths come from the tree; the codes themselves are
+		// canonical, so the header need not store the tree. Inputs with the same
+		// histogram share the code. Both phases count the input the histogram
+		// covers
+		CodeTable table;
+		try (Metrics.Span span = metrics.begin(Phase.TREE)) {
+			table = options.getTableCache().codes(freq, options.getMaxCodeLength());
+			span.in(lengthBefore);
+		}
+		Node[] nodes;
+		try (Metrics.Span span = metrics.begin(Phase.CODES)) {
+			nodes = table.toNodes(freq);
+			span.in(lengthBefore);
+		}
+
+		CountingOutputStream counting = new CountingOutputStream(target);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(counting, 512));
+		HuffHeader header;
+		long payloadBits = 0;
+		try (Metrics.Span span = metrics.begin(Phase.HEADER)) {
+			// The payload length follows from the histogram, so it goes in front of
+			// the payload and readers know where it ends without a padding byte
+			for (int i = 0; i < 256; i++)
+				payloadBits += freq[i] * table.lengths[i];
+			header = HuffHeader.of(extension, lengthBefore, payloadBits, table, options.isInterleaved(),
+					options.isChecksums());
+			header.write(out);
+			out.flush();
+			span.out(counting.count);
+		}
+
+		writePayload(source, table, lengthBefore, payloadBits, counting, bufferSize, metrics);
+
+		return new CodecStats(lengthBefore, counting.count, extension, header.tableLength, header.table, nodes,
+				metrics.finish("compress", lengthBefore, counting.count));
+	}
+
+	/**
+	 * Encodes the input with a given code and writes the payload followed by
+	 * its block index.
+	 *
+	 * @param source      Opens the input for the encoding pass.
+	 * @param length      Number of bytes counted in the first pass, or the
+	 *                    length of the input.
+	 * @param payloadBits Length of the encoded data in bits, as written in the
+	 *                    header, or -1 if it is not known yet.
+	 * @param target      Receives the payload and the index.
+	 * @return The length of the encoded data in bits.
+	 */
+	long writePayload(Source source, CodeTable table, long length, long payloadBits, CountingOutputStream target,
+			int bufferSize, Metrics metrics) throws IOException {
+		// Small inputs need no full size buffer
+		BitWriter writer = new BitWriter(target, (int) Math.min(bufferSize, length + 64));
+		// Small inputs coded with a codebook leave their index to the header
+		BlockIndex index = options.getCodebook() != null && length <= BlockIndex.BLOCK_SIZE
+				? BlockIndex.implied(options.isChecksums())
+				: new BlockIndex(options.isInterleaved() ? BlockIndex.STREAMS : 1, options.isChecksums());
+		try (Metrics.Span span = metrics.begin(Phase.ENCODE)) {
+			long payloadStart = target.count;
+			try (ByteSource in = source.open()) {
+				if (options.getThreads() > 1 && length >= ParallelEncoder.PARALLEL_THRESHOLD)
+					ParallelEncoder.encode(in, table, writer, options.getThreads(), index);
+				else
+					encode(in, table, writer, length, index);
+			}
+			if (payloadBits >= 0 && writer.bitsWritten() != payloadBits)
+				throw new IOException("Input changed between the two passes");
+			int blocks = index.size();
+			if (payloadBits < 0 && (blocks == 0 ? 0 : index.position(blocks - 1) + index.length(blocks - 1)) != length)
+				throw new IOException("Input changed while it was read");
+			payloadBits = writer.bitsWritten();
+			writer.finish();
+			span.in(length).out(target.count - payloadStart);
+		}
+
+		try (Metrics.Span span = metrics.begin(Phase.INDEX)) {
+			long indexStart = target.count;
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 512));
+			index.write(out);
+			out.flush();
+			span.out(target.count - indexStart);
+		}
+		return payloadBits;
+	}
+
+	/**
+	 * Writes an input coded with the codebook of the options, reading it once.
+	 * Its payload length is only known once the payload is written, so the
+	 * header goes out with 0 in its place; the caller writes the length over it
+	 * at {@link HuffHeader#payloadBitsOffset()}.
+	 *
+	 * @param source Opens the input.
+	 * @param length Length of the input in bytes.
+	 * @return The header as it should read.
+	 */
+	private HuffHeader compressWithCodebook(Source source, long length, String extension,
+			CountingOutputStream target, int bufferSize, Metrics metrics) throws IOException {
+		Codebook codebook = options.getCodebook();
+		try (Metrics.Span span = metrics.begin(Phase.HEADER)) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 64));
+			HuffHeader.codebook(extension, length, 0, codebook, options.isChecksums()).write(out);
+			out.flush();
+			span.out(target.count);
+		}
+		long payloadBits = writePayload(source, codebook.codes, length, -1, target, bufferSize, metrics);
+		return HuffHeader.codebook(extension, length, payloadBits, codebook, options.isChecksums());
+	}
+
+	/**
+	 * Codes a buffer with the codebook of the options.
+	 *
+	 * @return The whole .huff file.
+	 */
+	private byte[] compressWithCodebook(ByteBuffer data, String extension, Metrics metrics) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.remaining() / 2 + 64);
+		HuffHeader header = compressWithCodebook(() -> ByteSource.of(data), data.remaining(), extension,
+				new CountingOutputStream(buffer), BUFFER_SIZE, metrics);
+		byte[] bytes = buffer.toByteArray();
+		byte[] bits = header.payloadBitsBytes();
+		System.arraycopy(bits, 0, bytes, (int) header.payloadBitsOffset(), bits.length);
+		return bytes;
+	}
+
+	/**
+	 * Encodes a whole source on the calling thread, starting a new block every
+	 * {@link BlockIndex#BLOCK_SIZE} bytes and noting where the streams of each
+	 * block start and the checksum of its bytes if the index has them.
+	 *
+	 * @param length Number of bytes counted in the first pass.
+	 */
+	private static void encode(ByteSource in, CodeTable table, BitWriter writer, long length, BlockIndex index)
+			throws IOException {
+		byte[] scratch = new byte[(int) Math.min(BUFFER_SIZE, length + 1)];
+		int streams = index.streams();
+		int[] streamOffsets = new int[streams]; // Start of each stream of the current block
+		CRC32C crc = index.checksummed() ? new CRC32C() : null; // Of the current block
+		long encoded = 0;
+		long blockStart = 0; // Bit offset of the current block
+		int blockLength = 0; // Bytes of the current block
+		int blockDone = 0; // Bytes of the current block encoded so far
+		int stream = 0; // Stream the next byte belongs to
+		ByteBuffer chunk;
+		while ((chunk = in.next()) != null) {
+			while (chunk.hasRemaining()) {
+				if (blockDone == blockLength) {
+					if (encoded >= length)
+						throw new IOException("Input changed between the two passes");
+					blockStart = writer.bitsWritten();
+					blockLength = (int) Math.min(BlockIndex.BLOCK_SIZE, length - encoded);
+					blockDone = 0;
+					stream = 0;
+					if (crc != null)
+						crc.reset();
+				}
+				while (stream < streams && blockDone == BlockIndex.streamStart(blockLength, stream, streams))
+					streamOffsets[stream++] = (int) (writer.bitsWritten() - blockStart);
+				int boundary = BlockIndex.streamStart(blockLength, stream, streams);
+				int n = Math.min(chunk.remaining(), boundary - blockDone);
+				ByteBuffer slice = chunk.slice(chunk.position(), n);
+				encode(slice, table, writer, scratch);
+				if (crc != null)
+					crc.update(slice);
+				chunk.position(chunk.position() + n);
+				blockDone += n;
+				encoded += n;
+				if (blockDone == blockLength) {
+					// Streams left empty by a block shorter than their count start at its end
+					while (stream < streams)
+						streamOffsets[stream++] = (int) (writer.bitsWritten() - blockStart);
+					index.add(blockStart, blockLength, streamOffsets, crc == null ? 0 : (int) crc.getValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Appends the codes of the remaining bytes of a chunk to the bit writer.
+	 */
+	private static void encode(ByteBuffer chunk, CodeTable table, BitWriter writer, byte[] scratch)
+			throws IOException {
+		if (chunk.hasArray())
+			table.encode(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining(), writer);
+		else {
+			for (int i = chunk.position(), n; i < chunk.limit(); i += n) {
+				n = Math.min(scratch.length, chunk.limit() - i);
+				chunk.get(i, scratch, 0, n);
+				table.encode(scratch, 0, n, writer);
+			}
+		}
+	}
+
+	/**
+	 * @return The part of a file name after its last dot, or an empty string.
+	 */
+	static String extensionOf(String fileName) {
+		int dot = fileName.lastIndexOf('.');
+		return dot < 0 ? "" : fileName.substring(dot + 1);
+	}
+
+	/**
+	 * @return The part of a file name before its last dot.
+	 */
+	static String baseNameOf(String fileName) {
+		int dot = fileName.lastIndexOf('.');
+		return dot < 0 ? fileName : fileName.substring(0, dot);
+	}
+
+	/**
+	 * Opens the input again for every pass over it.
+	 */
+	interface Source {
+		ByteSource open() throws IOException;
+	}
+
+	/**
+	 * Counts the bytes written through it.
+	 */
+	static final class CountingOutputStream extends FilterOutputStream {
+		long count;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
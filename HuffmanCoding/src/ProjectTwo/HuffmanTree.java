@@ -0,0 +1,202 @@
+package ProjectTwo;
+
+import java.util.Arrays;
+
+/**
+ * Builds Huffman trees and parses the trees stored by version 1 and 2 files,
+ * both as {@link FlatTree}s, and computes length limited codes. Every method
+ * works only on its arguments, so any number of trees can be built side by
+ * side on different threads.
+ */
+final class HuffmanTree {
+
+	// Reused by every code length computation of a thread over the byte alphabet
+	private static final ThreadLocal<FlatTree> BYTE_TREE = ThreadLocal.withInitial(() -> new FlatTree(256));
+
+	private HuffmanTree() {
+	}
+
+	/**
+	 * Builds the Huffman tree for a frequency table.
+	 *
+	 * @param freq Frequency of each symbol of the alphabet.
+	 * @return The tree, empty if every frequency is zero.
+	 */
+	static FlatTree build(long[] freq) {
+		FlatTree tree = new FlatTree(freq.length);
+		tree.build(freq);
+		return tree;
+	}
+
+	/**
+	 * Computes the code lengths for a frequency table: those of the Huffman tree,
+	 * or the best ones within the limit if the tree is deeper.
+	 *
+	 * @param freq      Frequency of each symbol of the alphabet.
+	 * @param maxLength Longest code allowed.
+	 * @return The code length of each symbol, 0 for symbols that do not occur.
+	 */
+	static int[] codeLengths(long[] freq, int maxLength) {
+		FlatTree tree = freq.length == 256 ? BYTE_TREE.get() : new FlatTree(freq.length);
+		tree.build(freq);
+		int[] lengths = new int[freq.length];
+		tree.lengths(lengths);
+		if (Arrays.stream(lengths).max().orElse(0) > maxLength)
+			lengths = limitedCodeLengths(freq, maxLength);
+		return lengths;
+	}
+
+	/**
+	 * Sorts items by a key with a stable radix sort, one byte of the key per
+	 * pass; passes over a byte that is the same in every key are skipped.
+	 *
+	 * @param keys  The key of every item, not negative.
+	 * @param items The items to sort; they are reordered in place or copied.
+	 * @return The items in ascending order of their keys, equal keys in their
+	 *         original order.
+	 */
+	static int[] sortByKey(long[] keys, int[] items) {
+		return sortByKey(keys, items, items.length, new int[items.length], new int[257]);
+	}
+
+	/**
+	 * Sorts the first items of an array like {@link #sortByKey(long[], int[])},
+	 * without allocating.
+	 *
+	 * @param count  Number of items to sort.
+	 * @param buffer Scratch space for as many items.
+	 * @param start  Scratch space for 257 counters.
+	 * @return The items or the buffer, whichever holds the sorted items.
+	 */
+	static int[] sortByKey(long[] keys, int[] items, int count, int[] buffer, int[] start) {
+		long any = 0, all = -1;
+		for (int i = 0; i < count; i++) {
+			any |= keys[items[i]];
+			all &= keys[items[i]];
+		}
+		for (int shift = 0; shift < 64; shift += 8) {
+			if (((any ^ all) >>> shift & 0xFF) == 0)
+				continue;
+			Arrays.fill(start, 0);
+			for (int i = 0; i < count; i++)
+				start[(int) (keys[items[i]] >>> shift & 0xFF) + 1]++;
+			for (int b = 0; b < 256; b++)
+				start[b + 1] += start[b];
+			for (int i = 0; i < count; i++)
+				buffer[start[(int) (keys[items[i]] >>> shift & 0xFF)]++] = items[i];
+			int[] sorted = buffer;
+			buffer = items;
+			items = sorted;
+		}
+		return items;
+	}
+
+	/**
+	 * @return The symbols of nonzero frequency in ascending order.
+	 */
+	private static int[] symbolsOf(long[] freq) {
+		int n = 0;
+		for (long f : freq) {
+			if (f != 0)
+				n++;
+		}
+		int[] symbols = new int[n];
+		for (int symbol = 0, i = 0; i < n; symbol++) {
+			if (freq[symbol] != 0)
+				symbols[i++] = symbol;
+		}
+		return symbols;
+	}
+
+	/**
+	 * Computes optimal code lengths of at most a given length with the package
+	 * merge algorithm. List 0 holds the symbols sorted by frequency; every
+	 * further list merges the symbols with packages made of consecutive pairs
+	 * of the list before. The first 2n - 2 items of the last list, expanded
+	 * back through the lists, contain every symbol once per bit of its code.
+	 *
+	 * @param freq      Frequency of each symbol of the alphabet.
+	 * @param maxLength Longest code allowed.
+	 * @return The code length of each symbol, 0 for symbols that do not occur.
+	 * @throws IllegalArgumentException If the symbols do not fit in codes of
+	 *                                  that length.
+	 */
+	static int[] limitedCodeLengths(long[] freq, int maxLength) {
+		int[] lengths = new int[freq.length];
+		// Sorted by frequency, ties by value, so that equal inputs give equal codes
+		int[] symbols = sortByKey(freq, symbolsOf(freq));
+		int n = symbols.length;
+		if (n == 0)
+			return lengths;
+		if (n == 1) {
+			lengths[symbols[0]] = 1;
+			return lengths;
+		}
+		if (maxLength < 31 && 1 << maxLength < n)
+			throw new IllegalArgumentException(n + " symbols do not fit in codes of " + maxLength + " bits");
+
+		long[] leaves = new long[n];
+		for (int i = 0; i < n; i++)
+			leaves[i] = freq[symbols[i]];
+
+		// Only whether each item of a list is a symbol or a package is kept; the
+		// symbols of a list appear in the same order as in list 0
+		boolean[][] isLeaf = new boolean[maxLength][];
+		isLeaf[0] = new boolean[n];
+		Arrays.fill(isLeaf[0], true);
+		long[] previous = leaves;
+		for (int level = 1; level < maxLength; level++) {
+			int packages = previous.length / 2;
+			long[] merged = new long[n + packages];
+			boolean[] leaf = new boolean[n + packages];
+			for (int i = 0, j = 0, k = 0; k < merged.length; k++) {
+				long pack = j < packages ? previous[2 * j] + previous[2 * j + 1] : Long.MAX_VALUE;
+				if (i < n && leaves[i] <= pack) {
+					merged[k] = leaves[i++];
+					leaf[k] = true;
+				} else {
+					merged[k] = pack;
+					j++;
+				}
+			}
+			isLeaf[level] = leaf;
+			previous = merged;
+		}
+
+		for (int level = maxLength - 1, take = 2 * n - 2; level >= 0; level--) {
+			int leafCount = 0;
+			for (int i = 0; i < take; i++) {
+				if (isLeaf[level][i])
+					lengths[symbols[leafCount++]]++;
+			}
+			take = 2 * (take - leafCount);
+		}
+		return lengths;
+	}
+
+	/**
+	 * Rebuilds a tree of the byte alphabet from its post order serialization;
+	 * see {@link FlatTree#parse(CharSequence, int)}.
+	 *
+	 * @return The tree, empty if the length is zero.
+	 * @throws IllegalArgumentException If the bits do not describe a tree.
+	 */
+	static FlatTree parse(CharSequence bits, int length) {
+		FlatTree tree = new FlatTree(256);
+		tree.parse(bits, length);
+		return tree;
+	}
+
+	/**
+	 * Converts a byte into a binary string of 8 bits.
+	 *
+	 * @param b Byte to convert.
+	 * @return Binary string representation of the byte.
+	 */
+	static String toBinaryString(byte b) {
+		StringBuilder binaryString = new StringBuilder(8);
+		for (int i = 7; i >= 0; i--)
+			binaryString.append((b >> i) & 1);
+		return binaryString.toString();
+	}
+}
@@ -0,0 +1,204 @@
+package ProjectTwo;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * How the codec reads and writes files. Every mode reads through a
+ * {@link FileChannel} in large chunks and writes through one large buffer, so
+ * the number of system calls does not grow with the number of bytes.
+ */
+public enum IoMode {
+
+	/**
+	 * Reads into a heap array. Cheapest to set up, so best for small files.
+	 */
+	HEAP(64 * 1024) {
+		@Override
+		ByteSource openSegment(FileChannel channel, long position, long length) {
+			return new ChannelSource(channel, position, length, ByteBuffer.allocate(bufferSize));
+		}
+	},
+
+	/**
+	 * Reads into a direct buffer, which the channel fills without the extra copy
+	 * it makes for heap buffers.
+	 */
+	DIRECT(1 << 20) {
+		@Override
+		ByteSource openSegment(FileChannel channel, long position, long length) {
+			return new ChannelSource(channel, position, length, ByteBuffer.allocateDirect(bufferSize));
+		}
+	},
+
+	/**
+	 * Maps the file into memory in windows of {@link #MAPPED_WINDOW} bytes and
+	 * lets the page cache do the reading.
+	 */
+	MAPPED(1 << 20) {
+		@Override
+		ByteSource openSegment(FileChannel channel, long position, long length) {
+			return new MappedSource(channel, position, length);
+		}
+	};
+
+	static final long DIRECT_THRESHOLD = 1 << 20; // Smallest file read with DIRECT by default
+	static final long MAPPED_THRESHOLD = 64 << 20; // Smallest file read with MAPPED by default
+	static final int MAPPED_WINDOW = 256 << 20; // Bytes mapped at a time
+
+	final int bufferSize; // Size of the read and write buffers in bytes
+
+	IoMode(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Picks the mode for a file: heap buffers below 1 MB, a direct buffer below
+	 * 64 MB, and memory mapping above.
+	 *
+	 * @param size Size of the file in bytes.
+	 * @return The mode to use.
+	 */
+	public static IoMode forSize(long size) {
+		if (size < DIRECT_THRESHOLD)
+			return HEAP;
+		if (size < MAPPED_THRESHOLD)
+			return DIRECT;
+		return MAPPED;
+	}
+
+	/**
+	 * Opens a file for one pass over its content.
+	 */
+	ByteSource openSource(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		ByteSource segment = openSegment(channel, 0, channel.size());
+		return new ByteSource() {
+			@Override
+			public ByteBuffer next() throws IOException {
+				return segment.next();
+			}
+
+			@Override
+			public void close() throws IOException {
+				channel.close();
+			}
+		};
+	}
+
+	/**
+	 * Opens a segment of a file with positional reads, so that several segments
+	 * of one channel can be read at the same time. Closing the source leaves the
+	 * channel open.
+	 */
+	abstract ByteSource openSegment(FileChannel channel, long position, long length);
+
+	/**
+	 * Creates or truncates a file for writing through one buffer of
+	 * {@link #bufferSize} bytes. The size of the output is not known in
+	 * advance, so it is never mapped.
+	 */
+	OutputStream openSink(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		return new BufferedOutputStream(new ChannelOutputStream(channel), bufferSize);
+	}
+
+	/**
+	 * Reads a segment of a channel into one reused buffer.
+	 */
+	private static final class ChannelSource implements ByteSource {
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private long position;
+		private final long end;
+
+		ChannelSource(FileChannel channel, long position, long length, ByteBuffer buffer) {
+			this.channel = channel;
+			this.position = position;
+			this.end = position + length;
+			this.buffer = buffer;
+		}
+
+		@Override
+		public ByteBuffer next() throws IOException {
+			buffer.clear();
+			if (end - position < buffer.capacity())
+				buffer.limit((int) (end - position));
+			while (buffer.hasRemaining()) {
+				int n = channel.read(buffer, position);
+				if (n < 0)
+					break;
+				position += n;
+			}
+			buffer.flip();
+			return buffer.hasRemaining() ? buffer : null;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * Maps a segment of a channel one window after the other.
+	 */
+	private static final class MappedSource implements ByteSource {
+		private final FileChannel channel;
+		private long position;
+		private final long end;
+
+		MappedSource(FileChannel channel, long position, long length) {
+			this.channel = channel;
+			this.position = position;
+			this.end = position + length;
+		}
+
+		@Override
+		public ByteBuffer next() throws IOException {
+			if (position >= end)
+				return null;
+			long length = Math.min(MAPPED_WINDOW, end - position);
+			ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			position += length;
+			return window;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * Writes to a channel; large writes go straight through.
+	 */
+	private static final class ChannelOutputStream extends OutputStream {
+		private final FileChannel channel;
+
+		ChannelOutputStream(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -11,6 +11,8 @@ import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.effect.ColorAdjust;
 import javafx.scene.effect.Glow;
 import javafx.scene.image.Image;
@@ -124,10 +126,15 @@ public class Main extends Application {
             file = fileChooser.showOpenDialog(stage);
             try {
                 if (file.length() == 0) throw new IOException();
-                CompressScene compressScene = new CompressScene(stage, scene, file);
-                compressScene.setCursor(cursor);
-                compressScene.getStylesheets().add("LightMode.css");
-                stage.setScene(compressScene);
+                File in = file;
+                String outFileName = CompressScene.outFileNameFor(in);
+                CodecTask task = CodecTask.compress(in, new File(outFileName));
+                runTask(task, bp, optionsBox, () -> {
+                    CompressScene compressScene = new CompressScene(stage, scene, in, outFileName, task.getValue());
+                    compressScene.setCursor(cursor);
+                    compressScene.getStylesheets().add("LightMode.css");
+                    stage.setScene(compressScene);
+                });
             } catch (Exception e2) {
                 Alert alert = new Alert(AlertType.ERROR);
                 alert.setTitle("Error");
@@ -145,10 +152,16 @@ public class Main extends Application {
             file = fileChooser.showOpenDialog(stage);
             try {
                 if (file.length() == 0) throw new IOException();
-                DecompressScene decompressScene = new DecompressScene(stage, scene, file);
-                decompressScene.setCursor(cursor);
-                decompressScene.getStylesheets().add("LightMode.css");
-                stage.setScene(decompressScene);
+                File in = file;
+                String outFileName = DecompressScene.outFileNameFor(in);
+                CodecTask task = CodecTask.decompress(in, new File(outFileName));
+                runTask(task, bp, optionsBox, () -> {
+                    DecompressScene decompressScene = new DecompressScene(stage, scene, in, outFileName,
+                            task.getValue());
+                    decompressScene.setCursor(cursor);
+                    decompressScene.getStylesheets().add("LightMode.css");
+                    stage.setScene(decompressScene);
+                });
             } catch (Exception e2) {
                 Alert alert = new Alert(AlertType.ERROR);
                 alert.setTitle("Error");
@@ -164,6 +177,52 @@ public class Main extends Application {
         stage.show();
     }
 
+    /**
+     * Runs a compression or decompression on a background thread. While it runs,
+     * the buttons give way to a progress bar, the throughput and time left, and a
+     * Cancel button; they come back when the task ends.
+     *
+     * @param task       The task to run.
+     * @param bp         The main layout pane.
+     * @param optionsBox The box holding the compress and decompress buttons.
+     * @param onSuccess  Shows the results once the task has succeeded.
+     */
+    private void runTask(CodecTask task, BorderPane bp, HBox optionsBox, Runnable onSuccess) {
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setPrefWidth(400);
+        progressBar.progressProperty().bind(task.progressProperty());
+
+        Label statusLabel = new Label();
+        statusLabel.setMinWidth(260);
+        statusLabel.textProperty().bind(task.messageProperty());
+
+        Button cancelButton = new Button("Cancel");
+        cancelButton.setOnAction(e -> task.cancel());
+
+        HBox progressBox = new HBox(10, progressBar, statusLabel, cancelButton);
+        progressBox.setAlignment(Pos.CENTER);
+        bp.setBottom(progressBox);
+
+        task.setOnSucceeded(e -> {
+            bp.setBottom(optionsBox);
+            onSuccess.run();
+        });
+        // The partial output is deleted by the codec when it stops
+        task.setOnCancelled(e -> bp.setBottom(optionsBox));
+        task.setOnFailed(e -> {
+            bp.setBottom(optionsBox);
+            Alert alert = new Alert(AlertType.ERROR);
+            alert.setTitle("Error");
+            alert.setHeaderText("The file could not be processed");
+            alert.setContentText(task.getException().getMessage());
+            alert.showAndWait();
+        });
+
+        Thread thread = new Thread(task, "huffman-codec");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
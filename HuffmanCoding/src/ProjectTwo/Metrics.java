@@ -0,0 +1,213 @@
+package ProjectTwo;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the phases of one codec call into {@link CodecMetrics} and
+ * Flight Recorder events. A phase is timed by a {@link Span} opened on the
+ * calling thread:
+ *
+ * <pre>
+ * try (Metrics.Span span = metrics.begin(Phase.ENCODE)) {
+ * 	...
+ * 	span.in(length).out(bytes);
+ * }
+ * </pre>
+ *
+ * Tasks forked inside a span are wrapped with {@link #charged(Runnable)} so
+ * that the CPU time and allocations of the worker threads count towards it.
+ */
+final class Metrics {
+
+	private static final int PHASES = Phase.values().length;
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported()
+			&& THREADS.isThreadCpuTimeEnabled();
+	private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocations();
+
+	private static final ThreadLocal<Span> OPEN = new ThreadLocal<>(); // Innermost span of each thread
+
+	private final long start = System.nanoTime();
+	private final CodecRunEvent event = new CodecRunEvent();
+	private final List<Phase> phases = new ArrayList<>(PHASES); // In the order they first started
+	private final long[] wallNanos = new long[PHASES];
+	private final long[] bytesIn = new long[PHASES];
+	private final long[] bytesOut = new long[PHASES];
+	private final long[] cpuNanos = new long[PHASES];
+	private final long[] allocatedBytes = new long[PHASES];
+
+	Metrics() {
+		event.begin();
+	}
+
+	/**
+	 * Opens a span on the calling thread; close it on the same thread. Spans of
+	 * the same phase add up.
+	 */
+	Span begin(Phase phase) {
+		if (!phases.contains(phase))
+			phases.add(phase);
+		return new Span(phase);
+	}
+
+	/**
+	 * Ends the run and commits its Flight Recorder event.
+	 *
+	 * @param operation "compress" or "decompress".
+	 * @param in        Bytes read by the whole call.
+	 * @param out       Bytes written by the whole call.
+	 * @return The metrics recorded so far.
+	 */
+	CodecMetrics finish(String operation, long in, long out) {
+		CodecMetrics metrics = new CodecMetrics(new ArrayList<>(phases), wallNanos.clone(), cpuNanos.clone(), allocatedBytes.clone(),
+				bytesIn.clone(), bytesOut.clone(), System.nanoTime() - start);
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.operation = operation;
+			event.bytesIn = in;
+			event.bytesOut = out;
+			event.allocated = metrics.getAllocatedBytes();
+			event.commit();
+		}
+		return metrics;
+	}
+
+	/**
+	 * @return The task, charging its CPU time and allocations to the span open
+	 *         on the calling thread when it runs on another thread.
+	 */
+	static Runnable charged(Runnable task) {
+		Span span = OPEN.get();
+		if (span == null)
+			return task;
+		return () -> {
+			if (Thread.currentThread() == span.owner) {
+				task.run(); // Already counted by the span itself
+				return;
+			}
+			long cpu = cpuTime(), allocated = allocated();
+			try {
+				task.run();
+			} finally {
+				span.charge(cpuTime() - cpu, allocated() - allocated);
+			}
+		};
+	}
+
+	/**
+	 * @return The task, charging its CPU time and allocations to the span open
+	 *         on the calling thread when it runs on another thread.
+	 */
+	static <T> Callable<T> charged(Callable<T> task) {
+		Span span = OPEN.get();
+		if (span == null)
+			return task;
+		return () -> {
+			if (Thread.currentThread() == span.owner)
+				return task.call();
+			long cpu = cpuTime(), allocated = allocated();
+			try {
+				return task.call();
+			} finally {
+				span.charge(cpuTime() - cpu, allocated() - allocated);
+			}
+		};
+	}
+
+	private static long cpuTime() {
+		return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+	}
+
+	private static long allocated() {
+		return ALLOCATIONS == null ? 0 : ALLOCATIONS.getCurrentThreadAllocatedBytes();
+	}
+
+	private static com.sun.management.ThreadMXBean allocations() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled())
+				return threads;
+		}
+		return null;
+	}
+
+	/**
+	 * One timed stretch of a phase.
+	 */
+	final class Span implements AutoCloseable {
+		private final Phase phase;
+		private final Thread owner = Thread.currentThread();
+		private final Span outer = OPEN.get(); // Span to reopen on close
+		private final CodecPhaseEvent event = new CodecPhaseEvent();
+		private final long startNanos;
+		private final long startCpu;
+		private final long startAllocated;
+		private final AtomicLong workerCpu = new AtomicLong(); // CPU time of tasks run by other threads
+		private final AtomicLong workerAllocated = new AtomicLong(); // Their allocations
+		private long in; // Bytes read
+		private long out; // Bytes written
+
+		private Span(Phase phase) {
+			this.phase = phase;
+			OPEN.set(this);
+			event.begin();
+			startCpu = cpuTime();
+			startAllocated = allocated();
+			startNanos = System.nanoTime();
+		}
+
+		/**
+		 * Counts bytes read by the phase.
+		 */
+		Span in(long bytes) {
+			in += bytes;
+			return this;
+		}
+
+		/**
+		 * Counts bytes written by the phase.
+		 */
+		Span out(long bytes) {
+			out += bytes;
+			return this;
+		}
+
+		private void charge(long cpu, long allocated) {
+			workerCpu.addAndGet(cpu);
+			workerAllocated.addAndGet(allocated);
+		}
+
+		@Override
+		public void close() {
+			int i = phase.ordinal();
+			long cpu = cpuTime() - startCpu + workerCpu.get();
+			long allocated = allocated() - startAllocated + workerAllocated.get();
+			wallNanos[i] += Math.max(1, System.nanoTime() - startNanos);
+			cpuNanos[i] += cpu;
+			allocatedBytes[i] += allocated;
+			bytesIn[i] += in;
+			bytesOut[i] += out;
+			if (outer == null)
+				OPEN.remove();
+			else
+				OPEN.set(outer);
+
+			event.end();
+			if (event.shouldCommit()) {
+				event.phase = phase.toString();
+				event.bytesIn = in;
+				event.bytesOut = out;
+				event.cpuTime = cpu;
+				event.allocated = allocated;
+				event.commit();
+			}
+		}
+	}
+}
@@ -2,7 +2,7 @@ package ProjectTwo;
 
 public class Node {
 	private Byte charCode;
-	private int freq;
+	private long freq;
 
 	private Node left, right;
 	
@@ -10,11 +10,11 @@ public class Node {
 	private byte huffLength;
 	
 
-	public Node(int freq) {
+	public Node(long freq) {
 		this.freq = freq;
 	}
 
-	public Node(byte charCode, int freq) {
+	public Node(byte charCode, long freq) {
 		this.charCode = charCode;
 		this.freq = freq;
 	}
@@ -27,11 +27,11 @@ public class Node {
 		this.charCode = charCode;
 	}
 
-	public int getFreq() {
+	public long getFreq() {
 		return freq;
 	}
 
-	public void setFreq(int freq) {
+	public void setFreq(long freq) {
 		this.freq = freq;
 	}
 
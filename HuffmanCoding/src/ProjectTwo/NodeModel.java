@@ -1,18 +1,19 @@
 package ProjectTwo;
 
 import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleLongProperty;
 import javafx.beans.property.SimpleStringProperty;
 
 public class NodeModel {
     private SimpleStringProperty charDisplay;
-    private SimpleIntegerProperty frequency;
+    private SimpleLongProperty frequency;
     private SimpleStringProperty huffCode;
     private SimpleIntegerProperty huffLength;
     private SimpleIntegerProperty asciiValue; // New property for ASCII value
 
-    public NodeModel(byte charCode, int freq, String huffCode, byte huffLength) {
+    public NodeModel(byte charCode, long freq, String huffCode, byte huffLength) {
         this.charDisplay = new SimpleStringProperty(String.valueOf((char) charCode));
-        this.frequency = new SimpleIntegerProperty(freq);
+        this.frequency = new SimpleLongProperty(freq);
         this.huffCode = new SimpleStringProperty(huffCode);
         this.huffLength = new SimpleIntegerProperty(huffLength);
         this.asciiValue = new SimpleIntegerProperty(charCode); // Initialize with byte value of charCode
@@ -22,7 +23,7 @@ public class NodeModel {
         return charDisplay.get();
     }
 
-    public int getFrequency() {
+    public long getFrequency() {
         return frequency.get();
     }
 
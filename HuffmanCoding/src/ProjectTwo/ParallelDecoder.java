@@ -0,0 +1,213 @@
+package ProjectTwo;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32C;
+
+/**
+ * Decodes the blocks of a version 2 .huff file on several threads. Every block
+ * is found through the {@link BlockIndex} and decoded straight to its place in
+ * an output of the known original length; the four streams of a version 6
+ * block are decoded in one loop. Task {@code t} of {@code n} decodes
+ * blocks {@code t}, {@code t + n}, {@code t + 2n} and so on, reusing its
+ * buffers.
+ */
+final class ParallelDecoder {
+
+	private ParallelDecoder() {
+	}
+
+	/**
+	 * Decodes a file into a file that is first sized to the original length.
+	 *
+	 * @param in      The version 2 .huff file.
+	 * @param out     The file to create or overwrite.
+	 * @param header  The header of the input.
+	 * @param threads Maximum number of blocks decoded at once.
+	 * @param meter   Counts the bytes decoded.
+	 * @param metrics Times the index, the decode table and the decoding.
+	 * @return The index of the input.
+	 * @throws IOException If either file cannot be accessed, the input is
+	 *                     corrupt or the meter cancels the call.
+	 */
+	static BlockIndex decode(FileChannel in, RandomAccessFile out, HuffHeader header, int threads,
+			ProgressMeter meter, Metrics metrics) throws IOException {
+		long payloadStart = header.size();
+		long indexStart = payloadStart + ((header.payloadBits + 7) >>> 3);
+		if (indexStart > in.size())
+			throw new IOException("Truncated payload");
+		BlockIndex index;
+		try (Metrics.Span span = metrics.begin(Phase.INDEX)) {
+			byte[] indexBytes = new byte[(int) Math.min(Integer.MAX_VALUE - 8, in.size() - indexStart)];
+			readFully(in, ByteBuffer.wrap(indexBytes), indexStart);
+			index = BlockIndex.read(new DataInputStream(new ByteArrayInputStream(indexBytes)), header);
+			span.in(index.bytes());
+		}
+
+		out.setLength(0);
+		out.setLength(header.originalLength);
+		FileChannel target = out.getChannel();
+		DecodeTable table;
+		try (Metrics.Span span = metrics.begin(Phase.CODES)) {
+			table = header.decodeTable();
+			span.in((header.tableLength + 7) >>> 3);
+		}
+
+		try (Metrics.Span span = metrics.begin(Phase.DECODE)) {
+			run(index.size(), threads, (tasks, first) -> {
+				byte[] packed = new byte[0];
+				byte[] decoded = new byte[0];
+				for (int i = first; i < index.size(); i += tasks) {
+					long from = index.bitOffset(i);
+					long to = i + 1 < index.size() ? index.bitOffset(i + 1) : header.payloadBits;
+					int bytes = (int) (((to + 7) >>> 3) - (from >>> 3));
+					if (packed.length < bytes)
+						packed = new byte[bytes];
+					if (decoded.length < index.length(i))
+						decoded = new byte[index.length(i)];
+
+					ByteBuffer buffer = ByteBuffer.wrap(packed, 0, bytes);
+					readFully(in, buffer, payloadStart + (from >>> 3));
+					if (buffer.hasRemaining())
+						throw new IOException("Truncated payload");
+					decodeBlock(table, index, i, to, packed, 0, from & ~7, decoded, 0);
+
+					ByteBuffer result = ByteBuffer.wrap(decoded, 0, index.length(i));
+					for (long position = index.position(i); result.hasRemaining();)
+						position += target.write(result, position);
+					meter.add(index.length(i));
+				}
+			});
+			span.in(indexStart - payloadStart).out(header.originalLength);
+		}
+		return index;
+	}
+
+	/**
+	 * Decodes a version 2 .huff file held in memory.
+	 *
+	 * @param data    The whole file.
+	 * @param header  Its header.
+	 * @param threads Maximum number of blocks decoded at once.
+	 * @return The original data.
+	 * @throws IOException If the data is corrupt.
+	 */
+	static byte[] decode(byte[] data, HuffHeader header, int threads) throws IOException {
+		int payloadStart = (int) header.size();
+		long indexStart = payloadStart + ((header.payloadBits + 7) >>> 3);
+		if (indexStart > data.length)
+			throw new IOException("Truncated payload");
+		if (header.originalLength > Integer.MAX_VALUE - 8)
+			throw new IOException("Original data too large for an array: " + header.originalLength);
+		BlockIndex index = BlockIndex.read(
+				new DataInputStream(new ByteArrayInputStream(data, (int) indexStart, data.length - (int) indexStart)),
+				header);
+
+		byte[] out = new byte[(int) header.originalLength];
+		DecodeTable table = header.decodeTable();
+		run(index.size(), threads, (tasks, first) -> {
+			for (int i = first; i < index.size(); i += tasks) {
+				long to = i + 1 < index.size() ? index.bitOffset(i + 1) : header.payloadBits;
+				decodeBlock(table, index, i, to, data, payloadStart, 0, out, (int) index.position(i));
+			}
+		});
+		return out;
+	}
+
+	/**
+	 * Decodes one block, all of its streams at once if the index has them, and
+	 * checks that the codes of every stream end exactly where the next one
+	 * starts and that the bytes match the checksum of the block.
+	 *
+	 * @param end      Offset of the end of the block in the payload, in bits.
+	 * @param packed   Holds the encoded block.
+	 * @param offset   Index of the byte of packed holding payload bit base.
+	 * @param base     Offset in the payload of the first bit of that byte, a
+	 *                 multiple of 8.
+	 * @param position Index in out of the first decoded byte.
+	 */
+	private static void decodeBlock(DecodeTable table, BlockIndex index, int block, long end, byte[] packed,
+			int offset, long base, byte[] out, int position) throws IOException {
+		int length = index.length(block);
+		int streams = index.streams();
+		BitReader[] readers = new BitReader[streams];
+		int[] from = new int[streams];
+		int[] to = new int[streams];
+		for (int s = 0; s < streams; s++) {
+			long start = index.bitOffset(block, s) - base;
+			long stop = (s + 1 < streams ? index.bitOffset(block, s + 1) : end) - base;
+			readers[s] = new BitReader(packed, offset + (int) (start >>> 3),
+					(int) (((stop + 7) >>> 3) - (start >>> 3)), stop - (start & ~7));
+			readers[s].refill();
+			readers[s].skip((int) (start & 7));
+			from[s] = position + BlockIndex.streamStart(length, s, streams);
+			to[s] = position + BlockIndex.streamStart(length, s + 1, streams);
+		}
+
+		if (streams == BlockIndex.STREAMS)
+			table.decodeInterleaved(readers, out, from, to);
+		for (int s = 0; s < streams; s++) {
+			for (int done = from[s], n; done < to[s]; done += n) {
+				n = table.decode(readers[s], out, done, to[s]);
+				if (n == 0)
+					throw new IOException("Truncated payload");
+			}
+			if (readers[s].available != 0)
+				throw new IOException("Corrupt block index");
+		}
+		if (index.checksummed()) {
+			CRC32C crc = new CRC32C();
+			crc.update(out, position, length);
+			index.check(block, (int) crc.getValue());
+		}
+	}
+
+	/**
+	 * Runs one task per thread, or the only task on the calling thread.
+	 *
+	 * @param blocks Number of blocks to share among the tasks.
+	 */
+	static void run(int blocks, int threads, Worker worker) throws IOException {
+		int tasks = Math.max(1, Math.min(threads, blocks));
+		List<ForkJoinTask<?>> list = new ArrayList<>(tasks);
+		for (int t = 0; t < tasks; t++) {
+			int first = t;
+			list.add(ForkJoinTask.adapt(Metrics.charged(() -> {
+				try {
+					worker.run(tasks, first);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			})));
+		}
+		try {
+			ForkJoinTask.invokeAll(list);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = channel.read(buffer, position);
+			if (n < 0)
+				break;
+			position += n;
+		}
+	}
+
+	/**
+	 * The share of the blocks decoded by one task.
+	 */
+	interface Worker {
+		void run(int tasks, int first) throws IOException;
+	}
+}
@@ -0,0 +1,119 @@
+package ProjectTwo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32C;
+
+/**
+ * Encodes an input on several threads with one shared code table. The input
+ * is read in batches of one block of {@link BlockIndex#BLOCK_SIZE} bytes per
+ * thread; the blocks of a batch are encoded on the common fork-join pool into
+ * bit strings of their own, which are then appended to the output in order.
+ * The output is bit for bit the one of the single threaded encoder.
+ */
+final class ParallelEncoder {
+
+	static final long PARALLEL_THRESHOLD = 4 << 20; // Smallest input encoded in parallel
+
+	private ParallelEncoder() {
+	}
+
+	/**
+	 * @param source  The input; it is not closed.
+	 * @param table   The codes of every byte of the input.
+	 * @param writer  Receives the codes.
+	 * @param threads Number of blocks encoded at once.
+	 * @param index   Receives the offset and length of every block, and where
+	 *                its streams start and the checksum of its bytes if the
+	 *                index has them.
+	 * @throws IOException If the input cannot be read, a byte has no code or the
+	 *                     writer fails.
+	 */
+	static void encode(ByteSource source, CodeTable table, BitWriter writer, int threads, BlockIndex index)
+			throws IOException {
+		byte[] batch = new byte[threads * BlockIndex.BLOCK_SIZE];
+		int filled = 0;
+		ByteBuffer chunk;
+		while ((chunk = source.next()) != null) {
+			while (chunk.hasRemaining()) {
+				int n = Math.min(chunk.remaining(), batch.length - filled);
+				chunk.get(batch, filled, n);
+				filled += n;
+				if (filled == batch.length) {
+					encodeBatch(batch, filled, table, writer, index);
+					filled = 0;
+				}
+			}
+		}
+		encodeBatch(batch, filled, table, writer, index);
+	}
+
+	private static void encodeBatch(byte[] batch, int length, CodeTable table, BitWriter writer,
+			BlockIndex index) throws IOException {
+		List<ForkJoinTask<Encoded>> tasks = new ArrayList<>();
+		for (int offset = 0; offset < length; offset += BlockIndex.BLOCK_SIZE) {
+			int from = offset;
+			int to = Math.min(length, offset + BlockIndex.BLOCK_SIZE);
+			tasks.add(ForkJoinTask.adapt(Metrics.charged(() -> {
+				try {
+					ByteArrayOutputStream out = new ByteArrayOutputStream(to - from);
+					BitWriter part = new BitWriter(out, 64 * 1024);
+					int streams = index.streams();
+					int[] streamOffsets = new int[streams];
+					for (int s = 0; s < streams; s++) {
+						int start = from + BlockIndex.streamStart(to - from, s, streams);
+						int end = from + BlockIndex.streamStart(to - from, s + 1, streams);
+						streamOffsets[s] = (int) part.bitsWritten();
+						table.encode(batch, start, end - start, part);
+					}
+					long bits = part.bitsWritten();
+					part.finish();
+					int checksum = 0;
+					if (index.checksummed()) {
+						CRC32C crc = new CRC32C();
+						crc.update(batch, from, to - from);
+						checksum = (int) crc.getValue();
+					}
+					return new Encoded(out.toByteArray(), bits, to - from, streamOffsets, checksum);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			})));
+		}
+
+		try {
+			ForkJoinTask.invokeAll(tasks);
+			for (ForkJoinTask<Encoded> task : tasks) {
+				Encoded encoded = task.join();
+				index.add(writer.bitsWritten(), encoded.length, encoded.streamOffsets, encoded.checksum);
+				writer.append(encoded.data, encoded.bits);
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * The bit string of one block.
+	 */
+	private static final class Encoded {
+		final byte[] data;
+		final long bits;
+		final int length; // Input bytes of the block
+		final int[] streamOffsets; // Start of each stream of the block, in bits
+		final int checksum; // CRC32C of the input bytes of the block
+
+		Encoded(byte[] data, long bits, int length, int[] streamOffsets, int checksum) {
+			this.data = data;
+			this.bits = bits;
+			this.length = length;
+			this.streamOffsets = streamOffsets;
+			this.checksum = checksum;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package ProjectTwo;
+
+/**
+ * The stages of a compression or decompression that {@link CodecMetrics}
+ * times separately.
+ */
+public enum Phase {
+	/** Counting the byte frequencies of the input. */
+	HISTOGRAM("Histogram"),
+	/** Building the Huffman tree and limiting its code lengths. */
+	TREE("Tree"),
+	/** Assigning the canonical codes, or building the decode table. */
+	CODES("Codes"),
+	/** Writing or reading the header. */
+	HEADER("Header"),
+	/** Encoding the input into the payload. */
+	ENCODE("Encode"),
+	/** Writing or reading the block index. */
+	INDEX("Index"),
+	/** Decoding the payload into the original data. */
+	DECODE("Decode");
+
+	private final String label; // Name shown to users
+
+	Phase(String label) {
+		this.label = label;
+	}
+
+	@Override
+	public String toString() {
+		return label;
+	}
+}
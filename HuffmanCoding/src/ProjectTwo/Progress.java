@@ -0,0 +1,29 @@
+package ProjectTwo;
+
+import java.io.IOException;
+
+/**
+ * Follows a compression or decompression of a file. Updates come from the
+ * threads doing the work, about a megabyte of data apart, so implementations
+ * must be thread safe and quick. Throwing from {@link #update} cancels the
+ * call: it fails with the exception thrown, typically an
+ * {@link java.io.InterruptedIOException}, and its partial output is deleted.
+ */
+@FunctionalInterface
+public interface Progress {
+
+	/**
+	 * Ignores every update.
+	 */
+	Progress NONE = (done, total) -> {
+	};
+
+	/**
+	 * @param done  Bytes processed so far.
+	 * @param total Bytes to process in all. A compression that reads its input
+	 *              twice counts it twice; a decompression counts the bytes it
+	 *              writes, or the bytes it reads from a version 1 file.
+	 * @throws IOException To cancel the call.
+	 */
+	void update(long done, long total) throws IOException;
+}
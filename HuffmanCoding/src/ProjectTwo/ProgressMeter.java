@@ -0,0 +1,94 @@
+package ProjectTwo;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adds up the bytes processed by every thread of one call and passes the sum
+ * to its {@link Progress}. Sources are cut into chunks of at most
+ * {@link #STEP} bytes, so that updates, and the chances to cancel, come at a
+ * steady pace even when a source hands out whole mapped windows.
+ */
+final class ProgressMeter {
+
+	static final int STEP = 1 << 20; // Most bytes between two updates from one thread
+
+	private final Progress progress;
+	private final long total;
+	private final AtomicLong done = new AtomicLong();
+
+	ProgressMeter(Progress progress, long total) {
+		this.progress = progress;
+		this.total = total;
+	}
+
+	/**
+	 * Counts processed bytes and reports the new sum.
+	 *
+	 * @throws IOException If the progress cancels the call.
+	 */
+	void add(long bytes) throws IOException {
+		progress.update(done.addAndGet(bytes), total);
+	}
+
+	/**
+	 * @return A source handing out the chunks of the given one in pieces of at
+	 *         most {@link #STEP} bytes, counting each piece when the next one
+	 *         is asked for.
+	 */
+	ByteSource wrap(ByteSource source) {
+		return new ByteSource() {
+			private ByteBuffer chunk;
+			private int pending; // Bytes of the piece handed out last
+
+			@Override
+			public ByteBuffer next() throws IOException {
+				if (pending > 0) {
+					add(pending);
+					pending = 0;
+				}
+				if (chunk == null || !chunk.hasRemaining()) {
+					chunk = source.next();
+					if (chunk == null)
+						return null;
+				}
+				ByteBuffer piece = chunk.duplicate();
+				piece.limit(piece.position() + Math.min(STEP, piece.remaining()));
+				chunk.position(piece.limit());
+				pending = piece.remaining();
+				return piece;
+			}
+
+			@Override
+			public void close() throws IOException {
+				source.close();
+			}
+		};
+	}
+
+	/**
+	 * @return A stream counting every byte read through it.
+	 */
+	InputStream wrap(InputStream in) {
+		return new FilterInputStream(in) {
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if (b >= 0)
+					add(1);
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int n = super.read(b, off, Math.min(len, STEP));
+				if (n > 0)
+					add(n);
+				return n;
+			}
+		};
+	}
+}
@@ -0,0 +1,218 @@
+package ProjectTwo;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of the code tables built for inputs and read from headers, so
+ * that inputs with the same histogram and files with the same table skip
+ * building them again: see {@link CodecOptions#withTableCache(TableCache)}.
+ * The encoder looks up the canonical code of a histogram and code length
+ * limit; the decoder looks up the codes and decode table of the table bytes
+ * of a header. The least recently used table is dropped once the cache is
+ * full.
+ * <p>
+ * A cache may be shared by any number of codecs and threads. Tables are built
+ * outside its lock, so two threads missing the same table may both build it.
+ */
+public final class TableCache {
+
+	/**
+	 * Default capacity in tables.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/**
+	 * The cache of {@link CodecOptions#DEFAULT}, shared by every codec that is
+	 * not given another one.
+	 */
+	public static final TableCache SHARED = new TableCache(DEFAULT_CAPACITY);
+
+	private final int capacity;
+	private final Map<Object, Object> tables; // Access ordered, guarded by itself
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param capacity Most tables kept, 0 for a cache that keeps none and only
+	 *                 counts the misses.
+	 * @throws IllegalArgumentException If the capacity is negative.
+	 */
+	public TableCache(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("Negative capacity: " + capacity);
+		this.capacity = capacity;
+		this.tables = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+				return size() > TableCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the canonical code of a histogram, limited to a code length.
+	 *
+	 * @param freq          Frequency of each symbol; not kept, so the caller may
+	 *                      reuse it.
+	 * @param maxCodeLength Longest code in bits.
+	 * @return The code table, shared with other callers.
+	 */
+	CodeTable codes(long[] freq, int maxCodeLength) {
+		HistogramKey key = new HistogramKey(freq, maxCodeLength);
+		return get(key, () -> CodeTable.canonical(HuffmanTree.codeLengths(freq, maxCodeLength)),
+				() -> new HistogramKey(freq.clone(), maxCodeLength));
+	}
+
+	/**
+	 * Returns the tables of a header.
+	 *
+	 * @param kind   What the table bytes describe: 0 for a tree of a version 2
+	 *               file, otherwise the size of the alphabet of the canonical
+	 *               code lengths.
+	 * @param length Length of the table in bits.
+	 * @param bytes  The table, padded to whole bytes; not kept.
+	 * @param parse  Builds the tables on a miss.
+	 * @return The tables, shared with other callers.
+	 * @throws IllegalArgumentException If parsing fails.
+	 */
+	Decoding decoding(int kind, int length, byte[] bytes, Supplier<Decoding> parse) {
+		return get(new HeaderKey(kind, length, bytes), parse, () -> new HeaderKey(kind, length, bytes.clone()));
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T get(Object key, Supplier<T> build, Supplier<Object> copy) {
+		Object value;
+		synchronized (tables) {
+			value = tables.get(key);
+		}
+		if (value != null) {
+			hits.incrementAndGet();
+			return (T) value;
+		}
+		misses.incrementAndGet();
+		T built = build.get();
+		if (capacity > 0) {
+			synchronized (tables) {
+				tables.put(copy.get(), built);
+			}
+		}
+		return built;
+	}
+
+	/**
+	 * @return Most tables kept.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return Number of tables kept now.
+	 */
+	public int size() {
+		synchronized (tables) {
+			return tables.size();
+		}
+	}
+
+	/**
+	 * @return Lookups that found their table, since the cache was made.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return Lookups that built their table, since the cache was made.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Drops every table; the counts stay.
+	 */
+	public void clear() {
+		synchronized (tables) {
+			tables.clear();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d tables, %d hits, %d misses", size(), getHits(), getMisses());
+	}
+
+	/**
+	 * The tables read from a header: the table bits as the header keeps them,
+	 * the codes and, for byte codes, their decode table.
+	 */
+	static final class Decoding {
+		final String table; // Table bits padded to whole bytes
+		final CodeTable codes;
+		final DecodeTable decoder; // Null for larger alphabets, which decode otherwise
+
+		Decoding(String table, CodeTable codes, DecodeTable decoder) {
+			this.table = table;
+			this.codes = codes;
+			this.decoder = decoder;
+		}
+	}
+
+	private static final class HistogramKey {
+		private final long[] freq;
+		private final int maxCodeLength;
+		private final int hash;
+
+		HistogramKey(long[] freq, int maxCodeLength) {
+			this.freq = freq;
+			this.maxCodeLength = maxCodeLength;
+			this.hash = 31 * Arrays.hashCode(freq) + maxCodeLength;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof HistogramKey))
+				return false;
+			HistogramKey other = (HistogramKey) o;
+			return hash == other.hash && maxCodeLength == other.maxCodeLength && Arrays.equals(freq, other.freq);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	private static final class HeaderKey {
+		private final int kind;
+		private final int length;
+		private final byte[] bytes;
+		private final int hash;
+
+		HeaderKey(int kind, int length, byte[] bytes) {
+			this.kind = kind;
+			this.length = length;
+			this.bytes = bytes;
+			this.hash = (31 * kind + length) * 31 + Arrays.hashCode(bytes);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof HeaderKey))
+				return false;
+			HeaderKey other = (HeaderKey) o;
+			return hash == other.hash && kind == other.kind && length == other.length
+					&& Arrays.equals(bytes, other.bytes);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package ProjectTwo;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.layout.GridPane;
+
+/**
+ * A table of the phases of a run with their wall time, CPU time, throughput
+ * and allocations, shown by the compression and decompression scenes next to
+ * the compression rate.
+ */
+final class TimingPane extends GridPane {
+
+	private static final String HEADER_STYLE = "-fx-text-fill: #FFF5E0; -fx-padding: 2; -fx-font-size: 14px;";
+	private static final String CELL_STYLE = "-fx-text-fill: #141E46; -fx-background-color: white; -fx-padding: 4 8 4 8; "
+			+ "-fx-border-color: #41B06E; -fx-border-radius: 5; -fx-background-radius: 5; -fx-font-size: 13px;";
+
+	/**
+	 * @param metrics The timing of the run to show.
+	 */
+	TimingPane(CodecMetrics metrics) {
+		setAlignment(Pos.CENTER);
+		setHgap(6);
+		setVgap(4);
+		setPadding(new Insets(5));
+
+		String[] titles = { "Phase", "Wall ms", "CPU ms", "MB/s", "Allocated" };
+		for (int c = 0; c < titles.length; c++)
+			add(header(titles[c]), c, 0);
+
+		int row = 1;
+		for (Phase phase : metrics.getPhases()) {
+			add(cell(phase.toString()), 0, row);
+			add(cell(String.format("%.2f", metrics.getWallNanos(phase) / 1e6)), 1, row);
+			add(cell(String.format("%.2f", metrics.getCpuNanos(phase) / 1e6)), 2, row);
+			double throughput = metrics.getThroughput(phase);
+			add(cell(throughput == 0 ? "-" : String.format("%.1f", throughput)), 3, row);
+			add(cell(bytes(metrics.getAllocatedBytes(phase))), 4, row);
+			row++;
+		}
+		add(header("Total"), 0, row);
+		add(cell(String.format("%.2f", metrics.getTotalNanos() / 1e6)), 1, row);
+		add(cell(bytes(metrics.getAllocatedBytes())), 4, row);
+	}
+
+	private static Label header(String text) {
+		Label label = new Label(text);
+		label.setStyle(HEADER_STYLE);
+		return label;
+	}
+
+	private static Label cell(String text) {
+		Label label = new Label(text);
+		label.setStyle(CELL_STYLE);
+		label.setMaxWidth(Double.MAX_VALUE);
+		label.setAlignment(Pos.CENTER_RIGHT);
+		return label;
+	}
+
+	/**
+	 * @return A byte count in B, KB or MB.
+	 */
+	private static String bytes(long bytes) {
+		if (bytes < 1024)
+			return bytes + " B";
+		if (bytes < 1024 * 1024)
+			return String.format("%.1f KB", bytes / 1024.0);
+		return String.format("%.1f MB", bytes / (1024.0 * 1024));
+	}
+}
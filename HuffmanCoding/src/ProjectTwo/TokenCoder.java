@@ -0,0 +1,437 @@
+package ProjectTwo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Codes the alphabets larger than bytes, into version 5 .huff files. The input
+ * is read twice: the first pass counts the symbols, and for
+ * {@link Alphabet#WORDS} also picks the words of the dictionary; the second
+ * encodes. The payload follows the header as one stream without a block index,
+ * and is coded on the calling thread, since pairs and words do not line up
+ * with fixed size blocks.
+ * <p>
+ * A word is a run of 2 to {@link #MAX_WORD} letters, digits or non ASCII bytes
+ * between other bytes. Words in the dictionary are coded as one symbol, 256
+ * plus their index; all other bytes, longer runs included, as the symbol of
+ * their value.
+ */
+final class TokenCoder {
+
+	static final int MAX_WORD = 32; // Longest word in the dictionary
+	static final int MAX_DICTIONARY = (1 << 16) - 256; // Most words in the dictionary
+	private static final int MAX_COUNTED = 1 << 20; // Most distinct words counted in the first pass
+	private static final int SYMBOLS = 4096; // Symbols coded or decoded at once
+
+	private static final boolean[] WORD = new boolean[256]; // Whether a byte value can be part of a word
+
+	static {
+		for (int b = 0; b < 256; b++)
+			WORD[b] = b >= 0x80 || Character.isLetterOrDigit(b);
+	}
+
+	private TokenCoder() {
+	}
+
+	/**
+	 * Encodes a source in two passes.
+	 *
+	 * @param source     Opens the input for each pass.
+	 * @param extension  The extension to store in the header, may be empty.
+	 * @param target     Receives the .huff file; it is flushed but not closed.
+	 * @param options    The alphabet and code length limit.
+	 * @param bufferSize Size of the output buffer.
+	 * @param metrics    Times the phases.
+	 * @return Statistics of the run; the codes shown are those of the byte
+	 *         values, and none for pairs.
+	 * @throws IOException If reading or writing fails or the input changes
+	 *                     between the passes.
+	 */
+	static CodecStats encode(HuffmanCodec.Source source, String extension, OutputStream target,
+			CodecOptions options, int bufferSize, Metrics metrics) throws IOException {
+		Alphabet alphabet = options.getAlphabet();
+		long[] freq = new long[alphabet.size];
+		long lengthBefore;
+		WordTable dictionary = null;
+		try (Metrics.Span span = metrics.begin(Phase.HISTOGRAM)) {
+			SymbolSink counter = symbol -> freq[symbol]++;
+			if (alphabet == Alphabet.PAIRS) {
+				lengthBefore = new PairScanner(counter).scanAll(source, null);
+			} else {
+				WordTable counted = new WordTable(MAX_COUNTED);
+				lengthBefore = new WordScanner(counter, counted, true).scanAll(source, null);
+				dictionary = dictionary(counted, freq);
+			}
+			span.in(lengthBefore);
+		}
+
+		// Codes are never shorter than the number of symbols requires, whatever
+		// the limit, and never longer than the decoder reads at once
+		int symbols = 0;
+		for (long f : freq) {
+			if (f != 0)
+				symbols++;
+		}
+		int maxLength = Math.max(Math.min(options.getMaxCodeLength(), CanonicalDecoder.MAX_CODE_LENGTH),
+				32 - Integer.numberOfLeadingZeros(Math.max(1, symbols - 1)));
+		CodeTable table;
+		try (Metrics.Span span = metrics.begin(Phase.TREE)) {
+			table = options.getTableCache().codes(freq, maxLength);
+			span.in(lengthBefore);
+		}
+		Node[] nodes;
+		try (Metrics.Span span = metrics.begin(Phase.CODES)) {
+			nodes = alphabet == Alphabet.WORDS ? table.toNodes(freq) : new Node[256];
+			span.in(lengthBefore);
+		}
+
+		HuffmanCodec.CountingOutputStream counting = new HuffmanCodec.CountingOutputStream(target);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(counting, 512));
+		HuffHeader header;
+		long payloadBits = 0;
+		try (Metrics.Span span = metrics.begin(Phase.HEADER)) {
+			for (int symbol = 0; symbol < freq.length; symbol++)
+				payloadBits += freq[symbol] * table.lengths[symbol];
+			byte[][] words = new byte[dictionary == null ? 0 : dictionary.size()][];
+			for (int id = 0; id < words.length; id++)
+				words[id] = dictionary.word(id);
+			header = HuffHeader.tokens(extension, alphabet, words, lengthBefore, payloadBits, table,
+					options.isChecksums());
+			header.write(out);
+			out.flush();
+			span.out(counting.count);
+		}
+
+		BitWriter writer = new BitWriter(counting, bufferSize);
+		try (Metrics.Span span = metrics.begin(Phase.ENCODE)) {
+			long payloadStart = counting.count;
+			SymbolWriter coder = new SymbolWriter(table, writer);
+			CRC32C crc = header.checksummed ? new CRC32C() : null;
+			long length = alphabet == Alphabet.PAIRS ? new PairScanner(coder).scanAll(source, crc)
+					: new WordScanner(coder, dictionary, false).scanAll(source, crc);
+			coder.flush();
+			if (length != lengthBefore || writer.bitsWritten() != payloadBits)
+				throw new IOException("Input changed between the two passes");
+			writer.finish();
+			if (crc != null) {
+				out.writeInt((int) crc.getValue());
+				out.flush();
+			}
+			span.in(lengthBefore).out(counting.count - payloadStart);
+		}
+
+		return new CodecStats(lengthBefore, counting.count, extension, header.tableLength, header.table, nodes,
+				metrics.finish("compress", lengthBefore, counting.count));
+	}
+
+	/**
+	 * Decodes the payload of a stream positioned after a version 5 header, and
+	 * checks the checksum after it if the file has one.
+	 *
+	 * @throws IOException If reading or writing fails or the input is corrupt.
+	 */
+	static CodecStats decode(HuffHeader header, DataInputStream in, OutputStream target, int bufferSize,
+			Metrics metrics) throws IOException {
+		CanonicalDecoder decoder = null;
+		try (Metrics.Span span = metrics.begin(Phase.CODES)) {
+			if (header.codes.maxLength() > 0)
+				decoder = new CanonicalDecoder(header.codes);
+			span.in((header.tableLength + 7) >>> 3);
+		}
+		BitReader reader = new BitReader(in, bufferSize, header.payloadBits);
+		if (decoder == null && reader.available != 0)
+			throw new IOException("Data without a Huffman tree");
+
+		// Pairs decode to an even number of bytes, the last one dropped if odd
+		boolean pairs = header.alphabet == Alphabet.PAIRS;
+		long expected = pairs ? header.originalLength + 1 & ~1L : header.originalLength;
+		int[] symbols = new int[SYMBOLS];
+		byte[] buffer = new byte[SYMBOLS * (pairs ? 2 : MAX_WORD)];
+		CRC32C crc = header.checksummed ? new CRC32C() : null;
+		long decoded = 0;
+		try (Metrics.Span span = metrics.begin(Phase.DECODE)) {
+			while (reader.available > 0) {
+				int n = decoder.decode(reader, symbols, 0, symbols.length);
+				int bytes = 0;
+				for (int i = 0; i < n; i++) {
+					int symbol = symbols[i];
+					if (pairs) {
+						buffer[bytes++] = (byte) (symbol >>> 8);
+						buffer[bytes++] = (byte) symbol;
+					} else if (symbol < 256)
+						buffer[bytes++] = (byte) symbol;
+					else {
+						byte[] word = header.words[symbol - 256];
+						System.arraycopy(word, 0, buffer, bytes, word.length);
+						bytes += word.length;
+					}
+				}
+				if (decoded + bytes > expected)
+					throw new IOException("Decoded more than " + header.originalLength + " bytes");
+				int written = (int) Math.min(bytes, header.originalLength - decoded);
+				target.write(buffer, 0, written);
+				if (crc != null)
+					crc.update(buffer, 0, written);
+				decoded += bytes;
+			}
+			target.flush();
+			span.in(reader.bytesRead()).out(header.originalLength);
+		}
+		if (decoded != expected)
+			throw new IOException("Decoded " + decoded + " bytes instead of " + header.originalLength);
+		if (crc != null && in.readInt() != (int) crc.getValue())
+			throw new IOException("Checksum mismatch");
+
+		long lengthBefore = header.size() + reader.bytesRead() + (crc != null ? 4 : 0);
+		Node[] nodes = pairs ? new Node[256] : header.codes.toNodes(null);
+		return new CodecStats(lengthBefore, header.originalLength, header.extension, header.tableLength,
+				header.table, nodes, metrics.finish("decompress", lengthBefore, header.originalLength));
+	}
+
+	/**
+	 * Picks the dictionary from the counted words: those that save more bits
+	 * than they take to store, the ones that save most first. A spelled out
+	 * byte is taken to cost the entropy of the bytes, and a word symbol the
+	 * information of its count among all symbols. The counts of every other
+	 * word go to the bytes it is made of.
+	 *
+	 * @param counted The words of the input with their counts.
+	 * @param freq    The counts of the byte values, updated; the counts of the
+	 *                words picked are set after them.
+	 * @return The dictionary, the index of each word being its symbol less 256.
+	 */
+	private static WordTable dictionary(WordTable counted, long[] freq) {
+		long[] bytes = Arrays.copyOf(freq, 256);
+		long symbols = 0;
+		for (long f : bytes)
+			symbols += f;
+		for (int id = 0; id < counted.size(); id++) {
+			for (byte b : counted.word(id))
+				bytes[b & 0xFF] += counted.count(id);
+			symbols += counted.count(id);
+		}
+		double byteBits = entropy(bytes);
+
+		long[] gain = new long[counted.size()];
+		int[] candidates = new int[counted.size()];
+		int n = 0;
+		for (int id = 0; id < counted.size(); id++) {
+			// The word and its code length are stored once, in about a byte more
+			// than the word itself
+			long count = counted.count(id);
+			double symbolBits = Math.log((double) symbols / count) / Math.log(2);
+			gain[id] = (long) (count * (counted.length(id) * byteBits - symbolBits) - 8 * (counted.length(id) + 2));
+			if (gain[id] > 0)
+				candidates[n++] = id;
+			else
+				spell(counted, id, freq);
+		}
+
+		int[] ranked = HuffmanTree.sortByKey(gain, Arrays.copyOf(candidates, n));
+		WordTable dictionary = new WordTable(MAX_DICTIONARY);
+		for (int i = n - 1; i >= 0; i--) {
+			int id = ranked[i];
+			if (dictionary.size() < MAX_DICTIONARY) {
+				byte[] word = counted.word(id);
+				freq[256 + dictionary.add(word, 0, word.length)] = counted.count(id);
+			} else
+				spell(counted, id, freq);
+		}
+		return dictionary;
+	}
+
+	/**
+	 * @return The average number of bits per symbol of an order 0 code for the
+	 *         frequencies.
+	 */
+	private static double entropy(long[] freq) {
+		long total = 0;
+		for (long f : freq)
+			total += f;
+		double bits = 0;
+		for (long f : freq) {
+			if (f != 0)
+				bits -= f * Math.log((double) f / total);
+		}
+		return total == 0 ? 0 : bits / total / Math.log(2);
+	}
+
+	/**
+	 * Counts every occurrence of a word as occurrences of its bytes.
+	 */
+	private static void spell(WordTable words, int id, long[] freq) {
+		for (byte b : words.word(id))
+			freq[b & 0xFF] += words.count(id);
+	}
+
+	/**
+	 * Receives the symbols of the input in order.
+	 */
+	private interface SymbolSink {
+		void accept(int symbol) throws IOException;
+	}
+
+	/**
+	 * Encodes symbols in batches.
+	 */
+	private static final class SymbolWriter implements SymbolSink {
+		private final CodeTable table;
+		private final BitWriter writer;
+		private final int[] symbols = new int[SYMBOLS];
+		private int size;
+
+		SymbolWriter(CodeTable table, BitWriter writer) {
+			this.table = table;
+			this.writer = writer;
+		}
+
+		@Override
+		public void accept(int symbol) throws IOException {
+			symbols[size++] = symbol;
+			if (size == symbols.length)
+				flush();
+		}
+
+		void flush() throws IOException {
+			table.encode(symbols, 0, size, writer);
+			size = 0;
+		}
+	}
+
+	/**
+	 * Cuts the input into symbols; state carries over from chunk to chunk.
+	 */
+	private abstract static class Scanner {
+		final SymbolSink sink;
+
+		Scanner(SymbolSink sink) {
+			this.sink = sink;
+		}
+
+		/**
+		 * Passes every symbol of one pass over the input to the sink.
+		 *
+		 * @param crc Receives every byte of the input, or null.
+		 * @return The number of bytes read.
+		 */
+		final long scanAll(HuffmanCodec.Source source, CRC32C crc) throws IOException {
+			long length = 0;
+			try (ByteSource in = source.open()) {
+				ByteBuffer chunk;
+				while ((chunk = in.next()) != null) {
+					length += chunk.remaining();
+					if (crc != null)
+						crc.update(chunk.duplicate());
+					scan(chunk);
+				}
+			}
+			end();
+			return length;
+		}
+
+		abstract void scan(ByteBuffer chunk) throws IOException;
+
+		/**
+		 * Passes the symbols still held back at the end of the input.
+		 */
+		abstract void end() throws IOException;
+	}
+
+	/**
+	 * Makes a symbol of every two bytes, the first one high.
+	 */
+	private static final class PairScanner extends Scanner {
+		private int carry = -1; // First byte of a pair split between chunks
+
+		PairScanner(SymbolSink sink) {
+			super(sink);
+		}
+
+		@Override
+		void scan(ByteBuffer chunk) throws IOException {
+			int i = chunk.position(), end = chunk.limit();
+			if (carry >= 0 && i < end) {
+				sink.accept(carry << 8 | chunk.get(i++) & 0xFF);
+				carry = -1;
+			}
+			for (; i + 1 < end; i += 2)
+				sink.accept((chunk.get(i) & 0xFF) << 8 | chunk.get(i + 1) & 0xFF);
+			if (i < end)
+				carry = chunk.get(i) & 0xFF;
+		}
+
+		@Override
+		void end() throws IOException {
+			if (carry >= 0)
+				sink.accept(carry << 8);
+		}
+	}
+
+	/**
+	 * Makes a symbol of every word that is in a table and of every other byte.
+	 * While counting, the words are added to the table instead.
+	 */
+	private static final class WordScanner extends Scanner {
+		private final WordTable words;
+		private final boolean counting; // Whether words are counted rather than looked up
+		private final byte[] run = new byte[MAX_WORD]; // The word bytes read so far
+		private int length; // Number of them, -1 once the run is too long for a word
+
+		WordScanner(SymbolSink sink, WordTable words, boolean counting) {
+			super(sink);
+			this.words = words;
+			this.counting = counting;
+		}
+
+		@Override
+		void scan(ByteBuffer chunk) throws IOException {
+			for (int i = chunk.position(), end = chunk.limit(); i < end; i++) {
+				int b = chunk.get(i) & 0xFF;
+				if (!WORD[b]) {
+					end();
+					sink.accept(b);
+				} else if (length < 0)
+					sink.accept(b);
+				else if (length < MAX_WORD)
+					run[length++] = (byte) b;
+				else {
+					spell();
+					sink.accept(b);
+					length = -1;
+				}
+			}
+		}
+
+		@Override
+		void end() throws IOException {
+			if (length > 1) {
+				if (counting) {
+					if (!words.count(run, 0, length))
+						spell();
+				} else {
+					int id = words.find(run, 0, length);
+					if (id < 0)
+						spell();
+					else
+						sink.accept(256 + id);
+				}
+			} else if (length == 1)
+				sink.accept(run[0] & 0xFF);
+			length = 0;
+		}
+
+		/**
+		 * Passes the bytes of the run as symbols of their own.
+		 */
+		private void spell() throws IOException {
+			for (int i = 0; i < length; i++)
+				sink.accept(run[i] & 0xFF);
+		}
+	}
+}
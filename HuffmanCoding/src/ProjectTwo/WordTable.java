@@ -0,0 +1,153 @@
+package ProjectTwo;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table of short byte strings, the words of
+ * {@link Alphabet#WORDS}. The words are packed into one byte pool and known by
+ * their id, the order in which they were added; each id also has a count.
+ * Nothing is allocated per word, so counting the words of a large text stays
+ * cheap.
+ */
+final class WordTable {
+
+	private final int maxWords; // Most words the table takes
+
+	private byte[] pool = new byte[1 << 12]; // The bytes of every word, back to back
+	private int poolSize;
+	private int[] offsets = new int[256]; // Start of each word in the pool
+	private byte[] lengths = new byte[256]; // Length of each word
+	private long[] counts = new long[256]; // Occurrences of each word
+	private int size;
+	private int[] slots = new int[512]; // Id + 1 of the word hashed to each slot, 0 if empty
+
+	/**
+	 * @param maxWords Most words the table takes.
+	 */
+	WordTable(int maxWords) {
+		this.maxWords = maxWords;
+	}
+
+	/**
+	 * @return The number of words in the table.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return The id of a word, -1 if it is not in the table.
+	 */
+	int find(byte[] bytes, int offset, int length) {
+		int mask = slots.length - 1;
+		for (int slot = hash(bytes, offset, length) & mask;; slot = (slot + 1) & mask) {
+			int id = slots[slot] - 1;
+			if (id < 0 || equals(id, bytes, offset, length))
+				return id;
+		}
+	}
+
+	/**
+	 * Adds a word unless it is already in the table.
+	 *
+	 * @return The id of the word, -1 if it is new and the table is full.
+	 */
+	int add(byte[] bytes, int offset, int length) {
+		int mask = slots.length - 1;
+		int slot = hash(bytes, offset, length) & mask;
+		for (int id; (id = slots[slot] - 1) >= 0; slot = (slot + 1) & mask) {
+			if (equals(id, bytes, offset, length))
+				return id;
+		}
+		if (size == maxWords)
+			return -1;
+
+		if (size == offsets.length) {
+			offsets = Arrays.copyOf(offsets, size * 2);
+			lengths = Arrays.copyOf(lengths, size * 2);
+			counts = Arrays.copyOf(counts, size * 2);
+		}
+		if (poolSize + length > pool.length)
+			pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + length));
+		System.arraycopy(bytes, offset, pool, poolSize, length);
+		offsets[size] = poolSize;
+		lengths[size] = (byte) length;
+		poolSize += length;
+		slots[slot] = ++size;
+		if (size * 2 > slots.length)
+			rehash();
+		return size - 1;
+	}
+
+	/**
+	 * Counts one occurrence of a word, adding it if needed.
+	 *
+	 * @return Whether the word was counted; false if it is new and the table is
+	 *         full.
+	 */
+	boolean count(byte[] bytes, int offset, int length) {
+		int id = add(bytes, offset, length);
+		if (id < 0)
+			return false;
+		counts[id]++;
+		return true;
+	}
+
+	/**
+	 * @return The number of times a word was counted.
+	 */
+	long count(int id) {
+		return counts[id];
+	}
+
+	/**
+	 * @return The length of a word in bytes.
+	 */
+	int length(int id) {
+		return lengths[id];
+	}
+
+	/**
+	 * @return A copy of a word.
+	 */
+	byte[] word(int id) {
+		return Arrays.copyOfRange(pool, offsets[id], offsets[id] + lengths[id]);
+	}
+
+	/**
+	 * Copies a word into an array.
+	 *
+	 * @return The index after the copied word.
+	 */
+	int copy(int id, byte[] dst, int offset) {
+		System.arraycopy(pool, offsets[id], dst, offset, lengths[id]);
+		return offset + lengths[id];
+	}
+
+	private boolean equals(int id, byte[] bytes, int offset, int length) {
+		return lengths[id] == length && Arrays.equals(pool, offsets[id], offsets[id] + length, bytes, offset,
+				offset + length);
+	}
+
+	private int hash(byte[] bytes, int offset, int length) {
+		int h = 0;
+		for (int i = offset, end = offset + length; i < end; i++)
+			h = 31 * h + bytes[i];
+		h *= 0x9E3779B9; // Spreads the low bits over the whole int
+		return h ^ h >>> 16;
+	}
+
+	/**
+	 * Doubles the slots and hashes every word again.
+	 */
+	private void rehash() {
+		slots = new int[slots.length * 2];
+		int mask = slots.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = hash(pool, offsets[id], lengths[id]) & mask;
+			while (slots[slot] != 0)
+				slot = (slot + 1) & mask;
+			slots[slot] = id + 1;
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package ProjectTwo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Appends to files of the adaptive mode, completely, failing and cut short at
+ * the points a crash can stop it.
+ */
+class AppendTest {
+
+	private static final CodecOptions OPTIONS = CodecOptions.DEFAULT.withAdaptiveBlocks(4096).withThreads(2);
+
+	@TempDir
+	Path dir;
+
+	@ParameterizedTest(name = "checksums {0}")
+	@ValueSource(booleans = { true, false })
+	void appendsInPlace(boolean checksums) throws IOException {
+		HuffmanCodec codec = new HuffmanCodec(OPTIONS.withChecksums(checksums));
+		Random random = new Random(10);
+		for (int first : new int[] { 0, 1, 30_000 }) {
+			byte[] data = TestData.mixed(random, first);
+			Path file = create(codec, data);
+			for (int size : new int[] { 1, 5000, 0, 100_000, 4096 }) {
+				byte[] more = TestData.mixed(random, size);
+				long before = Files.size(file);
+				CodecStats stats = codec.append(new ByteArrayInputStream(more), file.toFile());
+				data = TestData.concat(data, more);
+				assertEquals(size, stats.getLengthBefore());
+				assertEquals(Files.size(file) - before, stats.getLengthAfter());
+				assertDecodes(codec, file, data);
+			}
+		}
+	}
+
+	@Test
+	void keepsTheChecksumsOfTheFile() throws IOException {
+		Path file = create(new HuffmanCodec(OPTIONS), TestData.text(new Random(11), 10_000));
+		byte[] more = TestData.text(new Random(12), 10_000);
+		new HuffmanCodec(OPTIONS.withChecksums(false)).append(new ByteArrayInputStream(more), file.toFile());
+		byte[] huff = Files.readAllBytes(file);
+		assertEquals(HuffHeader.CHECKSUM_FLAG, huff[4] & HuffHeader.CHECKSUM_FLAG);
+		assertArrayEquals(TestData.concat(TestData.text(new Random(11), 10_000), more),
+				new HuffmanCodec().decompress(huff));
+	}
+
+	@Test
+	void appendsOnlyToAdaptiveFiles() throws IOException {
+		Path file = dir.resolve("canonical.huff");
+		Files.write(file, new HuffmanCodec().compress(TestData.text(new Random(13), 1000), ""));
+		byte[] before = Files.readAllBytes(file);
+		assertThrows(IOException.class, () -> new HuffmanCodec(OPTIONS)
+				.append(new ByteArrayInputStream(new byte[100]), file.toFile()));
+		assertArrayEquals(before, Files.readAllBytes(file));
+	}
+
+	@Test
+	void leavesTheFileAsItWasWhenReadingFails() throws IOException {
+		HuffmanCodec codec = new HuffmanCodec(OPTIONS);
+		byte[] data = TestData.text(new Random(14), 20_000);
+		Path file = create(codec, data);
+		byte[] before = Files.readAllBytes(file);
+		IOException failure = new IOException("source failed");
+		assertEquals(failure, assertThrows(IOException.class,
+				() -> codec.append(source(TestData.noise(new Random(15), 200_000), 100_000, failure), file.toFile())));
+		assertArrayEquals(before, Files.readAllBytes(file));
+	}
+
+	/**
+	 * An append stopped before its footer, as when the process is killed,
+	 * leaves its blocks behind the old footer. The file still reads as before,
+	 * but for streams, which fail on those blocks, and the next append drops
+	 * them.
+	 */
+	@Test
+	void recoversFromAnAppendStoppedBeforeItsFooter() throws IOException {
+		HuffmanCodec codec = new HuffmanCodec(OPTIONS.withThreads(1));
+		byte[] data = TestData.text(new Random(16), 20_000);
+		Path file = create(codec, data);
+		long before = Files.size(file);
+		assertThrows(Killed.class,
+				() -> codec.append(source(TestData.noise(new Random(17), 300_000), 150_000, new Killed()),
+						file.toFile()));
+		assertTrue(Files.size(file) > before, "blocks were written");
+		assertArrayEquals(data, codec.decompress(Files.readAllBytes(file)));
+		assertArrayEquals(data, TestData.decodeFile(codec, file));
+		assertThrows(IOException.class, () -> TestData.decodeStream(codec, file));
+		try (HuffReader reader = codec.open(file.toFile())) {
+			assertArrayEquals(data, reader.read(0, data.length + 1));
+		}
+
+		byte[] more = TestData.text(new Random(18), 9000);
+		codec.append(new ByteArrayInputStream(more), file.toFile());
+		assertDecodes(codec, file, TestData.concat(data, more));
+	}
+
+	/**
+	 * An append stopped between its footer and the end marker of the index it
+	 * replaced leaves that marker at 0. Streams must read past it, and the next
+	 * append marks it as replaced.
+	 */
+	@ParameterizedTest(name = "{0} bytes before")
+	@ValueSource(ints = { 0, 20_000 })
+	void recoversFromAnAppendStoppedAfterItsFooter(int first) throws IOException {
+		HuffmanCodec codec = new HuffmanCodec(OPTIONS);
+		byte[] data = TestData.text(new Random(19), first);
+		Path file = create(codec, data);
+		byte[] huff = Files.readAllBytes(file);
+		int marker = (int) ByteBuffer.wrap(huff).getLong(huff.length - 8) - 4;
+
+		byte[] more = TestData.mixed(new Random(20), 30_000);
+		codec.append(new ByteArrayInputStream(more), file.toFile());
+		huff = Files.readAllBytes(file);
+		assertEquals(-1, ByteBuffer.wrap(huff).getInt(marker));
+		ByteBuffer.wrap(huff).putInt(marker, 0);
+		Files.write(file, huff);
+		data = TestData.concat(data, more);
+		assertDecodes(codec, file, data);
+
+		byte[] last = TestData.text(new Random(21), 5000);
+		codec.append(new ByteArrayInputStream(last), file.toFile());
+		assertEquals(-1, ByteBuffer.wrap(Files.readAllBytes(file)).getInt(marker));
+		assertDecodes(codec, file, TestData.concat(data, last));
+	}
+
+	private Path create(HuffmanCodec codec, byte[] data) throws IOException {
+		Path file = dir.resolve("data.huff");
+		Files.write(file, codec.compress(data, "log"));
+		return file;
+	}
+
+	private static void assertDecodes(HuffmanCodec codec, Path file, byte[] data) throws IOException {
+		HuffmanCodec plain = new HuffmanCodec();
+		assertArrayEquals(data, plain.decompress(Files.readAllBytes(file)), "array");
+		assertArrayEquals(data, TestData.decodeStream(plain, file), "stream");
+		assertArrayEquals(data, TestData.decodeFile(plain, file), "file");
+		try (HuffReader reader = plain.open(file.toFile())) {
+			assertArrayEquals(data, reader.read(0, data.length + 1), "ranges");
+		}
+		assertEquals("log", plain.readExtension(file.toFile()));
+	}
+
+	/**
+	 * @return A stream of the data that throws once a number of its bytes have
+	 *         been read.
+	 */
+	private static InputStream source(byte[] data, int failAt, Throwable failure) {
+		return new InputStream() {
+			private int position;
+
+			@Override
+			public int read() throws IOException {
+				byte[] b = new byte[1];
+				return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (position >= failAt) {
+					if (failure instanceof IOException)
+						throw (IOException) failure;
+					throw (Error) failure;
+				}
+				if (position == data.length)
+					return -1;
+				int n = Math.min(Math.min(len, 1000), data.length - position);
+				System.arraycopy(data, position, b, off, n);
+				position += n;
+				return n;
+			}
+		};
+	}
+
+	/**
+	 * Stands for the process being killed: an error, which the codec does not
+	 * catch, so that what it wrote stays in the file.
+	 */
+	private static final class Killed extends Error {
+		private static final long serialVersionUID = 1L;
+	}
+}
@@ -0,0 +1,172 @@
+package ProjectTwo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Damages files of every format and checks that decoding fails instead of
+ * returning other data.
+ */
+class CorruptionTest {
+
+	private static final Codebook CODEBOOK = Codebook.fromSamples(List.of(TestData.text(new Random(1), 50_000)),
+			BitWriter.MAX_CODE_LENGTH);
+
+	@TempDir
+	Path dir;
+
+	static Stream<Arguments> formats() {
+		CodecOptions options = CodecOptions.DEFAULT.withThreads(2);
+		return Stream.of(Arguments.of("canonical", options),
+				Arguments.of("adaptive", options.withAdaptiveBlocks(4096)),
+				Arguments.of("pairs", options.withAlphabet(Alphabet.PAIRS)),
+				Arguments.of("words", options.withAlphabet(Alphabet.WORDS)),
+				Arguments.of("interleaved", options.withInterleavedStreams(true)),
+				Arguments.of("codebook", options.withCodebook(CODEBOOK)));
+	}
+
+	/**
+	 * With checksums, no bit of a file after its header can flip without the
+	 * decoders noticing, unless the data comes out the same.
+	 */
+	@ParameterizedTest(name = "{0}")
+	@MethodSource("formats")
+	void detectsEveryFlippedBit(String name, CodecOptions options) throws IOException {
+		HuffmanCodec codec = new HuffmanCodec(options);
+		byte[] data = TestData.text(new Random(5), 3000);
+		byte[] huff = codec.compress(data, "txt");
+		int header = (int) HuffHeader
+				.read(new DataInputStream(new ByteArrayInputStream(huff)), CODEBOOK, TableCache.SHARED).size();
+		for (int bit = header * 8; bit < huff.length * 8; bit++) {
+			byte[] bad = huff.clone();
+			bad[bit >>> 3] ^= 1 << (bit & 7);
+			try {
+				assertArrayEquals(data, codec.decompress(bad), "array with bit " + bit + " flipped");
+			} catch (IllegalArgumentException e) {
+				// Detected
+			}
+			try {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				codec.decompress(new ByteArrayInputStream(bad), out);
+				assertArrayEquals(data, out.toByteArray(), "stream with bit " + bit + " flipped");
+			} catch (IOException e) {
+				// Detected
+			}
+		}
+	}
+
+	@ParameterizedTest(name = "{0}")
+	@MethodSource("formats")
+	void detectsTruncation(String name, CodecOptions options) throws IOException {
+		HuffmanCodec codec = new HuffmanCodec(options);
+		byte[] huff = codec.compress(TestData.text(new Random(6), 5000), "txt");
+		Path file = dir.resolve("cut.huff");
+		for (int length = 0; length < huff.length; length++) {
+			byte[] cut = new byte[length];
+			System.arraycopy(huff, 0, cut, 0, length);
+			assertThrows(IllegalArgumentException.class, () -> codec.decompress(cut), "cut to " + length);
+			Files.write(file, cut);
+			assertThrows(IOException.class, () -> TestData.decodeStream(codec, file), "stream cut to " + length);
+			assertThrows(IOException.class, () -> TestData.decodeFile(codec, file), "file cut to " + length);
+		}
+	}
+
+	/**
+	 * Damages each field of the first entry of a block index: the count, the
+	 * bit offset and the decoded length.
+	 */
+	@Test
+	void rejectsCorruptBlockIndex() throws IOException {
+		HuffmanCodec codec = new HuffmanCodec(CodecOptions.DEFAULT.withChecksums(false));
+		byte[] data = TestData.text(new Random(7), BlockIndex.BLOCK_SIZE + 5000);
+		byte[] huff = codec.compress(data, "");
+		int index = huff.length - (4 + 2 * 12);
+		assertIndexDamageDetected(codec, huff, index, 3, 4);
+		assertIndexDamageDetected(codec, huff, index, -1, 4);
+		assertIndexDamageDetected(codec, huff, index + 4, 1L << 40, 8);
+		assertIndexDamageDetected(codec, huff, index + 4 + 12, 7, 8);
+		assertIndexDamageDetected(codec, huff, index + 4 + 8, 0, 4);
+		assertIndexDamageDetected(codec, huff, index + 4 + 8, BlockIndex.BLOCK_SIZE + 1, 4);
+	}
+
+	/**
+	 * Damages the footer and index of an adaptive file: where the footer points,
+	 * the count of blocks, and the offset and length of a block.
+	 */
+	@Test
+	void rejectsCorruptAdaptiveIndex() throws IOException {
+		HuffmanCodec codec = new HuffmanCodec(CodecOptions.DEFAULT.withAdaptiveBlocks(4096).withChecksums(false));
+		byte[] huff = codec.compress(TestData.mixed(new Random(8), 3 * 4096), "");
+		int footer = huff.length - 8;
+		long index = ByteBuffer.wrap(huff).getLong(footer);
+		assertIndexDamageDetected(codec, huff, footer, index - 1, 8);
+		assertIndexDamageDetected(codec, huff, footer, huff.length, 8);
+		assertIndexDamageDetected(codec, huff, (int) index, 2, 4);
+		assertIndexDamageDetected(codec, huff, (int) index + 4 + 20, 9, 8);
+		assertIndexDamageDetected(codec, huff, (int) index + 4 + 20 + 16, 1, 4);
+		assertIndexDamageDetected(codec, huff, (int) index + 4 + 20 + 16, 4096 * 100, 4);
+	}
+
+	/**
+	 * Writes a value over a field and checks that every decoder fails, the
+	 * range reader when it reads all of the data.
+	 *
+	 * @param bytes Length of the field, 4 or 8.
+	 */
+	private void assertIndexDamageDetected(HuffmanCodec codec, byte[] huff, int offset, long value, int bytes)
+			throws IOException {
+		byte[] bad = huff.clone();
+		if (bytes == 8)
+			ByteBuffer.wrap(bad).putLong(offset, value);
+		else
+			ByteBuffer.wrap(bad).putInt(offset, (int) value);
+		Path file = dir.resolve("bad.huff");
+		Files.write(file, bad);
+		String field = "field at " + offset + " set to " + value;
+		assertThrows(IllegalArgumentException.class, () -> codec.decompress(bad), field);
+		assertThrows(IOException.class, () -> TestData.decodeFile(codec, file), field);
+		assertThrows(IOException.class, () -> readAll(codec, file), field);
+	}
+
+	private static void readAll(HuffmanCodec codec, Path file) throws IOException {
+		try (HuffReader reader = codec.open(file.toFile())) {
+			reader.read(0, (int) reader.length());
+		}
+	}
+
+	@Test
+	void rejectsOtherFiles() throws IOException {
+		HuffmanCodec codec = new HuffmanCodec();
+		assertThrows(IllegalArgumentException.class, () -> codec.decompress(new byte[0]));
+		assertThrows(IllegalArgumentException.class, () -> codec.decompress("not a huff file".getBytes()));
+		byte[] future = codec.compress(new byte[10], "");
+		future[4] = 9;
+		assertThrows(IllegalArgumentException.class, () -> codec.decompress(future));
+	}
+
+	@Test
+	void needsTheCodebookOfAFile() {
+		byte[] huff = new HuffmanCodec(CodecOptions.DEFAULT.withCodebook(CODEBOOK)).compress(new byte[100], "");
+		assertThrows(IllegalArgumentException.class, () -> new HuffmanCodec().decompress(huff));
+		Codebook other = Codebook.fromSamples(List.of(TestData.noise(new Random(9), 1000)), 20);
+		assertThrows(IllegalArgumentException.class,
+				() -> new HuffmanCodec(CodecOptions.DEFAULT.withCodebook(other)).decompress(huff));
+	}
+}
@@ -0,0 +1,221 @@
+package ProjectTwo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Compresses inputs of several sizes in every format and with every option
+ * that changes the layout, and decodes them back through arrays, streams,
+ * files and ranges.
+ */
+class RoundTripTest {
+
+	private static final int[] SIZES = { 0, 1, 1000, 70_000, BlockIndex.BLOCK_SIZE * 2 + 12_345 };
+
+	private static final Codebook CODEBOOK = Codebook.fromSamples(List.of(TestData.text(new Random(1), 50_000)),
+			BitWriter.MAX_CODE_LENGTH);
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * @return The name, options and version written of every format, with and
+	 *         without checksums and on one or more threads.
+	 */
+	static Stream<Arguments> formats() {
+		List<Arguments> formats = new ArrayList<>();
+		for (boolean checksums : new boolean[] { true, false }) {
+			for (int threads : new int[] { 1, 4 }) {
+				CodecOptions options = CodecOptions.DEFAULT.withChecksums(checksums).withThreads(threads);
+				String suffix = (checksums ? "" : ", no checksums") + ", " + threads + " threads";
+				formats.add(Arguments.of("canonical" + suffix, options, HuffHeader.VERSION));
+				formats.add(Arguments.of("adaptive" + suffix, options.withAdaptiveBlocks(4096),
+						HuffHeader.ADAPTIVE_VERSION));
+				formats.add(Arguments.of("pairs" + suffix, options.withAlphabet(Alphabet.PAIRS),
+						HuffHeader.TOKEN_VERSION));
+				formats.add(Arguments.of("words" + suffix, options.withAlphabet(Alphabet.WORDS),
+						HuffHeader.TOKEN_VERSION));
+				formats.add(Arguments.of("interleaved" + suffix, options.withInterleavedStreams(true),
+						HuffHeader.INTERLEAVED_VERSION));
+				formats.add(Arguments.of("codebook" + suffix, options.withCodebook(CODEBOOK),
+						HuffHeader.CODEBOOK_VERSION));
+				formats.add(Arguments.of("code length limit" + suffix, options.withMaxCodeLength(9),
+						HuffHeader.VERSION));
+			}
+		}
+		return formats.stream();
+	}
+
+	@ParameterizedTest(name = "{0}")
+	@MethodSource("formats")
+	void roundTrips(String name, CodecOptions options, int version) throws IOException {
+		HuffmanCodec codec = new HuffmanCodec(options);
+		Random random = new Random(name.hashCode());
+		for (int size : SIZES) {
+			byte[] data = size > 100_000 ? TestData.mixed(random, size) : TestData.text(random, size);
+			byte[] huff = codec.compress(data, "txt");
+			assertEquals(version, TestData.version(huff), name + ", " + size + " bytes");
+			assertEquals(options.isChecksums(), (huff[4] & HuffHeader.CHECKSUM_FLAG) != 0);
+			assertArrayEquals(data, codec.decompress(huff), "array of " + size + " bytes");
+
+			Path file = dir.resolve("data.huff");
+			Files.write(file, huff);
+			assertArrayEquals(data, TestData.decodeStream(codec, file), "stream of " + size + " bytes");
+			assertArrayEquals(data, TestData.decodeFile(codec, file), "file of " + size + " bytes");
+			assertEquals("txt", codec.readExtension(file.toFile()));
+			if (version != HuffHeader.TOKEN_VERSION)
+				assertRanges(codec, file, data);
+
+			// Streams are compressed in one pass, into another layout once they
+			// pass a block
+			ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+			codec.compress(new ByteArrayInputStream(data), streamed, "txt");
+			assertArrayEquals(data, codec.decompress(streamed.toByteArray()), "stream compressed " + size);
+
+			Path original = dir.resolve("data.txt");
+			Files.write(original, data);
+			codec.compress(original.toFile(), file.toFile());
+			assertArrayEquals(huff, Files.readAllBytes(file), "file compressed " + size);
+		}
+	}
+
+	/**
+	 * Reads ranges at the start and end of the data and across its blocks.
+	 */
+	private static void assertRanges(HuffmanCodec codec, Path file, byte[] data) throws IOException {
+		try (HuffReader reader = codec.open(file.toFile())) {
+			assertEquals(data.length, reader.length());
+			assertArrayEquals(data, reader.read(0, data.length + 10));
+			long[] positions = { 0, 1, data.length / 2, BlockIndex.BLOCK_SIZE - 3, data.length - 1 };
+			for (long position : positions) {
+				if (position < 0 || position >= data.length)
+					continue;
+				int length = (int) Math.min(10_000, data.length - position);
+				byte[] expected = new byte[length];
+				System.arraycopy(data, (int) position, expected, 0, length);
+				assertArrayEquals(expected, reader.read(position, length), "range at " + position);
+			}
+			assertEquals(-1, reader.read(data.length, new byte[1], 0, 1));
+		}
+	}
+
+	@Test
+	void singlePassSwitchesToAdaptiveBlocksPastOneBlock() throws IOException {
+		HuffmanCodec codec = new HuffmanCodec(CodecOptions.DEFAULT.withSinglePass(true));
+		Random random = new Random(2);
+		for (int size : SIZES) {
+			byte[] data = TestData.mixed(random, size);
+			Path original = dir.resolve("data.bin");
+			Path file = dir.resolve("data.huff");
+			Files.write(original, data);
+			codec.compress(original.toFile(), file.toFile());
+			byte[] huff = Files.readAllBytes(file);
+			assertEquals(size > BlockIndex.BLOCK_SIZE ? HuffHeader.ADAPTIVE_VERSION : HuffHeader.VERSION,
+					TestData.version(huff));
+			assertArrayEquals(data, codec.decompress(huff));
+		}
+	}
+
+	@Test
+	void limitsCodeLengths() throws IOException {
+		byte[] data = TestData.skewed(new Random(3), 200_000);
+		for (int limit : new int[] { CodecOptions.MIN_CODE_LENGTH_LIMIT, 12, BitWriter.MAX_CODE_LENGTH }) {
+			HuffmanCodec codec = new HuffmanCodec(CodecOptions.DEFAULT.withMaxCodeLength(limit));
+			byte[] huff = codec.compress(data, "");
+			HuffHeader header = HuffHeader.read(new DataInputStream(new ByteArrayInputStream(huff)));
+			assertTrue(header.codes.maxLength() <= limit, "longest code " + header.codes.maxLength());
+			assertArrayEquals(data, codec.decompress(huff));
+		}
+	}
+
+	@Test
+	void codebookFilesOfOneBlockLeaveOutTheIndex() {
+		byte[] data = TestData.text(new Random(4), 300);
+		byte[] plain = new HuffmanCodec(CodecOptions.DEFAULT.withCodebook(CODEBOOK).withChecksums(false))
+				.compress(data, "");
+		assertTrue((plain[4] & HuffHeader.SINGLE_BLOCK_FLAG) != 0);
+		byte[] canonical = new HuffmanCodec(CodecOptions.DEFAULT.withChecksums(false)).compress(data, "");
+		assertTrue(plain.length < canonical.length, plain.length + " bytes, " + canonical.length + " without");
+	}
+
+	/**
+	 * Files of version 1, as the first releases wrote them, still decode.
+	 */
+	@Test
+	void decodesVersion1() throws IOException {
+		Path huff = Paths.get("..", "license.huff");
+		byte[] expected = Files.readAllBytes(Paths.get("..", "license.txt"));
+		HuffmanCodec codec = new HuffmanCodec();
+		assertArrayEquals(expected, codec.decompress(Files.readAllBytes(huff)));
+		assertArrayEquals(expected, TestData.decodeStream(codec, huff));
+		Path copy = dir.resolve("license.huff");
+		Files.copy(huff, copy);
+		assertArrayEquals(expected, TestData.decodeFile(codec, copy));
+		assertEquals("txt", codec.readExtension(huff.toFile()));
+	}
+
+	/**
+	 * Files of version 2 store a tree: here a over b as 00 and 01, and c as 1.
+	 */
+	@Test
+	void decodesVersion2() throws IOException {
+		byte[] data = "abcabccccba".getBytes();
+		StringBuilder tree = new StringBuilder();
+		tree.append('1').append(HuffmanTree.toBinaryString((byte) 'a'));
+		tree.append('1').append(HuffmanTree.toBinaryString((byte) 'b')).append('0');
+		tree.append('1').append(HuffmanTree.toBinaryString((byte) 'c')).append('0');
+		StringBuilder payload = new StringBuilder();
+		for (byte b : data)
+			payload.append(b == 'a' ? "00" : b == 'b' ? "01" : "1");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(HuffHeader.MAGIC);
+		out.writeByte(2);
+		out.writeByte(3);
+		out.writeBytes("txt");
+		out.writeLong(data.length);
+		out.writeLong(payload.length());
+		out.writeInt(tree.length());
+		writeBits(out, tree);
+		writeBits(out, payload);
+		BlockIndex index = new BlockIndex();
+		index.add(0, data.length);
+		index.write(out);
+
+		Path file = dir.resolve("v2.huff");
+		Files.write(file, bytes.toByteArray());
+		HuffmanCodec codec = new HuffmanCodec();
+		assertArrayEquals(data, codec.decompress(bytes.toByteArray()));
+		assertArrayEquals(data, TestData.decodeStream(codec, file));
+		assertArrayEquals(data, TestData.decodeFile(codec, file));
+		assertRanges(codec, file, data);
+	}
+
+	private static void writeBits(DataOutputStream out, CharSequence bits) throws IOException {
+		for (int i = 0; i < bits.length(); i += 8) {
+			String bite = bits.subSequence(i, Math.min(bits.length(), i + 8)).toString();
+			out.writeByte(Integer.parseInt((bite + "0000000").substring(0, 8), 2));
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package ProjectTwo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Inputs and helpers shared by the tests.
+ */
+final class TestData {
+
+	private static final String[] WORDS = { "the", "block", "index", "of", "a", "huff", "file", "codes", "every",
+			"byte", "with", "table", "and", "stream", "decoder", "\n" };
+
+	private TestData() {
+	}
+
+	/**
+	 * @return Text of frequent words separated by spaces, which suits every
+	 *         alphabet.
+	 */
+	static byte[] text(Random random, int length) {
+		StringBuilder text = new StringBuilder(length + 16);
+		while (text.length() < length)
+			text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+			bytes[i] = (byte) text.charAt(i);
+		return bytes;
+	}
+
+	/**
+	 * @return Bytes of every value, equally likely.
+	 */
+	static byte[] noise(Random random, int length) {
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+
+	/**
+	 * @return Bytes whose frequencies halve from one value to the next, so that
+	 *         their Huffman codes grow long.
+	 */
+	static byte[] skewed(Random random, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+			bytes[i] = (byte) Math.min(255, Long.numberOfTrailingZeros(random.nextLong() | Long.MIN_VALUE));
+		return bytes;
+	}
+
+	/**
+	 * @return Text and noise in turns of 20,000 bytes, whose blocks want
+	 *         different tables.
+	 */
+	static byte[] mixed(Random random, int length) {
+		byte[] bytes = new byte[length];
+		for (int from = 0; from < length; from += 20_000) {
+			int n = Math.min(20_000, length - from);
+			byte[] part = (from / 20_000) % 2 == 0 ? text(random, n) : noise(random, n);
+			System.arraycopy(part, 0, bytes, from, n);
+		}
+		return bytes;
+	}
+
+	static byte[] concat(byte[] first, byte[] second) {
+		byte[] bytes = new byte[first.length + second.length];
+		System.arraycopy(first, 0, bytes, 0, first.length);
+		System.arraycopy(second, 0, bytes, first.length, second.length);
+		return bytes;
+	}
+
+	/**
+	 * @return The version of a .huff file of version 2 or later, without its
+	 *         flags.
+	 */
+	static int version(byte[] huff) {
+		return huff[4] & 0x3F;
+	}
+
+	/**
+	 * Decompresses a file as a stream.
+	 */
+	static byte[] decodeStream(HuffmanCodec codec, Path file) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = Files.newInputStream(file)) {
+			codec.decompress(in, out);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decompresses a file into another file.
+	 */
+	static byte[] decodeFile(HuffmanCodec codec, Path file) throws IOException {
+		Path out = file.resolveSibling(file.getFileName() + ".out");
+		try {
+			codec.decompress(file.toFile(), out.toFile());
+			return Files.readAllBytes(out);
+		} finally {
+			Files.deleteIfExists(out);
+		}
+	}
+}